@@ -0,0 +1,172 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.mybatis.jpetstore.domain.Account;
+import org.mybatis.jpetstore.domain.Product;
+import org.mybatis.jpetstore.mapper.CategoryMapper;
+import org.mybatis.jpetstore.mapper.ItemMapper;
+import org.mybatis.jpetstore.mapper.MapperTestContext;
+import org.mybatis.jpetstore.mapper.ProductMapper;
+import org.mybatis.jpetstore.mapper.SurveyRecommendationMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Measures the survey scoring path behind the catalog pages against the real
+ * {@code jpetstore-hsqldb-recommendations.sql} data, loaded into an embedded HSQLDB through the mapper test context.
+ * Throughput and sampled latency percentiles are reported for every benchmark; run with {@code -prof gc} (the
+ * {@code jmh} profile default) for the allocation rate.
+ *
+ * <pre>
+ * ./mvnw -Pjmh -DskipTests test-compile exec:exec
+ * ./mvnw -Pjmh -DskipTests test-compile exec:exec -Djmh.args="-prof gc RecommendationScoringBenchmark.evaluateCategory"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecommendationScoringBenchmark {
+
+  // Representative survey profiles: a typical indoor one, one hit by the exclusion rules, one made mostly of
+  // "Doesn't matter" answers, and a free-form answer that bypasses the materialized per-profile verdicts
+  private static final Map<String, String[]> PROFILES = Map.of(
+      "apartment", new String[] { "Indoor-focused (apartment, studio, etc.)", "5 years or less",
+          "Light colors (white | ivory tones)", "Small (suitable for studio/small apartment)", "Day",
+          "Simple kibble-focused (carnivore, omnivore)" },
+      "dry", new String[] { "Dry environment", "10 years or more", "Warm colors (brown | gold tones)",
+          "Medium (regular home, some space available)", "Night",
+          "Can provide diverse diet (vegetarian, mixed possible)" },
+      "undecided", new String[] { "Includes outdoor space (yard, balcony, etc.)", "Doesn't matter", "Doesn't matter",
+          "Large (yard and spacious indoor area possible)", "Irregular",
+          "Can manage special diets (insect-based, dried food, etc.)" },
+      "freeForm", new String[] { "Indoor-focused (apartment, studio, etc.)", "5-10 years", "Mixed colors",
+          "Small (suitable for studio/small apartment)", "Day", "Whatever the shop recommends" });
+
+  @Param({ "apartment", "dry", "undecided", "freeForm" })
+  public String profile;
+
+  private AnnotationConfigApplicationContext context;
+  private CatalogService catalogService;
+  private SurveyRecommendationIndex index;
+  private Account account;
+  private int[] encodedProfile;
+  private BitSet excluded;
+  private String[] productIds;
+  private List<Product> categoryProducts;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    context = new AnnotationConfigApplicationContext(MapperTestContext.class);
+    ProductMapper productMapper = context.getBean(ProductMapper.class);
+    // The LLM message service is never reached from the scoring path
+    SurveyRecommendationMapper surveyRecommendationMapper = context.getBean(SurveyRecommendationMapper.class);
+    catalogService = new CatalogService(context.getBean(CategoryMapper.class), context.getBean(ItemMapper.class),
+        productMapper, surveyRecommendationMapper, new SurveyRecommendationMigrationService(surveyRecommendationMapper),
+        null, new TemplateRecommendationMessageGenerator(), TemplateRecommendationMessageGenerator.NAME);
+    RecommendationSnapshot snapshot = catalogService.getRecommendationSnapshot();
+    index = snapshot.getIndex();
+
+    String[] answers = PROFILES.get(profile);
+    account = new Account();
+    account.setResidenceEnv(answers[0]);
+    account.setCarePeriod(answers[1]);
+    account.setPetColorPref(answers[2]);
+    account.setPetSizePref(answers[3]);
+    account.setActivityTime(answers[4]);
+    account.setDietManagement(answers[5]);
+    encodedProfile = index.encode(account);
+    excluded = snapshot.getExclusionRules().excludedProducts(account);
+
+    productIds = productMapper.getAllProducts().stream().map(Product::getProductId).toArray(String[]::new);
+    categoryProducts = productMapper.getProductListByCategory("DOGS");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  private String nextProductId() {
+    next = next + 1 == productIds.length ? 0 : next + 1;
+    return productIds[next];
+  }
+
+  /**
+   * One product badge on a product or item page.
+   */
+  @Benchmark
+  public boolean isProductRecommended() {
+    return catalogService.isProductRecommended(account, nextProductId());
+  }
+
+  /**
+   * The matching and mismatching conditions the recommendation message is built from.
+   */
+  @Benchmark
+  public void explainConditions(Blackhole blackhole) {
+    RecommendationVerdict verdict = catalogService.evaluate(account, nextProductId());
+    blackhole.consume(verdict.getMatchingConditions());
+    blackhole.consume(verdict.getMismatchingConditions());
+  }
+
+  /**
+   * Every badge of a category page at once.
+   */
+  @Benchmark
+  public Map<String, RecommendationVerdict> evaluateCategory() {
+    return catalogService.evaluate(account, categoryProducts);
+  }
+
+  /**
+   * The best few products for the account across the catalogue.
+   */
+  @Benchmark
+  public List<RecommendationVerdict> rankTopFive() {
+    return catalogService.rankRecommendations(account, 5);
+  }
+
+  /**
+   * The whole catalogue scored live against the index, as for a profile with no materialized verdicts. This is the
+   * engine itself, without the per-profile lookup table in front of it.
+   */
+  @Benchmark
+  public RecommendationVerdict[] evaluateIndex() {
+    return index.evaluate(encodedProfile, excluded);
+  }
+}
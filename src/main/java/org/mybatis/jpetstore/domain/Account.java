@@ -54,6 +54,8 @@ public class Account implements Serializable {
   private String petSizePref;
   private String activityTime;
   private String dietManagement;
+  // Cached SurveyDimension#surveyKey of the answers above; null until computed or after an answer changes
+  private Integer surveyKey;
 
   public String getUsername() {
     return username;
@@ -208,6 +210,7 @@ public class Account implements Serializable {
 
   public void setResidenceEnv(String residenceEnv) {
     this.residenceEnv = residenceEnv;
+    this.surveyKey = null;
   }
 
   public String getCarePeriod() {
@@ -216,6 +219,7 @@ public class Account implements Serializable {
 
   public void setCarePeriod(String carePeriod) {
     this.carePeriod = carePeriod;
+    this.surveyKey = null;
   }
 
   public String getPetColorPref() {
@@ -224,6 +228,7 @@ public class Account implements Serializable {
 
   public void setPetColorPref(String petColorPref) {
     this.petColorPref = petColorPref;
+    this.surveyKey = null;
   }
 
   public String getPetSizePref() {
@@ -232,6 +237,7 @@ public class Account implements Serializable {
 
   public void setPetSizePref(String petSizePref) {
     this.petSizePref = petSizePref;
+    this.surveyKey = null;
   }
 
   public String getActivityTime() {
@@ -240,6 +246,7 @@ public class Account implements Serializable {
 
   public void setActivityTime(String activityTime) {
     this.activityTime = activityTime;
+    this.surveyKey = null;
   }
 
   public String getDietManagement() {
@@ -248,6 +255,24 @@ public class Account implements Serializable {
 
   public void setDietManagement(String dietManagement) {
     this.dietManagement = dietManagement;
+    this.surveyKey = null;
+  }
+
+  /**
+   * Canonical fingerprint of the six survey answers, as stored in PROFILE.SURVEYKEY. Computed on first use and kept
+   * until an answer changes, so recommendation lookups can key on one int instead of the six strings.
+   *
+   * @return the {@link SurveyDimension#surveyKey(Account) survey key}
+   */
+  public int getSurveyKey() {
+    if (surveyKey == null) {
+      surveyKey = SurveyDimension.surveyKey(this);
+    }
+    return surveyKey;
+  }
+
+  public void setSurveyKey(int surveyKey) {
+    this.surveyKey = surveyKey;
   }
 
 }
@@ -0,0 +1,55 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.domain;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * A generated recommendation message in RECOMMENDATION_MESSAGE_CACHE, addressed by the hash of its prompt.
+ */
+public class CachedRecommendationMessage implements Serializable {
+
+  private static final long serialVersionUID = -2751468393705230764L;
+
+  private String promptHash;
+  private String message;
+  private LocalDateTime created;
+
+  public String getPromptHash() {
+    return promptHash;
+  }
+
+  public void setPromptHash(String promptHash) {
+    this.promptHash = promptHash;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public void setMessage(String message) {
+    this.message = message;
+  }
+
+  public LocalDateTime getCreated() {
+    return created;
+  }
+
+  public void setCreated(LocalDateTime created) {
+    this.created = created;
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.domain;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * A queued recommendation message refresh for one user.
+ */
+public class RecommendationRefreshJob implements Serializable {
+
+  private static final long serialVersionUID = 4127795311562077201L;
+
+  public static final String PENDING = "PENDING";
+  public static final String RUNNING = "RUNNING";
+  public static final String DONE = "DONE";
+  public static final String FAILED = "FAILED";
+
+  private long jobId;
+  private String username;
+  private String previousAnswers;
+  private String jobStatus;
+  private int attempts;
+  private LocalDateTime runAfter;
+  private String leaseOwner;
+  private LocalDateTime leaseUntil;
+  private String lastError;
+  private LocalDateTime created;
+  private LocalDateTime updated;
+
+  public long getJobId() {
+    return jobId;
+  }
+
+  public void setJobId(long jobId) {
+    this.jobId = jobId;
+  }
+
+  public String getUsername() {
+    return username;
+  }
+
+  public void setUsername(String username) {
+    this.username = username;
+  }
+
+  /**
+   * The survey answers before the edit that prompted the refresh, as a JSON object keyed by condition name.
+   *
+   * @return the answers, or null for a full refresh
+   */
+  public String getPreviousAnswers() {
+    return previousAnswers;
+  }
+
+  public void setPreviousAnswers(String previousAnswers) {
+    this.previousAnswers = previousAnswers;
+  }
+
+  public String getJobStatus() {
+    return jobStatus;
+  }
+
+  public void setJobStatus(String jobStatus) {
+    this.jobStatus = jobStatus;
+  }
+
+  public int getAttempts() {
+    return attempts;
+  }
+
+  public void setAttempts(int attempts) {
+    this.attempts = attempts;
+  }
+
+  public LocalDateTime getRunAfter() {
+    return runAfter;
+  }
+
+  public void setRunAfter(LocalDateTime runAfter) {
+    this.runAfter = runAfter;
+  }
+
+  public String getLeaseOwner() {
+    return leaseOwner;
+  }
+
+  public void setLeaseOwner(String leaseOwner) {
+    this.leaseOwner = leaseOwner;
+  }
+
+  public LocalDateTime getLeaseUntil() {
+    return leaseUntil;
+  }
+
+  public void setLeaseUntil(LocalDateTime leaseUntil) {
+    this.leaseUntil = leaseUntil;
+  }
+
+  public String getLastError() {
+    return lastError;
+  }
+
+  public void setLastError(String lastError) {
+    this.lastError = lastError;
+  }
+
+  public LocalDateTime getCreated() {
+    return created;
+  }
+
+  public void setCreated(LocalDateTime created) {
+    this.created = created;
+  }
+
+  public LocalDateTime getUpdated() {
+    return updated;
+  }
+
+  public void setUpdated(LocalDateTime updated) {
+    this.updated = updated;
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.domain;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The six survey questions and their canonical answers, in the order used by the survey form and by
+ * {@code RecommendationDataGenerator}. The position of an answer in {@link #getOptions()} is its ordinal.
+ */
+public enum SurveyDimension {
+
+  RESIDENCE_ENV("residenceEnv", "Indoor-focused (apartment, studio, etc.)",
+      "Includes outdoor space (yard, balcony, etc.)", "Humid environment (near river/lake)", "Dry environment",
+      "Can maintain special spaces (aquarium, terrarium, etc.)"),
+
+  CARE_PERIOD("carePeriod", "5 years or less", "5-10 years", "10 years or more", "Doesn't matter"),
+
+  PET_COLOR_PREF("petColorPref", "Light colors (white | ivory tones)", "Warm colors (brown | gold tones)",
+      "Dark colors (black | gray tones)", "Mixed colors", "Doesn't matter"),
+
+  PET_SIZE_PREF("petSizePref", "Small (suitable for studio/small apartment)",
+      "Medium (regular home, some space available)", "Large (yard and spacious indoor area possible)"),
+
+  ACTIVITY_TIME("activityTime", "Day", "Night", "Irregular"),
+
+  DIET_MANAGEMENT("dietManagement", "Simple kibble-focused (carnivore, omnivore)",
+      "Can provide diverse diet (vegetarian, mixed possible)",
+      "Can manage special diets (insect-based, dried food, etc.)");
+
+  private static final SurveyDimension[] VALUES = values();
+
+  /** Number of distinct complete survey profiles, i.e. the product of all cardinalities. */
+  public static final int PROFILE_COUNT = profileCount();
+
+  /** {@link #surveyKey(Account) Survey key} of an account that left a question unanswered. */
+  public static final int INCOMPLETE_SURVEY_KEY = -1;
+
+  /** {@link #surveyKey(Account) Survey key} of an account that answered every question, not all with an option. */
+  public static final int NON_CANONICAL_SURVEY_KEY = -2;
+
+  private final String conditionName;
+  private final List<String> options;
+
+  SurveyDimension(String conditionName, String... options) {
+    this.conditionName = conditionName;
+    this.options = List.of(options);
+  }
+
+  /**
+   * The property name of this dimension, also used as the condition name in matching/mismatching condition sets.
+   *
+   * @return the condition name (e.g. "residenceEnv")
+   */
+  public String getConditionName() {
+    return conditionName;
+  }
+
+  /**
+   * Finds a dimension by its condition name.
+   *
+   * @param conditionName
+   *          the condition name (e.g. "residenceEnv")
+   *
+   * @return the dimension, or null if no dimension has that name
+   */
+  public static SurveyDimension forConditionName(String conditionName) {
+    for (SurveyDimension dimension : VALUES) {
+      if (dimension.conditionName.equals(conditionName)) {
+        return dimension;
+      }
+    }
+    return null;
+  }
+
+  public List<String> getOptions() {
+    return options;
+  }
+
+  public int getCardinality() {
+    return options.size();
+  }
+
+  /**
+   * Returns the ordinal of the given answer, ignoring surrounding whitespace.
+   *
+   * @param value
+   *          the answer
+   *
+   * @return the ordinal, or -1 if the value is blank or not a canonical answer
+   */
+  public int ordinalOf(String value) {
+    return value == null ? -1 : options.indexOf(value.trim());
+  }
+
+  /**
+   * Gets the answer to this question from an account profile.
+   *
+   * @param account
+   *          the account
+   *
+   * @return the raw answer (may be null)
+   */
+  public String getValue(Account account) {
+    switch (this) {
+      case RESIDENCE_ENV:
+        return account.getResidenceEnv();
+      case CARE_PERIOD:
+        return account.getCarePeriod();
+      case PET_COLOR_PREF:
+        return account.getPetColorPref();
+      case PET_SIZE_PREF:
+        return account.getPetSizePref();
+      case ACTIVITY_TIME:
+        return account.getActivityTime();
+      default:
+        return account.getDietManagement();
+    }
+  }
+
+  /**
+   * Gets the answer to this question from a survey recommendation row.
+   *
+   * @param recommendation
+   *          the survey recommendation
+   *
+   * @return the raw answer (may be null)
+   */
+  public String getValue(SurveyRecommendation recommendation) {
+    switch (this) {
+      case RESIDENCE_ENV:
+        return recommendation.getResidenceEnv();
+      case CARE_PERIOD:
+        return recommendation.getCarePeriod();
+      case PET_COLOR_PREF:
+        return recommendation.getPetColorPref();
+      case PET_SIZE_PREF:
+        return recommendation.getPetSizePref();
+      case ACTIVITY_TIME:
+        return recommendation.getActivityTime();
+      default:
+        return recommendation.getDietManagement();
+    }
+  }
+
+  /**
+   * Computes the canonical survey fingerprint stored with an account profile: its {@link #profileKey(Account) profile
+   * key} when every answer is one of the options, and otherwise a negative flag telling an incomplete survey from a
+   * complete one with free-form answers.
+   *
+   * @param account
+   *          the account
+   *
+   * @return the profile key, {@link #INCOMPLETE_SURVEY_KEY} if an answer is null or empty, or
+   *         {@link #NON_CANONICAL_SURVEY_KEY} if an answer is not an option
+   */
+  public static int surveyKey(Account account) {
+    for (SurveyDimension dimension : VALUES) {
+      String value = dimension.getValue(account);
+      if (value == null || value.isEmpty()) {
+        return INCOMPLETE_SURVEY_KEY;
+      }
+    }
+    int key = profileKey(dimension -> dimension.getValue(account));
+    return key < 0 ? NON_CANONICAL_SURVEY_KEY : key;
+  }
+
+  /**
+   * Encodes the survey answers of an account as a mixed-radix number with one digit per dimension, in declaration
+   * order. Keys are dense in {@code [0, PROFILE_COUNT)}. Read from the account's cached
+   * {@link Account#getSurveyKey() survey key}.
+   *
+   * @param account
+   *          the account
+   *
+   * @return the profile key, or -1 if any answer is missing or not canonical
+   */
+  public static int profileKey(Account account) {
+    int key = account.getSurveyKey();
+    return key < 0 ? -1 : key;
+  }
+
+  /**
+   * Encodes the survey answers of a survey recommendation row like {@link #profileKey(Account)}.
+   *
+   * @param recommendation
+   *          the survey recommendation
+   *
+   * @return the profile key, or -1 if any answer is missing or not canonical
+   */
+  public static int profileKey(SurveyRecommendation recommendation) {
+    return profileKey(dimension -> dimension.getValue(recommendation));
+  }
+
+  /**
+   * Encodes per-dimension ordinals like {@link #profileKey(Account)}.
+   *
+   * @param ordinals
+   *          the ordinal of each dimension, in declaration order
+   *
+   * @return the profile key, or -1 if any ordinal is out of range
+   */
+  public static int profileKey(int[] ordinals) {
+    int key = 0;
+    for (SurveyDimension dimension : VALUES) {
+      int ordinal = ordinals[dimension.ordinal()];
+      if (ordinal < 0 || ordinal >= dimension.getCardinality()) {
+        return -1;
+      }
+      key = key * dimension.getCardinality() + ordinal;
+    }
+    return key;
+  }
+
+  /**
+   * Decodes a profile key into per-dimension ordinals.
+   *
+   * @param profileKey
+   *          the profile key
+   *
+   * @return the ordinal of each dimension, in declaration order
+   */
+  public static int[] ordinals(int profileKey) {
+    int[] ordinals = new int[VALUES.length];
+    int remainder = profileKey;
+    for (int d = VALUES.length - 1; d >= 0; d--) {
+      ordinals[d] = remainder % VALUES[d].getCardinality();
+      remainder /= VALUES[d].getCardinality();
+    }
+    return ordinals;
+  }
+
+  private static int profileKey(Function<SurveyDimension, String> answers) {
+    int key = 0;
+    for (SurveyDimension dimension : VALUES) {
+      int ordinal = dimension.ordinalOf(answers.apply(dimension));
+      if (ordinal < 0) {
+        return -1;
+      }
+      key = key * dimension.getCardinality() + ordinal;
+    }
+    return key;
+  }
+
+  private static int profileCount() {
+    int count = 1;
+    for (SurveyDimension dimension : VALUES) {
+      count *= dimension.getCardinality();
+    }
+    return count;
+  }
+
+}
@@ -0,0 +1,74 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.domain;
+
+import java.io.Serializable;
+
+/**
+ * A hard filter on survey recommendations: products whose id starts with {@code productIdPrefix} are never recommended
+ * to an account that gave {@code answer} to the question named {@code conditionName}.
+ */
+public class SurveyExclusionRule implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private int ruleId;
+  private String conditionName;
+  private String answer;
+  private String productIdPrefix;
+  private String description;
+
+  public int getRuleId() {
+    return ruleId;
+  }
+
+  public void setRuleId(int ruleId) {
+    this.ruleId = ruleId;
+  }
+
+  public String getConditionName() {
+    return conditionName;
+  }
+
+  public void setConditionName(String conditionName) {
+    this.conditionName = conditionName;
+  }
+
+  public String getAnswer() {
+    return answer;
+  }
+
+  public void setAnswer(String answer) {
+    this.answer = answer;
+  }
+
+  public String getProductIdPrefix() {
+    return productIdPrefix;
+  }
+
+  public void setProductIdPrefix(String productIdPrefix) {
+    this.productIdPrefix = productIdPrefix;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public void setDescription(String description) {
+    this.description = description;
+  }
+
+}
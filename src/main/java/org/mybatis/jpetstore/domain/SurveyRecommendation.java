@@ -16,6 +16,7 @@
 package org.mybatis.jpetstore.domain;
 
 import java.io.Serializable;
+import java.util.List;
 
 public class SurveyRecommendation implements Serializable {
 
@@ -29,6 +30,8 @@ public class SurveyRecommendation implements Serializable {
   private String activityTime;
   private String dietManagement;
   private String recommendedJsonData;
+  private List<String> recommendedProductIds;
+  private Integer productsChecksum;
 
   public int getSurveyRecommendationId() {
     return surveyRecommendationId;
@@ -94,6 +97,32 @@ public class SurveyRecommendation implements Serializable {
     this.recommendedJsonData = recommendedJsonData;
   }
 
+  /**
+   * Product ids from SURVEY_RECOMMENDATION_PRODUCT, in the order of recommended_json_data.
+   *
+   * @return the product ids, or null if they were not loaded
+   */
+  public List<String> getRecommendedProductIds() {
+    return recommendedProductIds;
+  }
+
+  public void setRecommendedProductIds(List<String> recommendedProductIds) {
+    this.recommendedProductIds = recommendedProductIds;
+  }
+
+  /**
+   * Checksum of the recommended_json_data that SURVEY_RECOMMENDATION_PRODUCT was last built from.
+   *
+   * @return the checksum, or null if the product rows were never built or it was not loaded
+   */
+  public Integer getProductsChecksum() {
+    return productsChecksum;
+  }
+
+  public void setProductsChecksum(Integer productsChecksum) {
+    this.productsChecksum = productsChecksum;
+  }
+
   @Override
   public String toString() {
     return "SurveyRecommendation{" + "surveyRecommendationId=" + surveyRecommendationId + ", residenceEnv='"
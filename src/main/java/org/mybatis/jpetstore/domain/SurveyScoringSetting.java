@@ -0,0 +1,47 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.domain;
+
+import java.io.Serializable;
+
+/**
+ * One row of SURVEY_SCORING: the weight of the survey question named {@code settingName}, or the recommendation
+ * threshold when {@code settingName} is {@code threshold}.
+ */
+public class SurveyScoringSetting implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private String settingName;
+  private double settingValue;
+
+  public String getSettingName() {
+    return settingName;
+  }
+
+  public void setSettingName(String settingName) {
+    this.settingName = settingName;
+  }
+
+  public double getSettingValue() {
+    return settingValue;
+  }
+
+  public void setSettingValue(double settingValue) {
+    this.settingValue = settingValue;
+  }
+
+}
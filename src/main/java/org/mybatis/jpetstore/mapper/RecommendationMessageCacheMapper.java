@@ -0,0 +1,69 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.mapper;
+
+import java.time.LocalDateTime;
+
+import org.mybatis.jpetstore.domain.CachedRecommendationMessage;
+
+public interface RecommendationMessageCacheMapper {
+
+  /**
+   * Gets a cached message that has not expired.
+   *
+   * @param promptHash
+   *          the SHA-256 of the model and prompt, in hex
+   * @param notBefore
+   *          messages cached before this time have expired
+   *
+   * @return the message, or null if none is cached or it expired
+   */
+  CachedRecommendationMessage getMessage(String promptHash, LocalDateTime notBefore);
+
+  /**
+   * Caches a message unless an unexpired one is already cached for the same prompt; an expired one is replaced.
+   *
+   * @param promptHash
+   *          the SHA-256 of the model and prompt, in hex
+   * @param message
+   *          the message
+   * @param notBefore
+   *          messages cached before this time have expired
+   */
+  void insertMessage(String promptHash, String message, LocalDateTime notBefore);
+
+  long countMessages();
+
+  /**
+   * Gets the creation time of a message by its rank among the newest.
+   *
+   * @param offset
+   *          the number of newer messages
+   *
+   * @return the creation time, or null if there are not that many messages
+   */
+  LocalDateTime getCreatedAtOffset(int offset);
+
+  /**
+   * Deletes the messages cached before a time.
+   *
+   * @param before
+   *          the time
+   *
+   * @return the number of messages deleted
+   */
+  int deleteMessagesCreatedBefore(LocalDateTime before);
+}
@@ -28,4 +28,22 @@ public interface RecommendationMessageMapper {
   void deleteMessagesForUser(String username);
 
   void insertRecommendationMessage(RecommendationMessage message);
+
+  /**
+   * Inserts or updates a set of messages in one multi-row MERGE, keyed by username and product id.
+   *
+   * @param messages
+   *          the messages, at least one
+   */
+  void upsertRecommendationMessages(List<RecommendationMessage> messages);
+
+  /**
+   * Deletes the messages of a user for every product not in a list.
+   *
+   * @param username
+   *          the username
+   * @param productIds
+   *          the products whose messages are kept; all messages are deleted if empty
+   */
+  void deleteMessagesForUserExcept(String username, List<String> productIds);
 }
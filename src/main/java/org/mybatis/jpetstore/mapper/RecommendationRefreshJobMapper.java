@@ -0,0 +1,143 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.mapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.mybatis.jpetstore.domain.RecommendationRefreshJob;
+
+public interface RecommendationRefreshJobMapper {
+
+  /**
+   * Queues a job, setting its generated id.
+   *
+   * @param job
+   *          the job
+   */
+  void insertJob(RecommendationRefreshJob job);
+
+  RecommendationRefreshJob getJob(long jobId);
+
+  /**
+   * Gets the latest job of a user that has not finished.
+   *
+   * @param username
+   *          the username
+   *
+   * @return the latest pending or running job, or null if there is none
+   */
+  RecommendationRefreshJob getActiveJob(String username);
+
+  /**
+   * Gets the latest job of a user, whatever its status.
+   *
+   * @param username
+   *          the username
+   *
+   * @return the latest job, or null if the user has none
+   */
+  RecommendationRefreshJob getLatestJob(String username);
+
+  /**
+   * Merges a new request into a job that is still pending: it becomes due now and, for a full request, a full refresh.
+   *
+   * @param jobId
+   *          the pending job
+   * @param fullRefresh
+   *          whether the new request is a full refresh
+   * @param now
+   *          the current time
+   *
+   * @return 1 if the job was still pending, 0 if a worker claimed it meanwhile
+   */
+  int supersedePendingJob(long jobId, boolean fullRefresh, LocalDateTime now);
+
+  /**
+   * Gets the jobs a worker may claim, oldest due first: pending jobs that are due and running jobs whose lease ran
+   * out, skipping users that already have a job running under a live lease.
+   *
+   * @param now
+   *          the current time
+   * @param limit
+   *          the maximum number of jobs
+   *
+   * @return the job ids
+   */
+  List<Long> getClaimableJobIds(LocalDateTime now, int limit);
+
+  /**
+   * Claims a job, counting an attempt.
+   *
+   * @param jobId
+   *          the job
+   * @param leaseOwner
+   *          the claiming worker pool
+   * @param leaseUntil
+   *          when the lease runs out unless renewed
+   * @param now
+   *          the current time
+   *
+   * @return 1 if claimed, 0 if the job is no longer claimable
+   */
+  int claimJob(long jobId, String leaseOwner, LocalDateTime leaseUntil, LocalDateTime now);
+
+  /**
+   * Extends the leases of every job a worker pool is running.
+   *
+   * @param leaseOwner
+   *          the worker pool
+   * @param leaseUntil
+   *          the new end of the leases
+   *
+   * @return the number of renewed leases
+   */
+  int renewLeases(String leaseOwner, LocalDateTime leaseUntil);
+
+  int completeJob(long jobId, String leaseOwner, LocalDateTime now);
+
+  /**
+   * Returns a claimed job to the queue after a failed attempt.
+   *
+   * @param jobId
+   *          the job
+   * @param leaseOwner
+   *          the worker pool holding the lease
+   * @param runAfter
+   *          when the job may be claimed again
+   * @param lastError
+   *          why the attempt failed
+   * @param now
+   *          the current time
+   *
+   * @return 1 if the lease was still held
+   */
+  int retryJob(long jobId, String leaseOwner, LocalDateTime runAfter, String lastError, LocalDateTime now);
+
+  int failJob(long jobId, String leaseOwner, String lastError, LocalDateTime now);
+
+  long countJobs(String jobStatus);
+
+  /**
+   * Deletes finished jobs last updated before a time.
+   *
+   * @param before
+   *          the cutoff
+   *
+   * @return the number of deleted jobs
+   */
+  int deleteFinishedJobs(LocalDateTime before);
+}
@@ -17,22 +17,64 @@ package org.mybatis.jpetstore.mapper;
 
 import java.util.List;
 
+import org.mybatis.jpetstore.domain.SurveyExclusionRule;
 import org.mybatis.jpetstore.domain.SurveyRecommendation;
+import org.mybatis.jpetstore.domain.SurveyScoringSetting;
 
 public interface SurveyRecommendationMapper {
 
+  /**
+   * Gets all survey recommendations with their {@link SurveyRecommendation#getRecommendedProductIds() product ids}.
+   *
+   * @return the survey recommendations, ordered by id
+   */
   List<SurveyRecommendation> getSurveyRecommendations();
 
-  SurveyRecommendation getSurveyRecommendationById(int surveyRecommendationId);
+  /**
+   * Gets the SURVEY_RECOMMENDATION_VERSION value, which changes whenever the survey recommendations are reloaded.
+   * SURVEY_RECOMMENDATIONS is only written by the script {@code RecommendationDataGenerator} generates, which bumps
+   * the version in the same script.
+   *
+   * @return the data version
+   */
+  long getDataVersion();
 
-  SurveyRecommendation getSurveyRecommendationBySurvey(String residenceEnv, String carePeriod, String petColorPref,
-      String petSizePref, String activityTime, String dietManagement);
+  /**
+   * Gets the exclusion rules applied on top of the survey recommendations.
+   *
+   * @return the rules, ordered by id
+   */
+  List<SurveyExclusionRule> getExclusionRules();
+
+  /**
+   * Gets the scoring weights and recommendation threshold.
+   *
+   * @return the settings, ordered by name
+   */
+  List<SurveyScoringSetting> getScoringSettings();
+
+  /**
+   * Gets all survey recommendations with their recommended_json_data and
+   * {@link SurveyRecommendation#getProductsChecksum() products checksum}, without product ids.
+   *
+   * @return the survey recommendations, ordered by id
+   */
+  List<SurveyRecommendation> getSurveyRecommendationSources();
+
+  List<String> getRecommendedProductIds(int surveyRecommendationId);
 
-  void insertSurveyRecommendation(SurveyRecommendation surveyRecommendation);
+  List<Integer> getSurveyRecommendationIdsByProduct(String productId);
 
-  void updateSurveyRecommendation(SurveyRecommendation surveyRecommendation);
+  void insertRecommendedProduct(int surveyRecommendationId, String productId, int seq);
 
-  void deleteSurveyRecommendation(int surveyRecommendationId);
+  void updateProductsChecksum(int surveyRecommendationId, int productsChecksum);
+
+  void deleteRecommendedProducts(int surveyRecommendationId);
+
+  SurveyRecommendation getSurveyRecommendationById(int surveyRecommendationId);
+
+  SurveyRecommendation getSurveyRecommendationBySurvey(String residenceEnv, String carePeriod, String petColorPref,
+      String petSizePref, String activityTime, String dietManagement);
 
   SurveyRecommendation getSurveyRecommendationByPreferences(String residenceEnv, String carePeriod, String petColorPref,
       String petSizePref, String activityTime, String dietManagement);
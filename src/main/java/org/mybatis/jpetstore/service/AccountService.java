@@ -15,10 +15,14 @@
  */
 package org.mybatis.jpetstore.service;
 
+import java.util.Arrays;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.mybatis.jpetstore.domain.Account;
 import org.mybatis.jpetstore.mapper.AccountMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronization;
@@ -33,11 +37,29 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 public class AccountService {
 
   private final AccountMapper accountMapper;
-  private final RecommendationMessageService recommendationMessageService;
+  private final RecommendationRefreshScheduler recommendationRefreshScheduler;
+  private final Set<String> adminUsernames;
 
-  public AccountService(AccountMapper accountMapper, RecommendationMessageService recommendationMessageService) {
+  public AccountService(AccountMapper accountMapper, RecommendationRefreshScheduler recommendationRefreshScheduler,
+      @Value("${jpetstore.admin-usernames:}") String adminUsernames) {
     this.accountMapper = accountMapper;
-    this.recommendationMessageService = recommendationMessageService;
+    this.recommendationRefreshScheduler = recommendationRefreshScheduler;
+    this.adminUsernames = adminUsernames == null ? Set.of()
+        : Arrays.stream(adminUsernames.split(",")).map(String::trim).filter(username -> !username.isEmpty())
+            .collect(Collectors.toUnmodifiableSet());
+  }
+
+  /**
+   * Whether a user may run administrative operations, such as reloading the survey recommendation data. Admins are
+   * listed in {@code jpetstore.admin-usernames}, comma separated; there are none by default.
+   *
+   * @param username
+   *          the username
+   *
+   * @return true if the user is an admin
+   */
+  public boolean isAdmin(String username) {
+    return username != null && adminUsernames.contains(username);
   }
 
   public Account getAccount(String username) {
@@ -81,8 +103,9 @@ public class AccountService {
   }
 
   /**
-   * Refresh recommendation messages for an account. This should be called after updateAccount() to ensure
-   * recommendations are regenerated.
+   * Wait for the recommendation messages of a new account. insertAccount() schedules their refresh once it commits,
+   * so this joins that refresh, even if it already finished, rather than starting a second one. It only schedules one
+   * if the user has no refresh at all.
    *
    * @param username
    *          the username to refresh recommendations for
@@ -92,11 +115,25 @@ public class AccountService {
       return;
     }
 
-    // Fetch the latest account data from DB
-    Account latestAccount = accountMapper.getAccountByUsername(username);
-    if (latestAccount != null) {
-      recommendationMessageService.refreshRecommendations(latestAccount);
+    recommendationRefreshScheduler.await(recommendationRefreshScheduler.join(username));
+  }
+
+  /**
+   * Refresh recommendation messages for an account after a survey edit, regenerating only the messages the changed
+   * answers affect, and wait for them. This should be called after updateAccount() with the account as it was before
+   * the update. A refresh already waiting for the user is superseded by this one.
+   *
+   * @param username
+   *          the username to refresh recommendations for
+   * @param previous
+   *          the account before the update
+   */
+  public void refreshRecommendationsForUser(String username, Account previous) {
+    if (username == null) {
+      return;
     }
+
+    recommendationRefreshScheduler.await(recommendationRefreshScheduler.schedule(username, previous));
   }
 
   private void triggerRecommendationRefresh(Account account) {
@@ -104,33 +141,18 @@ public class AccountService {
       return;
     }
 
-    // Create a copy of the account to avoid issues with transaction state
-    Account accountSnapshot = new Account();
-    accountSnapshot.setUsername(account.getUsername());
-    accountSnapshot.setResidenceEnv(account.getResidenceEnv());
-    accountSnapshot.setCarePeriod(account.getCarePeriod());
-    accountSnapshot.setPetColorPref(account.getPetColorPref());
-    accountSnapshot.setPetSizePref(account.getPetSizePref());
-    accountSnapshot.setActivityTime(account.getActivityTime());
-    accountSnapshot.setDietManagement(account.getDietManagement());
-
+    String username = account.getUsername();
     if (TransactionSynchronizationManager.isSynchronizationActive()) {
       TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
         @Override
         public void afterCommit() {
-          // After commit, fetch the latest account data from DB to ensure we have the most up-to-date information
-          Account latestAccount = accountMapper.getAccountByUsername(accountSnapshot.getUsername());
-          if (latestAccount != null) {
-            recommendationMessageService.refreshRecommendations(latestAccount);
-          } else {
-            // Fallback to snapshot if DB fetch fails
-            recommendationMessageService.refreshRecommendations(accountSnapshot);
-          }
+          // After commit, the refresh reads the latest account data from DB when it starts
+          recommendationRefreshScheduler.schedule(username, null);
         }
       });
     } else {
-      // If no transaction, use the account directly
-      recommendationMessageService.refreshRecommendations(accountSnapshot);
+      // If no transaction, the account is already visible to the refresh
+      recommendationRefreshScheduler.schedule(username, null);
     }
   }
 
@@ -17,13 +17,18 @@ package org.mybatis.jpetstore.service;
 
 import java.util.concurrent.Executor;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Configuration
 @EnableAsync
+@EnableScheduling
 public class AsyncConfig {
 
   @Bean(name = "recommendationTaskExecutor")
@@ -36,4 +41,57 @@ public class AsyncConfig {
     executor.initialize();
     return executor;
   }
+
+  /**
+   * Runs the recommendation refresh jobs claimed by {@link RecommendationRefreshScheduler}, one per thread. Jobs are
+   * only claimed for idle workers, so the queue merely absorbs a worker handing over to the next job.
+   *
+   * @param workers
+   *          the number of refreshes run at once
+   *
+   * @return the executor
+   */
+  @Bean(name = "recommendationRefreshExecutor")
+  public Executor recommendationRefreshExecutor(@Value("${jpetstore.recommendations.refresh-workers:2}") int workers) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(workers);
+    executor.setMaxPoolSize(workers);
+    executor.setQueueCapacity(workers);
+    executor.setThreadNamePrefix("recommendation-refresh-");
+    executor.initialize();
+    return executor;
+  }
+
+  /**
+   * Runs the per-product OpenAI calls of a recommendation refresh. The calls spend their time waiting on the API, so
+   * each gets its own thread, virtual where the JDK supports it, and the concurrency limit alone bounds how many
+   * requests are in flight.
+   *
+   * @param concurrency
+   *          the maximum number of concurrent OpenAI calls
+   *
+   * @return the executor
+   */
+  @Bean(name = "recommendationMessageExecutor")
+  public AsyncTaskExecutor recommendationMessageExecutor(
+      @Value("${jpetstore.recommendations.message-concurrency:8}") int concurrency) {
+    return messageExecutor(concurrency, Runtime.version().feature());
+  }
+
+  /**
+   * Creates the recommendation message executor. Submitting a task blocks while {@code concurrency} tasks are running.
+   *
+   * @param concurrency
+   *          the maximum number of tasks running at once
+   * @param javaVersion
+   *          the feature version of the running JDK; virtual threads are used from 21, platform threads before
+   *
+   * @return the executor
+   */
+  static AsyncTaskExecutor messageExecutor(int concurrency, int javaVersion) {
+    SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("recommendation-message-");
+    executor.setConcurrencyLimit(concurrency);
+    executor.setVirtualThreads(javaVersion >= 21);
+    return executor;
+  }
 }
@@ -0,0 +1,176 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.mybatis.jpetstore.domain.Account;
+import org.mybatis.jpetstore.domain.Product;
+import org.mybatis.jpetstore.domain.SurveyDimension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The prompt asking for the messages of several products in one chat completion, and the parsing of its JSON answer.
+ * A batched message is cached under {@link #entryKey}, the hash of the batched prompt with only its own product, so
+ * it is never served for the single-product prompt, which sends different inputs.
+ */
+final class BatchedRecommendationMessages {
+
+  private static final Logger logger = LoggerFactory.getLogger(BatchedRecommendationMessages.class);
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  // Longest message accepted from a batched completion; the prompt asks for at most 150 characters
+  static final int MAX_MESSAGE_LENGTH = 300;
+  // Survey condition names as the prompt labels them
+  private static final Map<String, String> CONDITION_LABELS = Map.of("residenceEnv", "Living Environment",
+      "carePeriod", "Pet Care Period", "petColorPref", "Pet Color Preference", "petSizePref", "Pet Size Preference",
+      "activityTime", "Activity Time", "dietManagement", "Diet Management");
+
+  private BatchedRecommendationMessages() {
+  }
+
+  /**
+   * Builds the batched prompt: every product with its verdict and the user's answers to the conditions to mention.
+   * Like the single-product prompt, it sends no other answer, so a message only depends on the answers it mentions.
+   *
+   * @param account
+   *          the user account with survey preferences
+   * @param products
+   *          the products to generate recommendation messages for
+   * @param verdicts
+   *          the verdict of each product, keyed by product id
+   *
+   * @return the prompt
+   */
+  static String prompt(Account account, List<Product> products, Map<String, RecommendationVerdict> verdicts) {
+    StringBuilder promptBuilder = new StringBuilder();
+    promptBuilder.append("You are a pet recommendation assistant. For each pet below, generate a brief, friendly ");
+    promptBuilder.append("message for this user.\n\n");
+
+    promptBuilder.append("Pets:\n");
+    for (Product product : products) {
+      RecommendationVerdict verdict = verdictOf(verdicts, product);
+      promptBuilder.append("- Product ID: ").append(product.getProductId()).append("\n");
+      promptBuilder.append("  - Name: ").append(product.getName()).append("\n");
+      promptBuilder.append("  - Category: ").append(product.getCategoryId()).append("\n");
+      if (product.getDescription() != null) {
+        // Remove HTML tags from description for cleaner prompt
+        String cleanDescription = product.getDescription().replaceAll("<[^>]+>", "").trim();
+        if (!cleanDescription.isEmpty()) {
+          promptBuilder.append("  - Description: ").append(cleanDescription).append("\n");
+        }
+      }
+      if (verdict.isRecommended()) {
+        promptBuilder.append("  - Verdict: RECOMMENDED. Matching user preferences (ONLY mention these):\n");
+      } else {
+        promptBuilder.append("  - Verdict: NOT RECOMMENDED. Mismatching user preferences (explain why these don't ");
+        promptBuilder.append("match):\n");
+      }
+      // In SurveyDimension order, so the prompt and its cache key do not depend on the set's iteration order
+      int mentioned = 0;
+      for (SurveyDimension dimension : SurveyDimension.values()) {
+        String answer = dimension.getValue(account);
+        if (verdict.getConditionsToMention().contains(dimension.getConditionName()) && answer != null) {
+          promptBuilder.append("    - ").append(CONDITION_LABELS.get(dimension.getConditionName())).append(": ")
+              .append(answer).append("\n");
+          mentioned++;
+        }
+      }
+      if (mentioned == 0) {
+        promptBuilder.append(verdict.isRecommended() ? "    (No specific preferences matched)\n"
+            : "    (General mismatch with user preferences)\n");
+      }
+    }
+
+    promptBuilder.append("\nIMPORTANT: Each message may only mention the preferences listed under its own pet. ");
+    promptBuilder.append("Do NOT mention any preference that is not listed there.\n");
+    promptBuilder.append("For a RECOMMENDED pet, explain why it is a good match, mentioning ONLY its matching ");
+    promptBuilder.append("preferences. For a NOT RECOMMENDED pet, explain why it may not be ideal using its ");
+    promptBuilder.append("mismatching preferences. Be polite and constructive.\n");
+    promptBuilder.append("Each message must be concise (maximum 150 characters), in English, without any prefix.\n");
+    promptBuilder.append("Output ONLY a JSON array with one object per pet, in the order above, where each object ");
+    promptBuilder.append("has 'productId' and 'message' fields. Example output:\n");
+    promptBuilder.append("[\n    {\"productId\": \"FI-FW-01\", \"message\": \"...\"}\n]");
+    return promptBuilder.toString();
+  }
+
+  /**
+   * Computes the cache key of one product's batched message from the inputs the batched prompt sends for it: the
+   * instructions and the product's own entry, with the answers it mentions. The other products of the batch are left
+   * out, so the message is reused whatever it was batched with and by any user giving the same mentioned answers.
+   *
+   * @param model
+   *          the model the prompt is sent to
+   * @param account
+   *          the user account with survey preferences
+   * @param product
+   *          the product
+   * @param verdicts
+   *          the verdict of each product, keyed by product id
+   *
+   * @return the cache key
+   */
+  static String entryKey(String model, Account account, Product product, Map<String, RecommendationVerdict> verdicts) {
+    return RecommendationMessageCache.key(model, prompt(account, List.of(product), verdicts));
+  }
+
+  /**
+   * Parses the JSON array of a batched completion, keeping the entries of expected products with a non-blank message
+   * of acceptable length. Text around the array, such as a Markdown code fence, is ignored.
+   *
+   * @param response
+   *          the completion
+   * @param productIds
+   *          the ids of the products sent in the batch
+   *
+   * @return the valid messages keyed by product id; the first entry wins for a repeated id
+   *
+   * @throws IOException
+   *           if the completion holds no JSON array
+   */
+  static Map<String, String> parse(String response, Set<String> productIds) throws IOException {
+    int start = response.indexOf('[');
+    int end = response.lastIndexOf(']');
+    if (start < 0 || end < start) {
+      throw new IOException("No JSON array in batched completion");
+    }
+    JsonNode array = OBJECT_MAPPER.readTree(response.substring(start, end + 1));
+    Map<String, String> messages = new HashMap<>();
+    for (JsonNode entry : array) {
+      String productId = entry.path("productId").asText();
+      String message = entry.path("message").asText().trim();
+      if (productIds.contains(productId) && !message.isEmpty() && message.length() <= MAX_MESSAGE_LENGTH
+          && !messages.containsKey(productId)) {
+        messages.put(productId, message);
+      } else {
+        logger.debug("Discarding batched recommendation message entry: {}", entry);
+      }
+    }
+    return messages;
+  }
+
+  static RecommendationVerdict verdictOf(Map<String, RecommendationVerdict> verdicts, Product product) {
+    RecommendationVerdict verdict = verdicts.get(product.getProductId());
+    return verdict != null ? verdict : RecommendationVerdict.notRecommended(product.getProductId());
+  }
+}
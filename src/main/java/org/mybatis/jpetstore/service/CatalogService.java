@@ -15,20 +15,33 @@
  */
 package org.mybatis.jpetstore.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.mybatis.jpetstore.domain.Category;
 import org.mybatis.jpetstore.domain.Item;
 import org.mybatis.jpetstore.domain.Product;
+import org.mybatis.jpetstore.domain.SurveyDimension;
 import org.mybatis.jpetstore.domain.SurveyRecommendation;
 import org.mybatis.jpetstore.mapper.CategoryMapper;
 import org.mybatis.jpetstore.mapper.ItemMapper;
 import org.mybatis.jpetstore.mapper.ProductMapper;
 import org.mybatis.jpetstore.mapper.SurveyRecommendationMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 /**
@@ -39,28 +52,46 @@ import org.springframework.stereotype.Service;
 @Service
 public class CatalogService {
 
-  // Weight values for each survey condition (total = 10.0)
-  private static final double WEIGHT_RESIDENCE_ENV = 3.0; // Most important (30%)
-  private static final double WEIGHT_PET_SIZE_PREF = 2.5; // Very important (25%)
-  private static final double WEIGHT_CARE_PERIOD = 1.5; // Important (15%)
-  private static final double WEIGHT_DIET_MANAGEMENT = 1.0; // Moderate (10%)
-  private static final double WEIGHT_ACTIVITY_TIME = 1.0; // Moderate (10%)
-  private static final double WEIGHT_PET_COLOR_PREF = 1.0; // Least important (10%)
-  private static final double RECOMMENDATION_THRESHOLD = 7.5; // 75% of total weight (10.0) - stricter criteria
+  private static final Logger logger = LoggerFactory.getLogger(CatalogService.class);
+
+  // Nearest rows kept per survey profile for the live recommendation fallback
+  private static final int NEIGHBOURS_PER_PROFILE = 5;
 
   private final CategoryMapper categoryMapper;
   private final ItemMapper itemMapper;
   private final ProductMapper productMapper;
   private final SurveyRecommendationMapper surveyRecommendationMapper;
-  private final OpenAiRecommendationService openAiRecommendationService;
+  private final SurveyRecommendationMigrationService migrationService;
+  private final RecommendationMessageGenerator messageGenerator;
+  private final TemplateRecommendationMessageGenerator templateMessageGenerator;
+
+  private final AtomicReference<RecommendationSnapshot> snapshot = new AtomicReference<>();
+  private final AtomicLong snapshotVersions = new AtomicLong();
+  private final Object snapshotLock = new Object();
 
   public CatalogService(CategoryMapper categoryMapper, ItemMapper itemMapper, ProductMapper productMapper,
-      SurveyRecommendationMapper surveyRecommendationMapper, OpenAiRecommendationService openAiRecommendationService) {
+      SurveyRecommendationMapper surveyRecommendationMapper, SurveyRecommendationMigrationService migrationService,
+      OpenAiRecommendationService openAiRecommendationService,
+      TemplateRecommendationMessageGenerator templateMessageGenerator,
+      @Value("${jpetstore.recommendations.message-generator:openai}") String messageGeneratorName) {
     this.categoryMapper = categoryMapper;
     this.itemMapper = itemMapper;
     this.productMapper = productMapper;
     this.surveyRecommendationMapper = surveyRecommendationMapper;
-    this.openAiRecommendationService = openAiRecommendationService;
+    this.migrationService = migrationService;
+    this.templateMessageGenerator = templateMessageGenerator;
+    this.messageGenerator = TemplateRecommendationMessageGenerator.NAME.equals(messageGeneratorName)
+        ? templateMessageGenerator : openAiRecommendationService;
+  }
+
+  /**
+   * Name of the generator writing recommendation messages, selected with
+   * {@code jpetstore.recommendations.message-generator}.
+   *
+   * @return the generator name
+   */
+  public String getMessageGeneratorName() {
+    return messageGenerator.getName();
   }
 
   public List<Category> getCategoryList() {
@@ -134,23 +165,15 @@ public class CatalogService {
       return false;
     }
 
-    // Check if account has all required survey preferences
-    String residenceEnv = account.getResidenceEnv();
-    String carePeriod = account.getCarePeriod();
-    String petColorPref = account.getPetColorPref();
-    String petSizePref = account.getPetSizePref();
-    String activityTime = account.getActivityTime();
-    String dietManagement = account.getDietManagement();
-
-    // All 6 survey fields must be non-null and non-empty
-    return residenceEnv != null && !residenceEnv.isEmpty() && carePeriod != null && !carePeriod.isEmpty()
-        && petColorPref != null && !petColorPref.isEmpty() && petSizePref != null && !petSizePref.isEmpty()
-        && activityTime != null && !activityTime.isEmpty() && dietManagement != null && !dietManagement.isEmpty();
+    // All 6 survey fields must be non-null and non-empty, which the cached survey key already records
+    return account.getSurveyKey() != SurveyDimension.INCOMPLETE_SURVEY_KEY;
   }
 
   /**
    * Check if a product is recommended for the given account based on survey preferences. A product is recommended if
-   * the weighted score of matching conditions is at least 6.5 out of 10.0 (65%).
+   * it is listed by a survey recommendation whose weighted score of matching conditions reaches the
+   * {@link SurveyScoring} threshold (by default 7.5 out of 10.0). The survey recommendations are evaluated against the
+   * in-memory {@link SurveyRecommendationIndex}.
    *
    * @param account
    *          the account with survey preferences
@@ -160,169 +183,352 @@ public class CatalogService {
    * @return true if the product is recommended, false otherwise
    */
   public boolean isProductRecommended(org.mybatis.jpetstore.domain.Account account, String productId) {
-    if (account == null || productId == null) {
-      return false;
+    // evaluate() also checks that the account has completed the survey
+    return evaluate(account, productId).isRecommended();
+  }
+
+  /**
+   * Evaluates one product for an account: whether it is recommended, the weighted score and id of the survey
+   * recommendation that explains it, and which survey conditions matched and did not match that row, all from a single
+   * pass over the in-memory {@link SurveyRecommendationIndex}.
+   *
+   * @param account
+   *          the account with survey preferences
+   * @param productId
+   *          the product ID to evaluate
+   *
+   * @return the verdict; not recommended and unexplained if the survey is incomplete or evaluation fails
+   */
+  public RecommendationVerdict evaluate(org.mybatis.jpetstore.domain.Account account, String productId) {
+    if (account == null || productId == null || !hasCompletedSurvey(account)) {
+      return RecommendationVerdict.notRecommended(productId);
     }
 
-    // First check if account has completed the survey
-    if (!hasCompletedSurvey(account)) {
-      return false;
+    try {
+      RecommendationSnapshot current = getRecommendationSnapshot();
+      int profileKey = SurveyDimension.profileKey(account);
+      if (profileKey >= 0) {
+        return current.getProfileVerdicts().get(profileKey, productId);
+      }
+      SurveyRecommendationIndex index = current.getIndex();
+      int productOrdinal = index.productOrdinal(productId);
+      return index.evaluate(index.encode(account), productId,
+          productOrdinal >= 0 && current.getExclusionRules().excludedProducts(account).get(productOrdinal));
+    } catch (Exception e) {
+      // Log error but don't break the page
+      System.err.println("Error checking product recommendation for productId: " + productId);
+      System.err.println("Error message: " + e.getMessage());
+      e.printStackTrace();
+      return RecommendationVerdict.notRecommended(productId);
     }
+  }
 
-    // Get survey preferences (already validated in hasCompletedSurvey)
-    String residenceEnv = account.getResidenceEnv();
-    String carePeriod = account.getCarePeriod();
-    String petColorPref = account.getPetColorPref();
-    String petSizePref = account.getPetSizePref();
-    String activityTime = account.getActivityTime();
-    String dietManagement = account.getDietManagement();
+  /**
+   * Evaluates a whole product list for an account in one pass over the survey recommendations, instead of one
+   * {@link #isProductRecommended} and one condition scan per product. The verdicts agree with
+   * {@link #isProductRecommended} and with the conditions {@link #getRecommendationMessage} mentions.
+   *
+   * @param account
+   *          the account with survey preferences
+   * @param products
+   *          the products to evaluate
+   *
+   * @return the verdict of each product keyed by product id, in list order; empty if the survey is incomplete
+   */
+  public Map<String, RecommendationVerdict> evaluate(org.mybatis.jpetstore.domain.Account account,
+      List<Product> products) {
+    Map<String, RecommendationVerdict> verdicts = new LinkedHashMap<>();
+    if (account == null || products == null || products.isEmpty() || !hasCompletedSurvey(account)) {
+      return verdicts;
+    }
 
     try {
-      // Get product to check its category
-      Product product = productMapper.getProduct(productId);
-      if (product == null) {
-        System.out.println("=== Product not found for productId: " + productId + " ===");
-        return false;
+      RecommendationSnapshot current = getRecommendationSnapshot();
+      int profileKey = SurveyDimension.profileKey(account);
+      SurveyRecommendationIndex index = current.getIndex();
+      RecommendationVerdict[] all;
+      if (profileKey >= 0) {
+        all = current.getProfileVerdicts().get(profileKey);
+      } else {
+        all = index.evaluate(index.encode(account), current.getExclusionRules().excludedProducts(account));
       }
-      String categoryId = product.getCategoryId();
-
-      // Logic check: Fish products (FI-FW-*, FI-SW-*) should not be recommended for Dry environment
-      if (residenceEnv != null && residenceEnv.trim().equals("Dry environment")) {
-        if (productId.startsWith("FI-FW-") || productId.startsWith("FI-SW-")) {
-          System.out.println("=== Fish product " + productId + " excluded for Dry environment ===");
-          return false;
-        }
+      for (Product product : products) {
+        String productId = product.getProductId();
+        int ordinal = index.productOrdinal(productId);
+        verdicts.put(productId, ordinal < 0 ? RecommendationVerdict.notRecommended(productId) : all[ordinal]);
       }
+    } catch (Exception e) {
+      // Log error but don't break the page
+      System.err.println("Error evaluating product recommendations: " + e.getMessage());
+      e.printStackTrace();
+      verdicts.clear();
+    }
+    return verdicts;
+  }
 
-      // Get all survey recommendations
-      List<SurveyRecommendation> allRecommendations = surveyRecommendationMapper.getSurveyRecommendations();
-
-      // Debug: Log user's survey preferences
-      System.out.println("=== Checking recommendation for productId: " + productId + " ===");
-      System.out.println("User preferences:");
-      System.out.println("  residenceEnv: [" + residenceEnv + "]");
-      System.out.println("  carePeriod: [" + carePeriod + "]");
-      System.out.println("  petColorPref: [" + petColorPref + "]");
-      System.out.println("  petSizePref: [" + petSizePref + "]");
-      System.out.println("  activityTime: [" + activityTime + "]");
-      System.out.println("  dietManagement: [" + dietManagement + "]");
-      System.out.println("Total recommendations in DB: " + allRecommendations.size());
-
-      ObjectMapper mapper = new ObjectMapper();
-
-      // Check each recommendation using weighted scoring (threshold: 6.5/10.0)
-      for (SurveyRecommendation recommendation : allRecommendations) {
-        if (recommendation.getRecommendedJsonData() == null) {
-          continue;
-        }
-
-        // Calculate weighted score for matching conditions
-        double weightedScore = 0.0;
-        if (residenceEnv != null && recommendation.getResidenceEnv() != null
-            && residenceEnv.trim().equals(recommendation.getResidenceEnv().trim())) {
-          weightedScore += WEIGHT_RESIDENCE_ENV;
-          System.out.println("    ✓ residenceEnv match: [" + residenceEnv.trim() + "] = ["
-              + recommendation.getResidenceEnv().trim() + "] (+" + WEIGHT_RESIDENCE_ENV + ")");
-        } else {
-          System.out.println("    ✗ residenceEnv mismatch: user=[" + residenceEnv + "] vs DB=["
-              + recommendation.getResidenceEnv() + "]");
-        }
-        if (petSizePref != null && recommendation.getPetSizePref() != null
-            && petSizePref.trim().equals(recommendation.getPetSizePref().trim())) {
-          weightedScore += WEIGHT_PET_SIZE_PREF;
-          System.out.println("    ✓ petSizePref match: [" + petSizePref.trim() + "] = ["
-              + recommendation.getPetSizePref().trim() + "] (+" + WEIGHT_PET_SIZE_PREF + ")");
-        } else {
-          System.out.println(
-              "    ✗ petSizePref mismatch: user=[" + petSizePref + "] vs DB=[" + recommendation.getPetSizePref() + "]");
-        }
-        if (carePeriod != null && recommendation.getCarePeriod() != null
-            && carePeriod.trim().equals(recommendation.getCarePeriod().trim())) {
-          weightedScore += WEIGHT_CARE_PERIOD;
-          System.out.println("    ✓ carePeriod match: [" + carePeriod.trim() + "] = ["
-              + recommendation.getCarePeriod().trim() + "] (+" + WEIGHT_CARE_PERIOD + ")");
-        } else {
-          System.out.println(
-              "    ✗ carePeriod mismatch: user=[" + carePeriod + "] vs DB=[" + recommendation.getCarePeriod() + "]");
-        }
-        if (dietManagement != null && recommendation.getDietManagement() != null
-            && dietManagement.trim().equals(recommendation.getDietManagement().trim())) {
-          weightedScore += WEIGHT_DIET_MANAGEMENT;
-          System.out.println("    ✓ dietManagement match: [" + dietManagement.trim() + "] = ["
-              + recommendation.getDietManagement().trim() + "] (+" + WEIGHT_DIET_MANAGEMENT + ")");
-        } else {
-          System.out.println("    ✗ dietManagement mismatch: user=[" + dietManagement + "] vs DB=["
-              + recommendation.getDietManagement() + "]");
-        }
-        if (activityTime != null && recommendation.getActivityTime() != null
-            && activityTime.trim().equals(recommendation.getActivityTime().trim())) {
-          weightedScore += WEIGHT_ACTIVITY_TIME;
-          System.out.println("    ✓ activityTime match: [" + activityTime.trim() + "] = ["
-              + recommendation.getActivityTime().trim() + "] (+" + WEIGHT_ACTIVITY_TIME + ")");
-        } else {
-          System.out.println("    ✗ activityTime mismatch: user=[" + activityTime + "] vs DB=["
-              + recommendation.getActivityTime() + "]");
-        }
-        if (petColorPref != null && recommendation.getPetColorPref() != null
-            && petColorPref.trim().equals(recommendation.getPetColorPref().trim())) {
-          weightedScore += WEIGHT_PET_COLOR_PREF;
-          System.out.println("    ✓ petColorPref match: [" + petColorPref.trim() + "] = ["
-              + recommendation.getPetColorPref().trim() + "] (+" + WEIGHT_PET_COLOR_PREF + ")");
-        } else {
-          System.out.println("    ✗ petColorPref mismatch: user=[" + petColorPref + "] vs DB=["
-              + recommendation.getPetColorPref() + "]");
-        }
+  /**
+   * Ranks the whole catalogue by fit for an account. See {@link #rankRecommendations(Account, List, int)}.
+   *
+   * @param account
+   *          the account with survey preferences
+   * @param k
+   *          the maximum number of products to return
+   *
+   * @return the best products, best first
+   */
+  public List<RecommendationVerdict> rankRecommendations(org.mybatis.jpetstore.domain.Account account, int k) {
+    return rankRecommendations(account, null, k);
+  }
 
-        // Debug: Log weighted score for ALL recommendations (to debug threshold issues)
-        System.out.println("Recommendation ID " + recommendation.getSurveyRecommendationId() + " weighted score: "
-            + String.format("%.2f", weightedScore) + "/10.0 (threshold: " + RECOMMENDATION_THRESHOLD + ")");
-        System.out.println("  DB values: [" + recommendation.getResidenceEnv() + "], [" + recommendation.getCarePeriod()
-            + "], [" + recommendation.getPetColorPref() + "], [" + recommendation.getPetSizePref() + "], ["
-            + recommendation.getActivityTime() + "], [" + recommendation.getDietManagement() + "]");
-        if (weightedScore >= RECOMMENDATION_THRESHOLD) {
-          System.out.println("  ✓ Score meets threshold - checking if product is in recommendation list");
-        } else {
-          System.out.println("  ✗ Score below threshold - skipping this recommendation");
-        }
+  /**
+   * Ranks products by their best weighted survey score for an account and returns the top {@code k}, e.g. to sort a
+   * category page by fit or to show the best few for a user. Each verdict is explained by the product's best-scoring
+   * row, so its score and matching conditions are the ones that placed it; it is recommended if that score clears the
+   * threshold. Products no row lists and products excluded for the account's residence are left out. Served from
+   * best rows precomputed per profile, so ranking costs O(products log k) and never touches the database.
+   *
+   * @param account
+   *          the account with survey preferences
+   * @param products
+   *          the products to rank, or null for the whole catalogue
+   * @param k
+   *          the maximum number of products to return
+   *
+   * @return the best products, best first; empty if the survey is incomplete
+   */
+  public List<RecommendationVerdict> rankRecommendations(org.mybatis.jpetstore.domain.Account account,
+      List<Product> products, int k) {
+    if (account == null || !hasCompletedSurvey(account)) {
+      return Collections.emptyList();
+    }
 
-        // If weighted score meets threshold (6.5/10.0), check if productId is in recommendations
-        // Use strict comparison: must be >= 6.5 (not just >= 6.0)
-        if (weightedScore >= RECOMMENDATION_THRESHOLD) {
-          System.out.println("  ✓ Score " + String.format("%.2f", weightedScore) + " >= threshold "
-              + RECOMMENDATION_THRESHOLD + " - checking product list");
-          JsonNode jsonArray = mapper.readTree(recommendation.getRecommendedJsonData());
-
-          if (jsonArray.isArray()) {
-            System.out.println("  Checking JSON array for productId: " + productId);
-            for (JsonNode node : jsonArray) {
-              if (node.has("productId")) {
-                String recProductId = node.get("productId").asText();
-                System.out.println("    Found productId in recommendation: " + recProductId);
-                if (productId.equals(recProductId)) {
-                  System.out.println("    *** MATCH FOUND! Product is RECOMMENDED (score: "
-                      + String.format("%.2f", weightedScore) + ") ***");
-                  return true;
-                }
-              }
-            }
-            System.out.println("  ProductId " + productId + " not found in this recommendation's JSON");
+    try {
+      RecommendationSnapshot current = getRecommendationSnapshot();
+      SurveyRecommendationIndex index = current.getIndex();
+      BitSet candidates = null;
+      if (products != null) {
+        candidates = new BitSet(index.getProductCount());
+        for (Product product : products) {
+          int ordinal = index.productOrdinal(product.getProductId());
+          if (ordinal >= 0) {
+            candidates.set(ordinal);
           }
-        } else {
-          System.out.println("  ✗ Score " + String.format("%.2f", weightedScore) + " < threshold "
-              + RECOMMENDATION_THRESHOLD + " - skipping");
         }
       }
-      System.out.println("=== No recommendation found for productId: " + productId + " ===");
+      int profileKey = SurveyDimension.profileKey(account);
+      if (profileKey >= 0) {
+        return current.getProfileVerdicts().rank(profileKey, candidates, k);
+      }
+      int[] profile = index.encode(account);
+      int[] bestRows = new int[index.getProductCount()];
+      index.bestRows(profile, current.getExclusionRules().excludedProducts(account), bestRows, 0);
+      return index.rank(profile, bestRows, 0, candidates, k);
     } catch (Exception e) {
       // Log error but don't break the page
-      System.err.println("Error checking product recommendation for productId: " + productId);
-      System.err.println("Error message: " + e.getMessage());
-      System.err.println("Error class: " + e.getClass().getName());
+      System.err.println("Error ranking product recommendations: " + e.getMessage());
       e.printStackTrace();
-      return false;
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * Previews the survey recommendations for answers that have not been saved, possibly with questions left
+   * unanswered. Unanswered questions are expanded to every option and each product is counted over the resulting
+   * complete profiles, using the verdicts materialized in the current snapshot. Nothing is written and no LLM is
+   * called, so this is cheap enough to run on every change of the survey form.
+   *
+   * @param answers
+   *          the answer to each question; missing or blank answers are treated as unanswered
+   *
+   * @return the preview
+   *
+   * @throws IllegalArgumentException
+   *           if an answer is not one of the options of its question
+   */
+  public RecommendationPreview previewRecommendations(Map<SurveyDimension, String> answers) {
+    int[] partialProfile = new int[SurveyDimension.values().length];
+    int answered = 0;
+    for (SurveyDimension dimension : SurveyDimension.values()) {
+      String answer = answers.get(dimension);
+      if (answer == null || answer.trim().isEmpty()) {
+        partialProfile[dimension.ordinal()] = -1;
+        continue;
+      }
+      int ordinal = dimension.ordinalOf(answer);
+      if (ordinal < 0) {
+        throw new IllegalArgumentException("Unknown answer for " + dimension.getConditionName() + ": " + answer);
+      }
+      partialProfile[dimension.ordinal()] = ordinal;
+      answered++;
     }
 
-    return false;
+    SurveyProfileVerdicts profileVerdicts = getRecommendationSnapshot().getProfileVerdicts();
+    SurveyRecommendationIndex index = profileVerdicts.getIndex();
+    int[] recommendedCounts = new int[index.getProductCount()];
+    int completions = profileVerdicts.countRecommended(partialProfile, recommendedCounts);
+    int profileKey = completions == 1 ? SurveyDimension.profileKey(partialProfile) : -1;
+
+    List<RecommendationPreview.ProductPreview> products = new ArrayList<>();
+    for (int p = 0; p < recommendedCounts.length; p++) {
+      if (recommendedCounts[p] > 0) {
+        Product product = index.getProduct(p);
+        products.add(new RecommendationPreview.ProductPreview(product, recommendedCounts[p], completions,
+            profileKey < 0 ? null : profileVerdicts.get(profileKey, product.getProductId())));
+      }
+    }
+    // Stable sort keeps catalogue order among equally likely products
+    products.sort(Comparator.comparingInt(RecommendationPreview.ProductPreview::getRecommendedCompletions).reversed());
+    return new RecommendationPreview(answered, completions, products);
+  }
+
+  /**
+   * Finds the survey recommendation whose six answers exactly match the account's survey, with the item shown for each
+   * recommended product. This is served from memory and does not touch the database.
+   *
+   * @param account
+   *          the account with survey preferences
+   *
+   * @return the exact match, or null if the survey is incomplete or no row matches
+   */
+  public SurveyProfileTable.Entry getExactSurveyMatch(org.mybatis.jpetstore.domain.Account account) {
+    if (account == null) {
+      return null;
+    }
+    return getRecommendationSnapshot().getProfileTable().get(account);
+  }
+
+  /**
+   * Get the survey recommendation rows closest to the account's answers by weighted Hamming similarity, using the same
+   * weights as {@link #isProductRecommended}. The first neighbour is the exact match when one exists. Served from
+   * lists precomputed per profile, so no rows are scanned.
+   *
+   * @param account
+   *          the account with survey preferences
+   *
+   * @return the nearest rows, best first; empty if the survey is incomplete or there are no rows
+   */
+  public List<SurveyProfileNeighbours.Neighbour> getNearestSurveyMatches(
+      org.mybatis.jpetstore.domain.Account account) {
+    if (account == null) {
+      return Collections.emptyList();
+    }
+    return getRecommendationSnapshot().getProfileNeighbours().get(account);
+  }
+
+  /**
+   * Builds the first recommendation snapshot once the application context is up, so the first catalog page does not
+   * pay for it.
+   */
+  @EventListener(ContextRefreshedEvent.class)
+  public void buildRecommendationIndex() {
+    try {
+      getRecommendationSnapshot();
+    } catch (Exception e) {
+      System.err.println("Error building survey recommendation index: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Gets the current recommendation snapshot. Only the very first call waits for a build; afterwards readers always
+   * get the published snapshot without locking, even while a reload is running.
+   *
+   * @return the current snapshot
+   */
+  public RecommendationSnapshot getRecommendationSnapshot() {
+    RecommendationSnapshot current = snapshot.get();
+    if (current == null) {
+      synchronized (snapshotLock) {
+        current = snapshot.get();
+        if (current == null) {
+          current = buildSnapshot();
+          snapshot.set(current);
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Rebuilds the survey recommendation index, exact-match table and profile verdicts from the database and publishes
+   * them as a new snapshot. Requests keep using the previous snapshot until the swap.
+   *
+   * @return the new snapshot
+   */
+  public RecommendationSnapshot reloadRecommendations() {
+    synchronized (snapshotLock) {
+      RecommendationSnapshot next = buildSnapshot();
+      snapshot.set(next);
+      return next;
+    }
+  }
+
+  /**
+   * Runs {@link #reloadRecommendations()} on the recommendation task executor.
+   *
+   * @return the new snapshot, once published
+   */
+  @Async("recommendationTaskExecutor")
+  public CompletableFuture<RecommendationSnapshot> reloadRecommendationsAsync() {
+    return CompletableFuture.completedFuture(reloadRecommendations());
+  }
+
+  /**
+   * Polls SURVEY_RECOMMENDATION_VERSION and SURVEY_SCORING and reloads when either no longer matches the current
+   * snapshot, e.g. after new data from {@code RecommendationDataGenerator} has been loaded or a weight was tuned. The
+   * rebuild runs here, off the request path, and requests keep scoring with the previous snapshot until the swap.
+   */
+  @Scheduled(fixedDelayString = "${jpetstore.recommendations.reload-poll-ms:60000}",
+      initialDelayString = "${jpetstore.recommendations.reload-poll-ms:60000}")
+  public void reloadIfDataChanged() {
+    RecommendationSnapshot current = snapshot.get();
+    if (current == null) {
+      return;
+    }
+    try {
+      if (surveyRecommendationMapper.getDataVersion() != current.getDataVersion()
+          || !loadScoring().equals(current.getScoring())) {
+        reloadRecommendations();
+      }
+    } catch (Exception e) {
+      logger.error("Error reloading survey recommendations: {}", e.getMessage(), e);
+    }
+  }
+
+  private SurveyScoring loadScoring() {
+    return SurveyScoring.of(surveyRecommendationMapper.getScoringSettings());
+  }
+
+  private RecommendationSnapshot buildSnapshot() {
+    long start = System.nanoTime();
+    // Read the data version first: a change made during the build is picked up by the next poll
+    long dataVersion = surveyRecommendationMapper.getDataVersion();
+    // Rows whose recommended_json_data changed since their product rows were built would otherwise keep the old ones
+    migrationService.migrateRecommendedProducts();
+    SurveyScoring scoring = loadScoring();
+    List<SurveyRecommendation> recommendations = surveyRecommendationMapper.getSurveyRecommendations();
+    SurveyRecommendationIndex index = SurveyRecommendationIndex.build(recommendations,
+        productMapper.getAllProducts(), scoring.getWeights(), scoring.getThreshold());
+    SurveyProfileTable table = SurveyProfileTable.build(recommendations, productId -> {
+      List<Item> items = itemMapper.getItemListByProduct(productId);
+      return items.isEmpty() ? null : items.get(0);
+    });
+    SurveyExclusionRules exclusionRules = SurveyExclusionRules.compile(surveyRecommendationMapper.getExclusionRules(),
+        index);
+    SurveyProfileVerdicts verdicts = SurveyProfileVerdicts.build(index,
+        profileKey -> exclusionRules.excludedProducts(SurveyDimension.ordinals(profileKey)));
+
+    SurveyProfileNeighbours neighbours = SurveyProfileNeighbours.build(table, scoring.getWeights(),
+        NEIGHBOURS_PER_PROFILE);
+
+    RecommendationSnapshot next = new RecommendationSnapshot(snapshotVersions.incrementAndGet(), dataVersion, scoring,
+        index, exclusionRules, table, verdicts, neighbours, (System.nanoTime() - start) / 1_000_000);
+    logger.info(
+        "Built survey recommendation snapshot {} (data version {}, {}): {} rows, {} products, {} exclusion rules, "
+            + "{} profiles materialized in {} ms ({} KB), neighbours in {} ms ({} KB), total {} ms",
+        next.getVersion(), dataVersion, scoring, index.size(), index.getProductCount(), exclusionRules.size(),
+        SurveyDimension.PROFILE_COUNT, verdicts.getBuildMillis(), verdicts.getFootprintBytes() / 1024,
+        neighbours.getBuildMillis(), neighbours.getFootprintBytes() / 1024, next.getBuildMillis());
+    return next;
   }
 
   /**
@@ -349,219 +555,95 @@ public class CatalogService {
         return isRecommended ? "We recommend this pet." : "This pet may not be the best match.";
       }
 
-      // For recommended products, find matching conditions
-      // For not recommended products, find mismatching conditions to explain why
+      // For recommended products, mention matching conditions
+      // For not recommended products, mention mismatching conditions to explain why
+      RecommendationVerdict verdict = evaluate(account, productId);
       java.util.Set<String> conditionsToMention;
       if (isRecommended) {
-        conditionsToMention = findMatchingConditions(account, productId);
+        conditionsToMention = verdict.isRecommended() ? verdict.getMatchingConditions()
+            : java.util.Collections.emptySet();
       } else {
-        conditionsToMention = findMismatchingConditions(account, productId);
+        conditionsToMention = verdict.getMismatchingConditions();
       }
 
-      return openAiRecommendationService.generateRecommendationMessage(account, product, isRecommended,
-          conditionsToMention);
+      try {
+        return messageGenerator.generateMessage(account, product, isRecommended, conditionsToMention);
+      } catch (Exception e) {
+        System.err.println("Error generating recommendation message: " + e.getMessage());
+        return templateMessageGenerator.generateMessage(account, product, isRecommended, conditionsToMention);
+      }
     } catch (Exception e) {
       System.err.println("Error generating recommendation message: " + e.getMessage());
-      return isRecommended ? "We recommend this pet based on your preferences."
-          : "This pet may not be the best match for your preferences.";
+      return isRecommended ? "We recommend this pet." : "This pet may not be the best match.";
     }
   }
 
   /**
-   * Find which survey conditions matched for the given product recommendation.
+   * Get recommendation message for a product whose verdict is already known, e.g. from {@link #evaluate}. Neither the
+   * product nor the survey recommendations are read again. Falls back to the template message if the selected
+   * generator fails.
    *
    * @param account
    *          the account with survey preferences
-   * @param productId
-   *          the product ID to check
+   * @param product
+   *          the product to get recommendation message for
+   * @param verdict
+   *          the verdict of the product
    *
-   * @return a set of matching condition names (e.g., "residenceEnv", "petSizePref")
+   * @return a personalized recommendation message
    */
-  private java.util.Set<String> findMatchingConditions(org.mybatis.jpetstore.domain.Account account, String productId) {
-    java.util.Set<String> matchingConditions = new java.util.HashSet<>();
-
-    if (account == null || productId == null || !hasCompletedSurvey(account)) {
-      return matchingConditions;
-    }
-
-    String residenceEnv = account.getResidenceEnv();
-    String carePeriod = account.getCarePeriod();
-    String petColorPref = account.getPetColorPref();
-    String petSizePref = account.getPetSizePref();
-    String activityTime = account.getActivityTime();
-    String dietManagement = account.getDietManagement();
-
+  public String getRecommendationMessage(org.mybatis.jpetstore.domain.Account account, Product product,
+      RecommendationVerdict verdict) {
+    boolean isRecommended = verdict.isRecommended();
     try {
-      List<SurveyRecommendation> allRecommendations = surveyRecommendationMapper.getSurveyRecommendations();
-      ObjectMapper mapper = new ObjectMapper();
-
-      // Find the recommendation that matched this product
-      for (SurveyRecommendation recommendation : allRecommendations) {
-        if (recommendation.getRecommendedJsonData() == null) {
-          continue;
-        }
-
-        // Calculate weighted score and check which conditions matched
-        double weightedScore = 0.0;
-        if (residenceEnv != null && recommendation.getResidenceEnv() != null
-            && residenceEnv.trim().equals(recommendation.getResidenceEnv().trim())) {
-          weightedScore += WEIGHT_RESIDENCE_ENV;
-        }
-        if (petSizePref != null && recommendation.getPetSizePref() != null
-            && petSizePref.trim().equals(recommendation.getPetSizePref().trim())) {
-          weightedScore += WEIGHT_PET_SIZE_PREF;
-        }
-        if (carePeriod != null && recommendation.getCarePeriod() != null
-            && carePeriod.trim().equals(recommendation.getCarePeriod().trim())) {
-          weightedScore += WEIGHT_CARE_PERIOD;
-        }
-        if (dietManagement != null && recommendation.getDietManagement() != null
-            && dietManagement.trim().equals(recommendation.getDietManagement().trim())) {
-          weightedScore += WEIGHT_DIET_MANAGEMENT;
-        }
-        if (activityTime != null && recommendation.getActivityTime() != null
-            && activityTime.trim().equals(recommendation.getActivityTime().trim())) {
-          weightedScore += WEIGHT_ACTIVITY_TIME;
-        }
-        if (petColorPref != null && recommendation.getPetColorPref() != null
-            && petColorPref.trim().equals(recommendation.getPetColorPref().trim())) {
-          weightedScore += WEIGHT_PET_COLOR_PREF;
-        }
-
-        // If score meets threshold, check if productId is in recommendations
-        if (weightedScore >= RECOMMENDATION_THRESHOLD) {
-          JsonNode jsonArray = mapper.readTree(recommendation.getRecommendedJsonData());
-          if (jsonArray.isArray()) {
-            for (JsonNode node : jsonArray) {
-              if (node.has("productId")) {
-                String recProductId = node.get("productId").asText();
-                if (productId.equals(recProductId)) {
-                  // Found the matching recommendation - collect matching conditions
-                  if (residenceEnv != null && recommendation.getResidenceEnv() != null
-                      && residenceEnv.trim().equals(recommendation.getResidenceEnv().trim())) {
-                    matchingConditions.add("residenceEnv");
-                  }
-                  if (petSizePref != null && recommendation.getPetSizePref() != null
-                      && petSizePref.trim().equals(recommendation.getPetSizePref().trim())) {
-                    matchingConditions.add("petSizePref");
-                  }
-                  if (carePeriod != null && recommendation.getCarePeriod() != null
-                      && carePeriod.trim().equals(recommendation.getCarePeriod().trim())) {
-                    matchingConditions.add("carePeriod");
-                  }
-                  if (dietManagement != null && recommendation.getDietManagement() != null
-                      && dietManagement.trim().equals(recommendation.getDietManagement().trim())) {
-                    matchingConditions.add("dietManagement");
-                  }
-                  if (activityTime != null && recommendation.getActivityTime() != null
-                      && activityTime.trim().equals(recommendation.getActivityTime().trim())) {
-                    matchingConditions.add("activityTime");
-                  }
-                  if (petColorPref != null && recommendation.getPetColorPref() != null
-                      && petColorPref.trim().equals(recommendation.getPetColorPref().trim())) {
-                    matchingConditions.add("petColorPref");
-                  }
-                  return matchingConditions; // Return immediately after finding match
-                }
-              }
-            }
-          }
-        }
-      }
+      return messageGenerator.generateMessage(account, product, isRecommended, verdict.getConditionsToMention());
     } catch (Exception e) {
-      System.err.println("Error finding matching conditions: " + e.getMessage());
+      System.err.println("Error generating recommendation message: " + e.getMessage());
+      return getTemplateRecommendationMessage(account, product, verdict);
     }
-
-    return matchingConditions;
   }
 
   /**
-   * Find which survey conditions did NOT match for the given product (for not recommended products). This helps explain
-   * why the product is not recommended.
+   * Get the template recommendation message of a product whose verdict is already known. Rendered locally without any
+   * remote call, so it is safe to use while rendering a page.
    *
    * @param account
    *          the account with survey preferences
-   * @param productId
-   *          the product ID to check
+   * @param product
+   *          the product to get recommendation message for
+   * @param verdict
+   *          the verdict of the product
    *
-   * @return a set of mismatching condition names (e.g., "residenceEnv", "petSizePref")
+   * @return the template recommendation message
    */
-  private java.util.Set<String> findMismatchingConditions(org.mybatis.jpetstore.domain.Account account,
-      String productId) {
-    java.util.Set<String> mismatchingConditions = new java.util.HashSet<>();
-
-    if (account == null || productId == null || !hasCompletedSurvey(account)) {
-      return mismatchingConditions;
-    }
-
-    String residenceEnv = account.getResidenceEnv();
-    String carePeriod = account.getCarePeriod();
-    String petColorPref = account.getPetColorPref();
-    String petSizePref = account.getPetSizePref();
-    String activityTime = account.getActivityTime();
-    String dietManagement = account.getDietManagement();
+  public String getTemplateRecommendationMessage(org.mybatis.jpetstore.domain.Account account, Product product,
+      RecommendationVerdict verdict) {
+    return templateMessageGenerator.generateMessage(account, product, verdict.isRecommended(),
+        verdict.getConditionsToMention());
+  }
 
+  /**
+   * Get recommendation messages for several products whose verdicts are already known, generated together, in one
+   * batched prompt for the language model.
+   *
+   * @param account
+   *          the account with survey preferences
+   * @param products
+   *          the products to get recommendation messages for
+   * @param verdicts
+   *          the verdict of each product, keyed by product id
+   *
+   * @return the messages that could be generated, keyed by product id; products left out have to be retried or given
+   *         the template message
+   */
+  public Map<String, String> getRecommendationMessages(org.mybatis.jpetstore.domain.Account account,
+      List<Product> products, Map<String, RecommendationVerdict> verdicts) {
     try {
-      List<SurveyRecommendation> allRecommendations = surveyRecommendationMapper.getSurveyRecommendations();
-      ObjectMapper mapper = new ObjectMapper();
-
-      // Find recommendations that include this product but didn't match user's conditions
-      for (SurveyRecommendation recommendation : allRecommendations) {
-        if (recommendation.getRecommendedJsonData() == null) {
-          continue;
-        }
-
-        // Check if this product is in the recommendation
-        JsonNode jsonArray = mapper.readTree(recommendation.getRecommendedJsonData());
-        if (jsonArray.isArray()) {
-          boolean productFound = false;
-          for (JsonNode node : jsonArray) {
-            if (node.has("productId")) {
-              String recProductId = node.get("productId").asText();
-              if (productId.equals(recProductId)) {
-                productFound = true;
-                break;
-              }
-            }
-          }
-
-          if (productFound) {
-            // This product is in a recommendation, but user's conditions didn't match
-            // Find which conditions didn't match
-            if (residenceEnv != null && recommendation.getResidenceEnv() != null
-                && !residenceEnv.trim().equals(recommendation.getResidenceEnv().trim())) {
-              mismatchingConditions.add("residenceEnv");
-            }
-            if (petSizePref != null && recommendation.getPetSizePref() != null
-                && !petSizePref.trim().equals(recommendation.getPetSizePref().trim())) {
-              mismatchingConditions.add("petSizePref");
-            }
-            if (carePeriod != null && recommendation.getCarePeriod() != null
-                && !carePeriod.trim().equals(recommendation.getCarePeriod().trim())) {
-              mismatchingConditions.add("carePeriod");
-            }
-            if (dietManagement != null && recommendation.getDietManagement() != null
-                && !dietManagement.trim().equals(recommendation.getDietManagement().trim())) {
-              mismatchingConditions.add("dietManagement");
-            }
-            if (activityTime != null && recommendation.getActivityTime() != null
-                && !activityTime.trim().equals(recommendation.getActivityTime().trim())) {
-              mismatchingConditions.add("activityTime");
-            }
-            if (petColorPref != null && recommendation.getPetColorPref() != null
-                && !petColorPref.trim().equals(recommendation.getPetColorPref().trim())) {
-              mismatchingConditions.add("petColorPref");
-            }
-            // Found at least one recommendation with this product, break after collecting mismatches
-            break;
-          }
-        }
-      }
+      return messageGenerator.generateMessages(account, products, verdicts);
     } catch (Exception e) {
-      System.err.println("Error finding mismatching conditions: " + e.getMessage());
+      System.err.println("Error generating batched recommendation messages: " + e.getMessage());
+      return new LinkedHashMap<>();
     }
-
-    return mismatchingConditions;
   }
 }
 
@@ -24,23 +24,36 @@ import com.theokanning.openai.service.OpenAiService;
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.mybatis.jpetstore.domain.Account;
 import org.mybatis.jpetstore.domain.Product;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
-public class OpenAiRecommendationService {
+public class OpenAiRecommendationService implements RecommendationMessageGenerator {
+
+  public static final String NAME = "openai";
 
   private static final Logger logger = LoggerFactory.getLogger(OpenAiRecommendationService.class);
   private static final String OPENAI_API_KEY;
   private static final String OPENAI_MODEL = "gpt-3.5-turbo"; // Or "gpt-4", "gpt-4o" etc.
 
   private final OpenAiService openAiService;
+  private final RecommendationMessageCache recommendationMessageCache;
+  private final int callsPerMinute;
+
+  // Fixed one-minute window of the message completion budget
+  private long windowStart;
+  private int windowCalls;
 
   static {
     String apiKey = null;
@@ -64,9 +77,17 @@ public class OpenAiRecommendationService {
     OPENAI_API_KEY = apiKey;
   }
 
-  public OpenAiRecommendationService() {
+  public OpenAiRecommendationService(RecommendationMessageCache recommendationMessageCache,
+      @Value("${jpetstore.recommendations.llm-calls-per-minute:0}") int callsPerMinute) {
     // Set a timeout for the OpenAI API calls
     this.openAiService = new OpenAiService(OPENAI_API_KEY, Duration.ofSeconds(30));
+    this.recommendationMessageCache = recommendationMessageCache;
+    this.callsPerMinute = callsPerMinute;
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
   }
 
   public String getRecommendation(Account account, List<Product> productList) {
@@ -117,7 +138,8 @@ public class OpenAiRecommendationService {
 
   /**
    * Generate a personalized recommendation message explaining why a product is recommended or not. Only matching
-   * conditions are included in the message.
+   * conditions are included in the message. Messages are reused and concurrent identical prompts coalesced through the
+   * {@link RecommendationMessageCache}; a cached message is returned even when the call budget is exhausted.
    *
    * @param account
    *          the user account with survey preferences
@@ -129,125 +151,225 @@ public class OpenAiRecommendationService {
    *          set of matching condition names (e.g., "residenceEnv", "petSizePref") - only these will be mentioned
    *
    * @return a personalized recommendation message
+   *
+   * @throws java.util.concurrent.CompletionException
+   *           wrapping the API failure, or a {@link RecommendationMessageBudgetException} if the message is not cached
+   *           and the call budget is exhausted
    */
-  public String generateRecommendationMessage(Account account, Product product, boolean isRecommended,
-      java.util.Set<String> matchingConditions) {
-    try {
-      StringBuilder promptBuilder = new StringBuilder();
-      promptBuilder.append("You are a pet recommendation assistant. Generate a brief, friendly message explaining ");
+  @Override
+  public String generateMessage(Account account, Product product, boolean isRecommended,
+      Set<String> matchingConditions) {
+    String fullPrompt = buildRecommendationMessagePrompt(account, product, isRecommended, matchingConditions);
+    // The prompt has no username, so any user whose answers produce the same prompt reuses the message, and
+    // concurrent identical prompts share one API call
+    return recommendationMessageCache.getOrGenerate(RecommendationMessageCache.key(OPENAI_MODEL, fullPrompt), () -> {
+      logger.debug("Generating recommendation message for product: {}", product.getProductId());
+      // Increased for not-recommended messages
+      String response = complete(fullPrompt, 200).trim();
+      logger.debug("Generated recommendation message: {}", response);
+      return response;
+    });
+  }
 
-      if (isRecommended) {
-        promptBuilder.append("why this pet is recommended for the user based on their MATCHING preferences.\n\n");
-        // For recommended products, show matching conditions
-        promptBuilder.append("Matching User Preferences (ONLY mention these in your message):\n");
-        if (matchingConditions.contains("residenceEnv") && account.getResidenceEnv() != null) {
-          promptBuilder.append("  - Living Environment: ").append(account.getResidenceEnv()).append("\n");
-        }
-        if (matchingConditions.contains("carePeriod") && account.getCarePeriod() != null) {
-          promptBuilder.append("  - Pet Care Period: ").append(account.getCarePeriod()).append("\n");
-        }
-        if (matchingConditions.contains("petColorPref") && account.getPetColorPref() != null) {
-          promptBuilder.append("  - Pet Color Preference: ").append(account.getPetColorPref()).append("\n");
-        }
-        if (matchingConditions.contains("petSizePref") && account.getPetSizePref() != null) {
-          promptBuilder.append("  - Pet Size Preference: ").append(account.getPetSizePref()).append("\n");
-        }
-        if (matchingConditions.contains("activityTime") && account.getActivityTime() != null) {
-          promptBuilder.append("  - Activity Time: ").append(account.getActivityTime()).append("\n");
-        }
-        if (matchingConditions.contains("dietManagement") && account.getDietManagement() != null) {
-          promptBuilder.append("  - Diet Management: ").append(account.getDietManagement()).append("\n");
-        }
-        if (matchingConditions.isEmpty()) {
-          promptBuilder.append("  (No specific preferences matched)\n");
-        }
+  /**
+   * Generates the messages of several products with one chat completion: every product is sent with its verdict and
+   * the user's answers to the conditions to mention, and a JSON array of messages is parsed back. Products already in the {@link RecommendationMessageCache} are not sent, and products whose entry is missing
+   * or fails validation fall back to {@link #generateMessage}. Batched messages are cached under
+   * {@link BatchedRecommendationMessages#entryKey}, never under the key of the single-product prompt.
+   *
+   * @param account
+   *          the user account with survey preferences
+   * @param products
+   *          the products to generate recommendation messages for
+   * @param verdicts
+   *          the verdict of each product, keyed by product id
+   *
+   * @return the messages that could be generated, keyed by product id
+   */
+  @Override
+  public Map<String, String> generateMessages(Account account, List<Product> products,
+      Map<String, RecommendationVerdict> verdicts) {
+    Map<String, String> messages = new HashMap<>();
+    Map<String, String> pendingKeys = new HashMap<>();
+    List<Product> pending = new ArrayList<>();
+    for (Product product : products) {
+      String key = BatchedRecommendationMessages.entryKey(OPENAI_MODEL, account, product, verdicts);
+      String cached = recommendationMessageCache.get(key);
+      if (cached != null) {
+        messages.put(product.getProductId(), cached);
       } else {
-        promptBuilder.append("why this pet may not be the best match for the user. ");
-        promptBuilder.append("Explain the specific reasons based on mismatching preferences.\n\n");
-        // For not recommended products, show mismatching conditions to explain why
-        promptBuilder.append("Mismatching User Preferences (explain why these don't match):\n");
-        if (matchingConditions.contains("residenceEnv") && account.getResidenceEnv() != null) {
-          promptBuilder.append("  - Living Environment: User has '").append(account.getResidenceEnv())
-              .append("' but this pet requires different environment\n");
-        }
-        if (matchingConditions.contains("carePeriod") && account.getCarePeriod() != null) {
-          promptBuilder.append("  - Pet Care Period: User prefers '").append(account.getCarePeriod())
-              .append("' but this pet needs different care period\n");
-        }
-        if (matchingConditions.contains("petColorPref") && account.getPetColorPref() != null) {
-          promptBuilder.append("  - Pet Color Preference: User prefers '").append(account.getPetColorPref())
-              .append("' but this pet has different colors\n");
-        }
-        if (matchingConditions.contains("petSizePref") && account.getPetSizePref() != null) {
-          promptBuilder.append("  - Pet Size Preference: User prefers '").append(account.getPetSizePref())
-              .append("' but this pet is different size\n");
-        }
-        if (matchingConditions.contains("activityTime") && account.getActivityTime() != null) {
-          promptBuilder.append("  - Activity Time: User has '").append(account.getActivityTime())
-              .append("' but this pet needs different activity schedule\n");
-        }
-        if (matchingConditions.contains("dietManagement") && account.getDietManagement() != null) {
-          promptBuilder.append("  - Diet Management: User prefers '").append(account.getDietManagement())
-              .append("' but this pet needs different diet\n");
-        }
-        if (matchingConditions.isEmpty()) {
-          promptBuilder.append("  (General mismatch with user preferences)\n");
-        }
-      }
-
-      promptBuilder.append("\nPet Information:\n");
-      promptBuilder.append("  - Name: ").append(product.getName()).append("\n");
-      promptBuilder.append("  - Category: ").append(product.getCategoryId()).append("\n");
-      if (product.getDescription() != null && !product.getDescription().isEmpty()) {
-        // Remove HTML tags from description for cleaner prompt
-        String cleanDescription = product.getDescription().replaceAll("<[^>]+>", "").trim();
-        if (!cleanDescription.isEmpty()) {
-          promptBuilder.append("  - Description: ").append(cleanDescription).append("\n");
-        }
+        pendingKeys.put(product.getProductId(), key);
+        pending.add(product);
       }
+    }
 
-      if (isRecommended) {
-        promptBuilder.append("\nIMPORTANT: Only mention the matching preferences listed above. ");
-        promptBuilder
-            .append("Do NOT mention any preferences that are not in the 'Matching User Preferences' list above.\n");
-      } else {
-        promptBuilder.append("\nIMPORTANT: Explain why this pet is not recommended based on the mismatching ");
-        promptBuilder.append("preferences listed above. Be specific about what doesn't match.\n");
+    if (pending.size() > 1) {
+      try {
+        String response = complete(BatchedRecommendationMessages.prompt(account, pending, verdicts),
+            80 * pending.size() + 50);
+        Map<String, String> batched = BatchedRecommendationMessages.parse(response, pendingKeys.keySet());
+        batched.forEach((productId, message) -> {
+          messages.put(productId, message);
+          recommendationMessageCache.put(pendingKeys.get(productId), message);
+        });
+        logger.debug("Generated {} of {} recommendation messages in one completion", batched.size(), pending.size());
+      } catch (RecommendationMessageBudgetException e) {
+        // Budget used: one call per product would fail the same way
+        logger.debug("Recommendation message budget used, leaving products without a message");
+        return messages;
+      } catch (Exception e) {
+        logger.warn("Error generating batched recommendation messages, falling back to one call per product: {}",
+            e.getMessage());
       }
+    }
 
-      promptBuilder.append("\nGenerate a concise, friendly message (maximum 150 characters) in English that explains ");
-      if (isRecommended) {
-        promptBuilder.append("why this pet is a good match. ONLY mention the matching preferences listed above.\n");
-      } else {
-        promptBuilder.append("why this pet may not be ideal. Include specific reasons from the mismatching ");
-        promptBuilder.append("preferences above. Be polite and constructive.\n");
+    for (Product product : pending) {
+      if (!messages.containsKey(product.getProductId())) {
+        RecommendationVerdict verdict = BatchedRecommendationMessages.verdictOf(verdicts, product);
+        try {
+          messages.put(product.getProductId(),
+              generateMessage(account, product, verdict.isRecommended(), verdict.getConditionsToMention()));
+        } catch (Exception e) {
+          if (e.getCause() instanceof RecommendationMessageBudgetException) {
+            // Budget used: the remaining products would fail the same way
+            logger.debug("Recommendation message budget used, leaving products without a message");
+            break;
+          }
+          logger.error("Error generating recommendation message: {}", e.getMessage(), e);
+        }
       }
-      promptBuilder.append("Do not include any prefix or explanation, just the message itself.");
+    }
+    return messages;
+  }
 
-      String fullPrompt = promptBuilder.toString();
-      ChatMessage userMessage = new ChatMessage("user", fullPrompt);
+  private String complete(String prompt, int maxTokens) {
+    if (!tryAcquireCall()) {
+      throw new RecommendationMessageBudgetException(
+          "Recommendation message budget of " + callsPerMinute + " calls per minute used");
+    }
+    ChatMessage userMessage = new ChatMessage("user", prompt);
+    ChatCompletionRequest chatCompletionRequest = ChatCompletionRequest.builder().model(OPENAI_MODEL)
+        .messages(Collections.singletonList(userMessage)).maxTokens(maxTokens).temperature(0.7) // Creativity level
+        .build();
+    return openAiService.createChatCompletion(chatCompletionRequest).getChoices().get(0).getMessage().getContent();
+  }
 
-      ChatCompletionRequest chatCompletionRequest = ChatCompletionRequest.builder().model(OPENAI_MODEL)
-          .messages(Collections.singletonList(userMessage)).maxTokens(200) // Increased for not-recommended messages
-          .temperature(0.7) // Creativity level
-          .build();
+  /**
+   * Takes one message completion from the budget of {@code jpetstore.recommendations.llm-calls-per-minute}; a batched
+   * completion counts as one call.
+   *
+   * @return false if the budget of the current minute is used, always true when it is 0 (unlimited)
+   */
+  synchronized boolean tryAcquireCall() {
+    if (callsPerMinute <= 0) {
+      return true;
+    }
+    long now = System.currentTimeMillis();
+    if (now - windowStart >= 60_000L) {
+      windowStart = now;
+      windowCalls = 0;
+    }
+    if (windowCalls >= callsPerMinute) {
+      return false;
+    }
+    windowCalls++;
+    return true;
+  }
 
-      logger.debug("Generating recommendation message for product: {}", product.getProductId());
-      String response = openAiService.createChatCompletion(chatCompletionRequest).getChoices().get(0).getMessage()
-          .getContent().trim();
+  private String buildRecommendationMessagePrompt(Account account, Product product, boolean isRecommended,
+      Set<String> matchingConditions) {
+    StringBuilder promptBuilder = new StringBuilder();
+    promptBuilder.append("You are a pet recommendation assistant. Generate a brief, friendly message explaining ");
 
-      logger.debug("Generated recommendation message: {}", response);
-      return response;
+    if (isRecommended) {
+      promptBuilder.append("why this pet is recommended for the user based on their MATCHING preferences.\n\n");
+      // For recommended products, show matching conditions
+      promptBuilder.append("Matching User Preferences (ONLY mention these in your message):\n");
+      if (matchingConditions.contains("residenceEnv") && account.getResidenceEnv() != null) {
+        promptBuilder.append("  - Living Environment: ").append(account.getResidenceEnv()).append("\n");
+      }
+      if (matchingConditions.contains("carePeriod") && account.getCarePeriod() != null) {
+        promptBuilder.append("  - Pet Care Period: ").append(account.getCarePeriod()).append("\n");
+      }
+      if (matchingConditions.contains("petColorPref") && account.getPetColorPref() != null) {
+        promptBuilder.append("  - Pet Color Preference: ").append(account.getPetColorPref()).append("\n");
+      }
+      if (matchingConditions.contains("petSizePref") && account.getPetSizePref() != null) {
+        promptBuilder.append("  - Pet Size Preference: ").append(account.getPetSizePref()).append("\n");
+      }
+      if (matchingConditions.contains("activityTime") && account.getActivityTime() != null) {
+        promptBuilder.append("  - Activity Time: ").append(account.getActivityTime()).append("\n");
+      }
+      if (matchingConditions.contains("dietManagement") && account.getDietManagement() != null) {
+        promptBuilder.append("  - Diet Management: ").append(account.getDietManagement()).append("\n");
+      }
+      if (matchingConditions.isEmpty()) {
+        promptBuilder.append("  (No specific preferences matched)\n");
+      }
+    } else {
+      promptBuilder.append("why this pet may not be the best match for the user. ");
+      promptBuilder.append("Explain the specific reasons based on mismatching preferences.\n\n");
+      // For not recommended products, show mismatching conditions to explain why
+      promptBuilder.append("Mismatching User Preferences (explain why these don't match):\n");
+      if (matchingConditions.contains("residenceEnv") && account.getResidenceEnv() != null) {
+        promptBuilder.append("  - Living Environment: User has '").append(account.getResidenceEnv())
+            .append("' but this pet requires different environment\n");
+      }
+      if (matchingConditions.contains("carePeriod") && account.getCarePeriod() != null) {
+        promptBuilder.append("  - Pet Care Period: User prefers '").append(account.getCarePeriod())
+            .append("' but this pet needs different care period\n");
+      }
+      if (matchingConditions.contains("petColorPref") && account.getPetColorPref() != null) {
+        promptBuilder.append("  - Pet Color Preference: User prefers '").append(account.getPetColorPref())
+            .append("' but this pet has different colors\n");
+      }
+      if (matchingConditions.contains("petSizePref") && account.getPetSizePref() != null) {
+        promptBuilder.append("  - Pet Size Preference: User prefers '").append(account.getPetSizePref())
+            .append("' but this pet is different size\n");
+      }
+      if (matchingConditions.contains("activityTime") && account.getActivityTime() != null) {
+        promptBuilder.append("  - Activity Time: User has '").append(account.getActivityTime())
+            .append("' but this pet needs different activity schedule\n");
+      }
+      if (matchingConditions.contains("dietManagement") && account.getDietManagement() != null) {
+        promptBuilder.append("  - Diet Management: User prefers '").append(account.getDietManagement())
+            .append("' but this pet needs different diet\n");
+      }
+      if (matchingConditions.isEmpty()) {
+        promptBuilder.append("  (General mismatch with user preferences)\n");
+      }
+    }
 
-    } catch (Exception e) {
-      logger.error("Error generating recommendation message: {}", e.getMessage(), e);
-      // Fallback to simple message if LLM fails
-      if (isRecommended) {
-        return "We recommend this pet based on your preferences.";
-      } else {
-        return "This pet may not be the best match for your preferences.";
+    promptBuilder.append("\nPet Information:\n");
+    promptBuilder.append("  - Name: ").append(product.getName()).append("\n");
+    promptBuilder.append("  - Category: ").append(product.getCategoryId()).append("\n");
+    if (product.getDescription() != null && !product.getDescription().isEmpty()) {
+      // Remove HTML tags from description for cleaner prompt
+      String cleanDescription = product.getDescription().replaceAll("<[^>]+>", "").trim();
+      if (!cleanDescription.isEmpty()) {
+        promptBuilder.append("  - Description: ").append(cleanDescription).append("\n");
       }
     }
+
+    if (isRecommended) {
+      promptBuilder.append("\nIMPORTANT: Only mention the matching preferences listed above. ");
+      promptBuilder
+          .append("Do NOT mention any preferences that are not in the 'Matching User Preferences' list above.\n");
+    } else {
+      promptBuilder.append("\nIMPORTANT: Explain why this pet is not recommended based on the mismatching ");
+      promptBuilder.append("preferences listed above. Be specific about what doesn't match.\n");
+    }
+
+    promptBuilder.append("\nGenerate a concise, friendly message (maximum 150 characters) in English that explains ");
+    if (isRecommended) {
+      promptBuilder.append("why this pet is a good match. ONLY mention the matching preferences listed above.\n");
+    } else {
+      promptBuilder.append("why this pet may not be ideal. Include specific reasons from the mismatching ");
+      promptBuilder.append("preferences above. Be polite and constructive.\n");
+    }
+    promptBuilder.append("Do not include any prefix or explanation, just the message itself.");
+
+    return promptBuilder.toString();
   }
 
   public List<String> listAvailableModels() {
@@ -0,0 +1,29 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+/**
+ * Thrown instead of calling OpenAI once the recommendation message budget of
+ * {@code jpetstore.recommendations.llm-calls-per-minute} is used for the current minute.
+ */
+public class RecommendationMessageBudgetException extends RuntimeException {
+
+  private static final long serialVersionUID = 6829472184510325737L;
+
+  public RecommendationMessageBudgetException(String message) {
+    super(message);
+  }
+}
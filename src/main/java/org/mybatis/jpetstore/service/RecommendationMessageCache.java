@@ -0,0 +1,363 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.mybatis.jpetstore.domain.CachedRecommendationMessage;
+import org.mybatis.jpetstore.mapper.RecommendationMessageCacheMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Generated recommendation messages addressed by the SHA-256 of the model and prompt that produced them. A bounded
+ * in-memory LRU sits in front of RECOMMENDATION_MESSAGE_CACHE, which keeps messages across restarts. Messages in
+ * either tier expire after {@code jpetstore.recommendations.message-cache-ttl-ms}, and the table is purged of expired
+ * messages and trimmed to its newest {@code jpetstore.recommendations.message-cache-table-size} on a schedule. The
+ * prompt depends only on the product, the verdict and the survey answers, so users with the same answers share
+ * entries. Concurrent misses on one key share a single in-flight generation.
+ */
+@Service
+public class RecommendationMessageCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(RecommendationMessageCache.class);
+
+  private final RecommendationMessageCacheMapper recommendationMessageCacheMapper;
+  private final int capacity;
+  private final Duration ttl;
+  private final int tableCapacity;
+  // Access-ordered, so the eldest entry is the least recently used; guarded by itself
+  private final LinkedHashMap<String, Entry> entries;
+  // Generations in progress by key; callers that miss on a key already here wait for its future
+  private final ConcurrentMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+  private final LongAdder memoryHits = new LongAdder();
+  private final LongAdder tableHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder expirations = new LongAdder();
+  private final LongAdder tablePurged = new LongAdder();
+  private final LongAdder generations = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+
+  public RecommendationMessageCache(RecommendationMessageCacheMapper recommendationMessageCacheMapper,
+      @Value("${jpetstore.recommendations.message-cache-size:10000}") int capacity,
+      @Value("${jpetstore.recommendations.message-cache-ttl-ms:2592000000}") long ttlMillis,
+      @Value("${jpetstore.recommendations.message-cache-table-size:100000}") int tableCapacity) {
+    this.recommendationMessageCacheMapper = recommendationMessageCacheMapper;
+    this.capacity = capacity;
+    this.ttl = Duration.ofMillis(ttlMillis);
+    this.tableCapacity = tableCapacity;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() > RecommendationMessageCache.this.capacity) {
+          evictions.increment();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Computes the cache key of a prompt.
+   *
+   * @param model
+   *          the model the prompt is sent to
+   * @param prompt
+   *          the full prompt
+   *
+   * @return the SHA-256 of the model and prompt, in hex
+   */
+  public static String key(String model, String prompt) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(model.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+      return HexFormat.of().formatHex(digest.digest(prompt.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform implements SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Looks a message up in memory, then in RECOMMENDATION_MESSAGE_CACHE. A message found in the table is kept in memory
+   * for the next lookup. Expired messages are not returned.
+   *
+   * @param key
+   *          the {@link #key(String, String) cache key}
+   *
+   * @return the message, or null on a miss
+   */
+  public String get(String key) {
+    LocalDateTime notBefore = LocalDateTime.now().minus(ttl);
+    String message = getFromMemory(key, notBefore);
+    if (message != null) {
+      memoryHits.increment();
+      return message;
+    }
+    CachedRecommendationMessage cached = null;
+    try {
+      cached = recommendationMessageCacheMapper.getMessage(key, notBefore);
+    } catch (Exception e) {
+      logger.warn("Error reading recommendation message cache: {}", e.getMessage());
+    }
+    if (cached == null) {
+      misses.increment();
+      return null;
+    }
+    tableHits.increment();
+    synchronized (entries) {
+      entries.put(key, new Entry(cached.getMessage(), cached.getCreated()));
+    }
+    return cached.getMessage();
+  }
+
+  /**
+   * Caches a generated message in memory and in RECOMMENDATION_MESSAGE_CACHE.
+   *
+   * @param key
+   *          the {@link #key(String, String) cache key}
+   * @param message
+   *          the message
+   */
+  public void put(String key, String message) {
+    LocalDateTime now = LocalDateTime.now();
+    synchronized (entries) {
+      entries.put(key, new Entry(message, now));
+    }
+    try {
+      recommendationMessageCacheMapper.insertMessage(key, message, now.minus(ttl));
+    } catch (Exception e) {
+      logger.warn("Error writing recommendation message cache: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Gets a cached message, or generates and caches it on a miss. Only one generation per key runs at a time: callers
+   * that miss while it is in flight wait for its result instead of generating again.
+   *
+   * @param key
+   *          the {@link #key(String, String) cache key}
+   * @param generator
+   *          generates the message; throws rather than returning a message that must not be cached
+   *
+   * @return the message
+   *
+   * @throws java.util.concurrent.CompletionException
+   *           wrapping the generator's exception, for the generating caller and every caller waiting on it
+   */
+  public String getOrGenerate(String key, Supplier<String> generator) {
+    String message = get(key);
+    if (message != null) {
+      return message;
+    }
+
+    CompletableFuture<String> flight = new CompletableFuture<>();
+    CompletableFuture<String> existing = inFlight.putIfAbsent(key, flight);
+    if (existing != null) {
+      coalesced.increment();
+      return existing.join();
+    }
+    try {
+      // A flight for this key may have completed between the lookup and the registration
+      message = getFromMemory(key, LocalDateTime.now().minus(ttl));
+      if (message == null) {
+        generations.increment();
+        message = generator.get();
+        put(key, message);
+      }
+      flight.complete(message);
+    } catch (RuntimeException e) {
+      flight.completeExceptionally(e);
+    } finally {
+      inFlight.remove(key, flight);
+    }
+    return flight.join();
+  }
+
+  /**
+   * Deletes expired messages from RECOMMENDATION_MESSAGE_CACHE, then the oldest messages beyond the table capacity.
+   *
+   * @return the number of messages deleted
+   */
+  @Scheduled(fixedDelayString = "${jpetstore.recommendations.message-cache-purge-ms:3600000}",
+      initialDelayString = "${jpetstore.recommendations.message-cache-purge-ms:3600000}")
+  public int purgeTable() {
+    try {
+      int deleted = recommendationMessageCacheMapper.deleteMessagesCreatedBefore(LocalDateTime.now().minus(ttl));
+      // Messages created at the same time as the last one kept are kept too
+      LocalDateTime oldestKept = tableCapacity > 0
+          ? recommendationMessageCacheMapper.getCreatedAtOffset(tableCapacity - 1) : null;
+      if (oldestKept != null) {
+        deleted += recommendationMessageCacheMapper.deleteMessagesCreatedBefore(oldestKept);
+      }
+      tablePurged.add(deleted);
+      logger.debug("Purged {} recommendation messages from the cache table", deleted);
+      return deleted;
+    } catch (Exception e) {
+      logger.error("Error purging recommendation message cache: {}", e.getMessage(), e);
+      return 0;
+    }
+  }
+
+  private String getFromMemory(String key, LocalDateTime notBefore) {
+    synchronized (entries) {
+      Entry entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.created != null && entry.created.isBefore(notBefore)) {
+        entries.remove(key);
+        expirations.increment();
+        return null;
+      }
+      return entry.message;
+    }
+  }
+
+  public long getMemoryHits() {
+    return memoryHits.sum();
+  }
+
+  public long getTableHits() {
+    return tableHits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Fraction of lookups answered from either tier.
+   *
+   * @return the hit ratio, or 0 before the first lookup
+   */
+  public double getHitRatio() {
+    long hits = getMemoryHits() + getTableHits();
+    long lookups = hits + getMisses();
+    return lookups == 0 ? 0.0 : (double) hits / lookups;
+  }
+
+  /**
+   * Number of generations run on a miss, i.e. calls made past the cache.
+   *
+   * @return the generation count
+   */
+  public long getGenerations() {
+    return generations.sum();
+  }
+
+  /**
+   * Number of misses that waited for a generation already in flight instead of starting their own.
+   *
+   * @return the coalesced count
+   */
+  public long getCoalesced() {
+    return coalesced.sum();
+  }
+
+  public int getInFlight() {
+    return inFlight.size();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * Number of in-memory messages dropped on lookup because they expired.
+   *
+   * @return the expiration count
+   */
+  public long getExpirations() {
+    return expirations.sum();
+  }
+
+  /**
+   * Number of messages deleted from RECOMMENDATION_MESSAGE_CACHE by {@link #purgeTable()}.
+   *
+   * @return the purged count
+   */
+  public long getTablePurged() {
+    return tablePurged.sum();
+  }
+
+  public long getTtlMillis() {
+    return ttl.toMillis();
+  }
+
+  public int getTableCapacity() {
+    return tableCapacity;
+  }
+
+  /**
+   * Number of messages in the in-memory tier.
+   *
+   * @return the in-memory size
+   */
+  public int getSize() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Number of messages in RECOMMENDATION_MESSAGE_CACHE.
+   *
+   * @return the table size
+   */
+  public long getTableSize() {
+    return recommendationMessageCacheMapper.countMessages();
+  }
+
+  /**
+   * An in-memory message and when it was cached.
+   */
+  private static final class Entry {
+
+    private final String message;
+    private final LocalDateTime created;
+
+    Entry(String message, LocalDateTime created) {
+      this.message = message;
+      this.created = created;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.mybatis.jpetstore.domain.Account;
+import org.mybatis.jpetstore.domain.Product;
+
+/**
+ * Writes the message explaining why a product is or is not recommended to a user. Selected per deployment with
+ * {@code jpetstore.recommendations.message-generator}.
+ */
+public interface RecommendationMessageGenerator {
+
+  /**
+   * Name used to select the generator.
+   *
+   * @return the name
+   */
+  String getName();
+
+  /**
+   * Generates the message of one product.
+   *
+   * @param account
+   *          the user account with survey preferences
+   * @param product
+   *          the product to generate the message for
+   * @param recommended
+   *          whether the product is recommended
+   * @param conditionsToMention
+   *          the survey conditions the message explains: matching ones for a recommended product, mismatching ones
+   *          otherwise
+   *
+   * @return the message
+   *
+   * @throws RuntimeException
+   *           if no message can be generated
+   */
+  String generateMessage(Account account, Product product, boolean recommended, Set<String> conditionsToMention);
+
+  /**
+   * Generates the messages of several products. Products without a message could not be generated.
+   *
+   * @param account
+   *          the user account with survey preferences
+   * @param products
+   *          the products to generate messages for
+   * @param verdicts
+   *          the verdict of each product, keyed by product id
+   *
+   * @return the messages that could be generated, keyed by product id
+   */
+  default Map<String, String> generateMessages(Account account, List<Product> products,
+      Map<String, RecommendationVerdict> verdicts) {
+    Map<String, String> messages = new HashMap<>();
+    for (Product product : products) {
+      RecommendationVerdict verdict = verdicts.get(product.getProductId());
+      if (verdict == null) {
+        verdict = RecommendationVerdict.notRecommended(product.getProductId());
+      }
+      try {
+        messages.put(product.getProductId(),
+            generateMessage(account, product, verdict.isRecommended(), verdict.getConditionsToMention()));
+      } catch (RuntimeException e) {
+        // Left out, for the caller to fall back
+      }
+    }
+    return messages;
+  }
+}
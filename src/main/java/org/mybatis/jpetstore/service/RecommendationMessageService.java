@@ -16,20 +16,34 @@
 package org.mybatis.jpetstore.service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.mybatis.jpetstore.domain.Account;
 import org.mybatis.jpetstore.domain.Product;
 import org.mybatis.jpetstore.domain.RecommendationMessage;
+import org.mybatis.jpetstore.domain.SurveyDimension;
 import org.mybatis.jpetstore.mapper.ProductMapper;
 import org.mybatis.jpetstore.mapper.RecommendationMessageMapper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class RecommendationMessageService {
@@ -37,29 +51,133 @@ public class RecommendationMessageService {
   private final RecommendationMessageMapper recommendationMessageMapper;
   private final ProductMapper productMapper;
   private final CatalogService catalogService;
+  private final AsyncTaskExecutor messageExecutor;
+  private final TransactionTemplate replaceMessagesTransaction;
+  // Products per batched OpenAI prompt; 1 or less generates one message per call
+  private final int batchSize;
+  private final RecommendationRefreshMetrics refreshMetrics = new RecommendationRefreshMetrics();
 
   public RecommendationMessageService(RecommendationMessageMapper recommendationMessageMapper,
-      ProductMapper productMapper, CatalogService catalogService) {
+      ProductMapper productMapper, CatalogService catalogService,
+      @Qualifier("recommendationMessageExecutor") AsyncTaskExecutor messageExecutor,
+      PlatformTransactionManager transactionManager,
+      @Value("${jpetstore.recommendations.message-batch-size:20}") int batchSize) {
     this.recommendationMessageMapper = recommendationMessageMapper;
     this.productMapper = productMapper;
     this.catalogService = catalogService;
+    this.messageExecutor = messageExecutor;
+    this.replaceMessagesTransaction = new TransactionTemplate(transactionManager);
+    // Refreshes also run from AccountService's afterCommit callback, where the finished transaction is still bound
+    this.replaceMessagesTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.batchSize = Math.max(1, batchSize);
   }
 
+  /**
+   * Refreshes the recommendation messages of an account on the recommendation task executor. See
+   * {@link #refreshRecommendations(Account)}.
+   *
+   * @param account
+   *          the account with survey preferences
+   */
   @Async("recommendationTaskExecutor")
-  @Transactional
   public void refreshRecommendationsAsync(Account account) {
     refreshRecommendationsInternal(account);
   }
 
-  @Transactional
-  public void refreshRecommendations(Account account) {
-    refreshRecommendationsInternal(account);
+  /**
+   * Regenerates the recommendation messages of an account. The OpenAI calls run first, outside any transaction; the
+   * old messages are then replaced by the new ones in one short transaction, so readers never see a half-refreshed
+   * set and no connection is held while waiting on the API.
+   *
+   * @param account
+   *          the account with survey preferences
+   *
+   * @return false if a message could not be generated or the messages could not be saved, so the refresh should be
+   *         retried
+   */
+  public boolean refreshRecommendations(Account account) {
+    return refreshRecommendationsInternal(account);
   }
 
-  private void refreshRecommendationsInternal(Account account) {
+  /**
+   * Brings the recommendation messages of an account up to date after a survey edit. The previous and new answers
+   * are evaluated against every product, and only products whose verdict or explanation inputs changed, or that have
+   * no stored message, are regenerated; the other messages are kept. Nothing is done when no survey answer changed.
+   * Falls back to a full {@link #refreshRecommendations(Account)} when either survey is incomplete.
+   *
+   * @param previous
+   *          the account as it was before the edit
+   * @param account
+   *          the account with the edited survey preferences
+   *
+   * @return false if a message could not be generated or the messages could not be saved, so the refresh should be
+   *         retried
+   */
+  public boolean refreshRecommendations(Account previous, Account account) {
+    if (account == null || account.getUsername() == null) {
+      System.out.println("=== refreshRecommendations: account or username is null ===");
+      return true;
+    }
+    if (previous != null && sameSurveyAnswers(previous, account)) {
+      System.out.println("=== Survey answers unchanged for user: " + account.getUsername()
+          + " - keeping the current recommendation messages ===");
+      return true;
+    }
+    if (previous == null || !catalogService.hasCompletedSurvey(previous)
+        || !catalogService.hasCompletedSurvey(account)) {
+      return refreshRecommendationsInternal(account);
+    }
+
+    List<Product> products = productMapper.getAllProducts();
+    Map<String, RecommendationVerdict> previousVerdicts = catalogService.evaluate(previous, products);
+    Map<String, RecommendationVerdict> verdicts = catalogService.evaluate(account, products);
+    Map<String, RecommendationMessage> stored = getRecommendationMessageMap(account.getUsername());
+
+    List<Product> changed = new ArrayList<>();
+    List<String> keptProductIds = new ArrayList<>();
+    for (Product product : products) {
+      RecommendationMessage message = stored.get(product.getProductId());
+      RecommendationVerdict verdict = verdictOf(verdicts, product);
+      if (message == null || message.isRecommended() != verdict.isRecommended()
+          || explanationChanged(previous, verdictOf(previousVerdicts, product), account, verdict)) {
+        changed.add(product);
+      } else {
+        keptProductIds.add(product.getProductId());
+      }
+    }
+    System.out.println("=== Survey edit for user: " + account.getUsername() + " changes " + changed.size() + " / "
+        + products.size() + " recommendation messages ===");
+
+    long generationStart = System.nanoTime();
+    GeneratedMessages generated = generateMessages(account, changed, verdicts);
+    long generationMillis = (System.nanoTime() - generationStart) / 1_000_000;
+    if (generated == null) {
+      System.err.println("=== Interrupted while generating recommendation messages for user: " + account.getUsername()
+          + " - keeping the previous messages ===");
+      return false;
+    }
+
+    keptProductIds.addAll(generated.failedProductIds);
+    long transactionStart = System.nanoTime();
+    boolean saved = replaceMessages(account.getUsername(), generated.messages, keptProductIds);
+    long connectionHoldMillis = (System.nanoTime() - transactionStart) / 1_000_000;
+    refreshMetrics.record(generationMillis, connectionHoldMillis);
+
+    System.out.println("=== Completed incremental recommendation refresh for user: " + account.getUsername()
+        + " (saved " + (saved ? generated.messages.size() : 0) + " messages, kept " + keptProductIds.size()
+        + ", failed " + generated.failures + ", generation " + generationMillis + " ms, connection held "
+        + connectionHoldMillis + " ms) ===");
+    return saved && generated.failures == 0;
+  }
+
+  public RecommendationRefreshMetrics getRefreshMetrics() {
+    return refreshMetrics;
+  }
+
+  private boolean refreshRecommendationsInternal(Account account) {
     if (account == null || account.getUsername() == null) {
       System.out.println("=== refreshRecommendationsInternal: account or username is null ===");
-      return;
+      return true;
     }
 
     System.out.println("=== Starting recommendation message generation for user: " + account.getUsername() + " ===");
@@ -76,9 +194,30 @@ public class RecommendationMessageService {
     System.out.println(
         "  dietManagement: [" + (account.getDietManagement() != null ? account.getDietManagement() : "null") + "]");
 
-    // Delete old messages first
-    recommendationMessageMapper.deleteMessagesForUser(account.getUsername());
-    System.out.println("=== Deleted old recommendation messages ===");
+    long generationStart = System.nanoTime();
+    GeneratedMessages generated = generateMessages(account);
+    long generationMillis = (System.nanoTime() - generationStart) / 1_000_000;
+    if (generated == null) {
+      System.err.println("=== Interrupted while generating recommendation messages for user: " + account.getUsername()
+          + " - keeping the previous messages ===");
+      return false;
+    }
+
+    long transactionStart = System.nanoTime();
+    boolean saved = replaceMessages(account.getUsername(), generated.messages, generated.failedProductIds);
+    long connectionHoldMillis = (System.nanoTime() - transactionStart) / 1_000_000;
+    refreshMetrics.record(generationMillis, connectionHoldMillis);
+
+    System.out.println("=== Completed recommendation message generation for user: " + account.getUsername()
+        + " (saved " + (saved ? generated.messages.size() : 0) + " messages, failed " + generated.failures
+        + ", generation " + generationMillis + " ms, connection held " + connectionHoldMillis + " ms) ===");
+    return saved && generated.failures == 0;
+  }
+
+  /**
+   * Generates a message for every product, without touching RECOMMENDATION_MESSAGES. Returns null if interrupted.
+   */
+  private GeneratedMessages generateMessages(Account account) {
 
     // Check if user has completed survey
     boolean surveyCompleted = catalogService.hasCompletedSurvey(account);
@@ -86,45 +225,118 @@ public class RecommendationMessageService {
     if (!surveyCompleted) {
       System.out.println("=== User has not completed survey - skipping recommendation generation ===");
       System.out.println("=== NOTE: All 6 survey fields must be filled (not empty) to generate recommendations ===");
-      return;
+      return new GeneratedMessages(Collections.emptyList(), Collections.emptyList(), 0);
     }
 
     // Get all products and generate recommendation messages for each
     List<Product> products = productMapper.getAllProducts();
     System.out.println("=== Found " + products.size() + " products to process ===");
 
-    int processedCount = 0;
-    for (Product product : products) {
-      try {
-        // Determine if product is recommended
-        boolean recommended = catalogService.isProductRecommended(account, product.getProductId());
+    // Evaluate every product against the survey in one pass
+    return generateMessages(account, products, catalogService.evaluate(account, products));
+  }
 
-        // Generate AI recommendation message (this calls OpenAI API)
-        String message = catalogService.getRecommendationMessage(account, product.getProductId(), recommended);
+  /**
+   * Generates a message for each of the given products. Returns null if interrupted.
+   */
+  private GeneratedMessages generateMessages(Account account, List<Product> products,
+      Map<String, RecommendationVerdict> verdicts) {
+    List<RecommendationMessage> messages = new ArrayList<>();
+    // Pack the products into batched prompts and fan the OpenAI calls out over the message executor, which blocks
+    // submission once its concurrency limit is reached, then collect the messages in completion order
+    long start = System.nanoTime();
+    CompletionService<GeneratedBatch> generation = new ExecutorCompletionService<>(messageExecutor);
+    Map<Future<GeneratedBatch>, List<Product>> submitted = new HashMap<>();
+    int batches = 0;
+    for (int from = 0; from < products.size(); from += batchSize) {
+      List<Product> batch = products.subList(from, Math.min(from + batchSize, products.size()));
+      submitted.put(generation.submit(() -> {
+        long batchStart = System.nanoTime();
+        Map<String, String> batchMessages = catalogService.getRecommendationMessages(account, batch, verdicts);
+        return new GeneratedBatch(batch, batchMessages, (System.nanoTime() - batchStart) / 1_000_000);
+      }), batch);
+      batches++;
+    }
+
+    long slowestMillis = 0;
+    long totalMillis = 0;
+    int fallbacks = 0;
+    List<String> failedProductIds = new ArrayList<>();
+    for (int i = 0; i < batches; i++) {
+      GeneratedBatch generated;
+      Future<GeneratedBatch> future = null;
+      try {
+        future = generation.take();
+        generated = future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      } catch (ExecutionException e) {
+        System.err.println("=== Error generating recommendation messages: " + e.getCause().getMessage() + " ===");
+        e.getCause().printStackTrace();
+        // Continue with next batch even if one fails, keeping the previous messages of the failed one
+        for (Product product : submitted.get(future)) {
+          failedProductIds.add(product.getProductId());
+        }
+        continue;
+      }
 
-        // Create and save recommendation message
+      for (Product product : generated.products) {
+        String message = generated.messages.get(product.getProductId());
+        if (message == null) {
+          // The template message is saved so the user sees a message meanwhile, but counted so that the refresh is
+          // retried
+          message = catalogService.getTemplateRecommendationMessage(account, product, verdictOf(verdicts, product));
+          fallbacks++;
+        }
         RecommendationMessage recommendationMessage = new RecommendationMessage();
         recommendationMessage.setUsername(account.getUsername());
         recommendationMessage.setProductId(product.getProductId());
-        recommendationMessage.setRecommended(recommended);
+        recommendationMessage.setRecommended(verdictOf(verdicts, product).isRecommended());
         recommendationMessage.setMessage(message);
         recommendationMessage.setLastUpdated(LocalDateTime.now());
+        messages.add(recommendationMessage);
+      }
+      totalMillis += generated.millis;
+      slowestMillis = Math.max(slowestMillis, generated.millis);
+      System.out.println("=== Generated messages for " + generated.products.size() + " products ("
+          + generated.products.get(0).getProductId() + "..) in " + generated.millis + " ms ===");
+      System.out.println("=== Processed " + messages.size() + " / " + products.size() + " products ===");
+    }
 
-        recommendationMessageMapper.insertRecommendationMessage(recommendationMessage);
-        processedCount++;
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+    System.out.println("=== Generated " + messages.size() + " / " + products.size() + " messages in " + batches
+        + " batches in " + elapsedMillis + " ms (sum of batches " + totalMillis + " ms, slowest " + slowestMillis
+        + " ms) ===");
+    return new GeneratedMessages(messages, failedProductIds, products.size() - messages.size() + fallbacks);
+  }
 
-        if (processedCount % 10 == 0) {
-          System.out.println("=== Processed " + processedCount + " / " + products.size() + " products ===");
+  /**
+   * Replaces the stored messages of a user in one transaction, the only part of a refresh that holds a connection.
+   * The new messages are merged over the old ones and only then are messages for other products, except the kept
+   * ones, deleted, so readers see either the previous set or the new one and never an empty set. If a statement
+   * fails, the previous messages are kept.
+   */
+  private boolean replaceMessages(String username, List<RecommendationMessage> messages,
+      List<String> keptProductIds) {
+    List<String> productIds = new ArrayList<>(keptProductIds);
+    for (RecommendationMessage message : messages) {
+      productIds.add(message.getProductId());
+    }
+    try {
+      replaceMessagesTransaction.executeWithoutResult(status -> {
+        if (!messages.isEmpty()) {
+          recommendationMessageMapper.upsertRecommendationMessages(messages);
         }
-      } catch (Exception e) {
-        System.err.println("=== Error processing product " + product.getProductId() + ": " + e.getMessage() + " ===");
-        e.printStackTrace();
-        // Continue with next product even if one fails
-      }
+        recommendationMessageMapper.deleteMessagesForUserExcept(username, productIds);
+      });
+      return true;
+    } catch (RuntimeException e) {
+      System.err.println("=== Error saving recommendation messages for user " + username + " - keeping the previous "
+          + "messages: " + e.getMessage() + " ===");
+      e.printStackTrace();
+      return false;
     }
-
-    System.out.println("=== Completed recommendation message generation for user: " + account.getUsername()
-        + " (processed " + processedCount + " / " + products.size() + " products) ===");
   }
 
   @Transactional(readOnly = true)
@@ -148,4 +360,70 @@ public class RecommendationMessageService {
     }
     return recommendationMessageMapper.getMessage(username, productId);
   }
+
+  static boolean sameSurveyAnswers(Account previous, Account account) {
+    for (SurveyDimension dimension : SurveyDimension.values()) {
+      if (!Objects.equals(dimension.getValue(previous), dimension.getValue(account))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Whether a product's message must be regenerated: its verdict, the conditions the message mentions, or the answer
+   * to one of those conditions differs. Answers the message does not mention are not part of its prompt.
+   */
+  static boolean explanationChanged(Account previous, RecommendationVerdict previousVerdict, Account account,
+      RecommendationVerdict verdict) {
+    if (previousVerdict.isRecommended() != verdict.isRecommended()
+        || !previousVerdict.getConditionsToMention().equals(verdict.getConditionsToMention())) {
+      return true;
+    }
+    for (String condition : verdict.getConditionsToMention()) {
+      SurveyDimension dimension = SurveyDimension.forConditionName(condition);
+      if (!Objects.equals(dimension.getValue(previous), dimension.getValue(account))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static RecommendationVerdict verdictOf(Map<String, RecommendationVerdict> verdicts, Product product) {
+    RecommendationVerdict verdict = verdicts.get(product.getProductId());
+    return verdict != null ? verdict : RecommendationVerdict.notRecommended(product.getProductId());
+  }
+
+  /**
+   * The messages of a refresh, the products of failed batches, whose previous messages are kept, and how many of its
+   * products got no message or only the fallback one.
+   */
+  private static final class GeneratedMessages {
+
+    private final List<RecommendationMessage> messages;
+    private final List<String> failedProductIds;
+    private final int failures;
+
+    GeneratedMessages(List<RecommendationMessage> messages, List<String> failedProductIds, int failures) {
+      this.messages = messages;
+      this.failedProductIds = failedProductIds;
+      this.failures = failures;
+    }
+  }
+
+  /**
+   * The outcome of one batch of products.
+   */
+  private static final class GeneratedBatch {
+
+    private final List<Product> products;
+    private final Map<String, String> messages;
+    private final long millis;
+
+    GeneratedBatch(List<Product> products, Map<String, String> messages, long millis) {
+      this.products = products;
+      this.messages = messages;
+      this.millis = millis;
+    }
+  }
 }
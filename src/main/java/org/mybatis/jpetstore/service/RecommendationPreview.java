@@ -0,0 +1,117 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import java.util.List;
+
+import org.mybatis.jpetstore.domain.Product;
+
+/**
+ * What the survey recommendations would be for a possibly incomplete set of answers, computed in memory without
+ * saving anything. Unanswered questions are expanded to every possible answer, so each product reports the share of
+ * those completions that recommend it.
+ */
+public final class RecommendationPreview {
+
+  private final int answeredDimensions;
+  private final int completions;
+  private final List<ProductPreview> products;
+
+  RecommendationPreview(int answeredDimensions, int completions, List<ProductPreview> products) {
+    this.answeredDimensions = answeredDimensions;
+    this.completions = completions;
+    this.products = products;
+  }
+
+  public int getAnsweredDimensions() {
+    return answeredDimensions;
+  }
+
+  /**
+   * Number of complete survey profiles consistent with the answers given so far.
+   *
+   * @return the number of completions; 1 once every question is answered
+   */
+  public int getCompletions() {
+    return completions;
+  }
+
+  public boolean isComplete() {
+    return completions == 1;
+  }
+
+  /**
+   * Products recommended by at least one completion, most likely first.
+   *
+   * @return the product previews
+   */
+  public List<ProductPreview> getProducts() {
+    return products;
+  }
+
+  /**
+   * How often one product is recommended across the completions.
+   */
+  public static final class ProductPreview {
+
+    private final Product product;
+    private final int recommendedCompletions;
+    private final int completions;
+    private final RecommendationVerdict verdict;
+
+    ProductPreview(Product product, int recommendedCompletions, int completions, RecommendationVerdict verdict) {
+      this.product = product;
+      this.recommendedCompletions = recommendedCompletions;
+      this.completions = completions;
+      this.verdict = verdict;
+    }
+
+    public Product getProduct() {
+      return product;
+    }
+
+    public int getRecommendedCompletions() {
+      return recommendedCompletions;
+    }
+
+    /**
+     * Fraction of the completions that recommend the product.
+     *
+     * @return the share, between 0 and 1
+     */
+    public double getShare() {
+      return completions == 0 ? 0.0 : (double) recommendedCompletions / completions;
+    }
+
+    /**
+     * Whether the product is recommended whatever the remaining answers are.
+     *
+     * @return true if every completion recommends it
+     */
+    public boolean isRecommended() {
+      return recommendedCompletions == completions;
+    }
+
+    /**
+     * The full verdict, available once the survey is complete.
+     *
+     * @return the verdict, or null while questions are unanswered
+     */
+    public RecommendationVerdict getVerdict() {
+      return verdict;
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of the recommendation message refreshes, reported by the survey recommendation status endpoint. A
+ * refresh generates its messages without a database connection, then holds one only for the transaction that replaces
+ * the stored messages; the connection hold time is that transaction's wall time.
+ */
+public final class RecommendationRefreshMetrics {
+
+  private final LongAdder refreshes = new LongAdder();
+  private final LongAdder generationMillis = new LongAdder();
+  private final LongAdder connectionHoldMillis = new LongAdder();
+  private final AtomicLong maxConnectionHoldMillis = new AtomicLong();
+  private volatile long lastConnectionHoldMillis;
+
+  void record(long generationMillis, long connectionHoldMillis) {
+    refreshes.increment();
+    this.generationMillis.add(generationMillis);
+    this.connectionHoldMillis.add(connectionHoldMillis);
+    maxConnectionHoldMillis.accumulateAndGet(connectionHoldMillis, Math::max);
+    lastConnectionHoldMillis = connectionHoldMillis;
+  }
+
+  public long getRefreshes() {
+    return refreshes.sum();
+  }
+
+  /**
+   * Total time spent generating messages, outside any transaction.
+   *
+   * @return the generation time in milliseconds
+   */
+  public long getGenerationMillis() {
+    return generationMillis.sum();
+  }
+
+  /**
+   * Total time a database connection was held by refreshes.
+   *
+   * @return the connection hold time in milliseconds
+   */
+  public long getConnectionHoldMillis() {
+    return connectionHoldMillis.sum();
+  }
+
+  public long getMaxConnectionHoldMillis() {
+    return maxConnectionHoldMillis.get();
+  }
+
+  public long getLastConnectionHoldMillis() {
+    return lastConnectionHoldMillis;
+  }
+}
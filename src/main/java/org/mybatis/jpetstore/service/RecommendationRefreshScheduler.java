@@ -0,0 +1,461 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.mybatis.jpetstore.domain.Account;
+import org.mybatis.jpetstore.domain.RecommendationRefreshJob;
+import org.mybatis.jpetstore.domain.SurveyDimension;
+import org.mybatis.jpetstore.mapper.AccountMapper;
+import org.mybatis.jpetstore.mapper.RecommendationRefreshJobMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Queues recommendation message refreshes in RECOMMENDATION_REFRESH_JOB and runs them on a pool of workers, so queued
+ * refreshes outlive a restart and a burst of signups waits in the table rather than overflowing an executor queue.
+ * Each user has at most one pending job, into which later requests are merged, and at most one running job. A worker
+ * pool claims jobs by leasing them and renews its leases while they run; the job of a pool that stopped is claimed
+ * again once its lease runs out. A refresh that fails, or that had to fall back to a default message because OpenAI
+ * could not be reached, is retried with exponential backoff and jitter until it runs out of attempts.
+ */
+@Service
+public class RecommendationRefreshScheduler {
+
+  private static final Logger logger = LoggerFactory.getLogger(RecommendationRefreshScheduler.class);
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final TypeReference<Map<String, String>> ANSWERS_TYPE = new TypeReference<>() {
+  };
+  private static final Duration FINISHED_JOB_RETENTION = Duration.ofDays(7);
+  private static final int MAX_ERROR_LENGTH = 1024;
+
+  private final RecommendationRefreshJobMapper jobMapper;
+  private final AccountMapper accountMapper;
+  private final RecommendationMessageService recommendationMessageService;
+  private final Executor workers;
+  private final TransactionTemplate jobTransaction;
+  private final int workerCount;
+  private final Duration lease;
+  private final int maxAttempts;
+  private final long backoffMillis;
+  private final long maxBackoffMillis;
+  private final long awaitTimeoutMillis;
+  // Identifies this pool's leases
+  private final String owner = UUID.randomUUID().toString();
+  // Callers waiting for a job to finish, by job id
+  private final ConcurrentMap<Long, CompletableFuture<Void>> waiters = new ConcurrentHashMap<>();
+  private final AtomicInteger running = new AtomicInteger();
+  private final Object dispatchLock = new Object();
+
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder runs = new LongAdder();
+  private final LongAdder retries = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+
+  public RecommendationRefreshScheduler(RecommendationRefreshJobMapper jobMapper, AccountMapper accountMapper,
+      RecommendationMessageService recommendationMessageService,
+      @Qualifier("recommendationRefreshExecutor") Executor workers, PlatformTransactionManager transactionManager,
+      @Value("${jpetstore.recommendations.refresh-workers:2}") int workerCount,
+      @Value("${jpetstore.recommendations.refresh-lease-ms:600000}") long leaseMillis,
+      @Value("${jpetstore.recommendations.refresh-max-attempts:5}") int maxAttempts,
+      @Value("${jpetstore.recommendations.refresh-backoff-ms:5000}") long backoffMillis,
+      @Value("${jpetstore.recommendations.refresh-max-backoff-ms:600000}") long maxBackoffMillis,
+      @Value("${jpetstore.recommendations.refresh-await-ms:60000}") long awaitTimeoutMillis) {
+    this.jobMapper = jobMapper;
+    this.accountMapper = accountMapper;
+    this.recommendationMessageService = recommendationMessageService;
+    this.workers = workers;
+    this.jobTransaction = new TransactionTemplate(transactionManager);
+    // Jobs are also queued, watched and dispatched from AccountService's afterCommit callback, where the finished
+    // transaction is still bound, so every statement on the job table runs in a transaction of its own
+    this.jobTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.workerCount = workerCount;
+    this.lease = Duration.ofMillis(leaseMillis);
+    this.maxAttempts = maxAttempts;
+    this.backoffMillis = backoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+    this.awaitTimeoutMillis = awaitTimeoutMillis;
+  }
+
+  /**
+   * Queues a refresh of a user's recommendation messages. If the user already has a pending job, the request is
+   * merged into it: the job becomes due now and, for a full request, a full refresh; an incremental job keeps the
+   * earliest previous answers.
+   *
+   * @param username
+   *          the username to refresh recommendations for
+   * @param previous
+   *          the account before the edit that prompted the refresh, or null for a full refresh
+   *
+   * @return completes when the job has run successfully, or exceptionally once it ran out of attempts
+   */
+  public CompletableFuture<Void> schedule(String username, Account previous) {
+    requests.increment();
+    String previousAnswers = previous == null ? null : encodeAnswers(previous);
+    long jobId = jobTransaction.execute(status -> enqueue(username, previousAnswers));
+    CompletableFuture<Void> done = watch(jobId);
+    dispatch();
+    return done;
+  }
+
+  /**
+   * Joins the latest job of a user, even one that already finished, or queues a full refresh if the user has none.
+   * For callers whose changes were committed before the latest job was queued, such as a signup whose refresh was
+   * queued on commit and may have run before the caller gets here.
+   *
+   * @param username
+   *          the username to refresh recommendations for
+   *
+   * @return completes when the joined or queued job has finished; at once if the joined job already has
+   */
+  public CompletableFuture<Void> join(String username) {
+    RecommendationRefreshJob latest = jobTransaction.execute(status -> jobMapper.getLatestJob(username));
+    if (latest == null) {
+      return schedule(username, null);
+    }
+    requests.increment();
+    coalesced.increment();
+    return watch(latest.getJobId());
+  }
+
+  /**
+   * Waits for a refresh to finish, at most {@code jpetstore.recommendations.refresh-await-ms}.
+   *
+   * @param refresh
+   *          the refresh returned by {@link #schedule} or {@link #join}
+   *
+   * @return true if the refresh finished successfully in time; it stays queued otherwise
+   */
+  public boolean await(Future<Void> refresh) {
+    return await(refresh, awaitTimeoutMillis);
+  }
+
+  /**
+   * Waits for a refresh to finish.
+   *
+   * @param refresh
+   *          the refresh returned by {@link #schedule} or {@link #join}
+   * @param timeoutMillis
+   *          how long to wait
+   *
+   * @return true if the refresh finished successfully in time; it stays queued otherwise
+   */
+  public boolean await(Future<Void> refresh, long timeoutMillis) {
+    try {
+      refresh.get(timeoutMillis, TimeUnit.MILLISECONDS);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException e) {
+      return false;
+    } catch (TimeoutException e) {
+      logger.warn("Recommendation refresh still queued or running after {} ms", timeoutMillis);
+      return false;
+    }
+  }
+
+  /**
+   * Renews the leases of the running jobs and claims due jobs for the idle workers. Also runs whenever a job is queued
+   * or finishes, so the poll only matters for retries coming due and for jobs queued by other instances.
+   */
+  @Scheduled(fixedDelayString = "${jpetstore.recommendations.refresh-poll-ms:5000}")
+  public void dispatch() {
+    synchronized (dispatchLock) {
+      try {
+        // Workers start only once their claims are committed
+        for (Long jobId : jobTransaction.execute(status -> claimJobs())) {
+          running.incrementAndGet();
+          start(jobId);
+        }
+      } catch (RuntimeException e) {
+        logger.error("Error dispatching recommendation refresh jobs: {}", e.getMessage(), e);
+      }
+    }
+  }
+
+  /**
+   * Deletes jobs that finished more than a week ago.
+   */
+  @Scheduled(fixedDelay = 3_600_000, initialDelay = 3_600_000)
+  public void purgeFinishedJobs() {
+    try {
+      int deleted = jobMapper.deleteFinishedJobs(LocalDateTime.now().minus(FINISHED_JOB_RETENTION));
+      logger.debug("Deleted {} finished recommendation refresh jobs", deleted);
+    } catch (RuntimeException e) {
+      logger.error("Error deleting finished recommendation refresh jobs: {}", e.getMessage(), e);
+    }
+  }
+
+  private List<Long> claimJobs() {
+    LocalDateTime now = LocalDateTime.now();
+    if (running.get() > 0) {
+      jobMapper.renewLeases(owner, now.plus(lease));
+    }
+    List<Long> claimed = new ArrayList<>();
+    int idle = workerCount - running.get();
+    if (idle <= 0) {
+      return claimed;
+    }
+    for (Long jobId : jobMapper.getClaimableJobIds(now, idle)) {
+      if (jobMapper.claimJob(jobId, owner, now.plus(lease), now) == 1) {
+        claimed.add(jobId);
+      }
+    }
+    return claimed;
+  }
+
+  private long enqueue(String username, String previousAnswers) {
+    LocalDateTime now = LocalDateTime.now();
+    RecommendationRefreshJob active = jobMapper.getActiveJob(username);
+    if (active != null && RecommendationRefreshJob.PENDING.equals(active.getJobStatus())
+        && jobMapper.supersedePendingJob(active.getJobId(), previousAnswers == null, now) == 1) {
+      coalesced.increment();
+      return active.getJobId();
+    }
+    RecommendationRefreshJob job = new RecommendationRefreshJob();
+    job.setUsername(username);
+    job.setPreviousAnswers(previousAnswers);
+    job.setJobStatus(RecommendationRefreshJob.PENDING);
+    job.setRunAfter(now);
+    job.setCreated(now);
+    job.setUpdated(now);
+    jobMapper.insertJob(job);
+    return job.getJobId();
+  }
+
+  private CompletableFuture<Void> watch(long jobId) {
+    CompletableFuture<Void> done = waiters.computeIfAbsent(jobId, id -> new CompletableFuture<>());
+    // The job may have finished before the waiter was registered
+    RecommendationRefreshJob job = jobTransaction.execute(status -> jobMapper.getJob(jobId));
+    if (job == null || RecommendationRefreshJob.DONE.equals(job.getJobStatus())) {
+      notifyWaiters(jobId, null);
+    } else if (RecommendationRefreshJob.FAILED.equals(job.getJobStatus())) {
+      notifyWaiters(jobId, job.getLastError());
+    }
+    return done;
+  }
+
+  private void start(long jobId) {
+    try {
+      workers.execute(() -> run(jobId));
+    } catch (RejectedExecutionException e) {
+      // Left to be claimed again once the lease runs out
+      running.decrementAndGet();
+      logger.error("Recommendation refresh job {} rejected: {}", jobId, e.getMessage());
+    }
+  }
+
+  private void run(long jobId) {
+    runs.increment();
+    int attempts = maxAttempts;
+    String error;
+    try {
+      RecommendationRefreshJob job = jobMapper.getJob(jobId);
+      attempts = job.getAttempts();
+      Account latestAccount = accountMapper.getAccountByUsername(job.getUsername());
+      boolean complete;
+      if (latestAccount == null) {
+        complete = true;
+      } else if (job.getPreviousAnswers() == null) {
+        complete = recommendationMessageService.refreshRecommendations(latestAccount);
+      } else {
+        complete = recommendationMessageService.refreshRecommendations(decodeAnswers(job.getPreviousAnswers()),
+            latestAccount);
+      }
+      error = complete ? null : "Some recommendation messages could not be generated or saved";
+    } catch (RuntimeException e) {
+      logger.error("Error running recommendation refresh job {}: {}", jobId, e.getMessage(), e);
+      error = e.toString();
+    }
+
+    try {
+      finish(jobId, attempts, error);
+    } finally {
+      running.decrementAndGet();
+    }
+    dispatch();
+  }
+
+  private void finish(long jobId, int attempts, String error) {
+    LocalDateTime now = LocalDateTime.now();
+    try {
+      if (error == null) {
+        jobTransaction.executeWithoutResult(status -> jobMapper.completeJob(jobId, owner, now));
+        notifyWaiters(jobId, null);
+      } else if (attempts >= maxAttempts) {
+        failures.increment();
+        jobTransaction.executeWithoutResult(status -> jobMapper.failJob(jobId, owner, truncate(error), now));
+        notifyWaiters(jobId, error);
+        logger.error("Recommendation refresh job {} failed after {} attempts: {}", jobId, attempts, error);
+      } else {
+        retries.increment();
+        long delay = backoffMillis(attempts, backoffMillis, maxBackoffMillis, ThreadLocalRandom.current().nextDouble());
+        jobTransaction.executeWithoutResult(
+            status -> jobMapper.retryJob(jobId, owner, now.plus(Duration.ofMillis(delay)), truncate(error), now));
+        logger.warn("Recommendation refresh job {} attempt {} failed, retrying in {} ms: {}", jobId, attempts, delay,
+            error);
+      }
+    } catch (RuntimeException e) {
+      // Left to be claimed again once the lease runs out
+      logger.error("Error recording the outcome of recommendation refresh job {}: {}", jobId, e.getMessage(), e);
+    }
+  }
+
+  private void notifyWaiters(long jobId, String error) {
+    CompletableFuture<Void> done = waiters.remove(jobId);
+    if (done == null) {
+      return;
+    }
+    if (error == null) {
+      done.complete(null);
+    } else {
+      done.completeExceptionally(new IllegalStateException(error));
+    }
+  }
+
+  /**
+   * Delay before the next attempt: exponential in the attempts made, capped, with equal jitter so that jobs failing
+   * together do not all retry together.
+   *
+   * @param attempts
+   *          the attempts made so far, at least 1
+   * @param baseMillis
+   *          the delay after the first attempt, before jitter
+   * @param maxMillis
+   *          the cap on the delay before jitter
+   * @param jitter
+   *          a random number in [0, 1)
+   *
+   * @return the delay in milliseconds, between half the capped exponential delay and all of it
+   */
+  static long backoffMillis(int attempts, long baseMillis, long maxMillis, double jitter) {
+    long exponential = baseMillis << Math.min(Math.max(attempts - 1, 0), 30);
+    long capped = Math.min(maxMillis, exponential < 0 ? maxMillis : exponential);
+    return capped / 2 + (long) (jitter * (capped - capped / 2));
+  }
+
+  static String encodeAnswers(Account account) {
+    Map<String, String> answers = new LinkedHashMap<>();
+    for (SurveyDimension dimension : SurveyDimension.values()) {
+      answers.put(dimension.getConditionName(), dimension.getValue(account));
+    }
+    try {
+      return OBJECT_MAPPER.writeValueAsString(answers);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Cannot encode survey answers", e);
+    }
+  }
+
+  static Account decodeAnswers(String json) {
+    Map<String, String> answers;
+    try {
+      answers = OBJECT_MAPPER.readValue(json, ANSWERS_TYPE);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Cannot decode survey answers: " + json, e);
+    }
+    Account account = new Account();
+    account.setResidenceEnv(answers.get(SurveyDimension.RESIDENCE_ENV.getConditionName()));
+    account.setCarePeriod(answers.get(SurveyDimension.CARE_PERIOD.getConditionName()));
+    account.setPetColorPref(answers.get(SurveyDimension.PET_COLOR_PREF.getConditionName()));
+    account.setPetSizePref(answers.get(SurveyDimension.PET_SIZE_PREF.getConditionName()));
+    account.setActivityTime(answers.get(SurveyDimension.ACTIVITY_TIME.getConditionName()));
+    account.setDietManagement(answers.get(SurveyDimension.DIET_MANAGEMENT.getConditionName()));
+    return account;
+  }
+
+  private static String truncate(String error) {
+    return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+  }
+
+  public long getRequests() {
+    return requests.sum();
+  }
+
+  /**
+   * Requests merged into a job that was already pending, or joining an existing one.
+   *
+   * @return the number of coalesced requests
+   */
+  public long getCoalesced() {
+    return coalesced.sum();
+  }
+
+  public long getRuns() {
+    return runs.sum();
+  }
+
+  public long getRetries() {
+    return retries.sum();
+  }
+
+  /**
+   * Jobs that ran out of attempts.
+   *
+   * @return the number of failed jobs
+   */
+  public long getFailures() {
+    return failures.sum();
+  }
+
+  public int getRunning() {
+    return running.get();
+  }
+
+  public int getWorkerCount() {
+    return workerCount;
+  }
+
+  /**
+   * Jobs waiting in RECOMMENDATION_REFRESH_JOB, including those waiting to be retried, across every instance.
+   *
+   * @return the number of pending jobs
+   */
+  public long getPendingJobs() {
+    return jobMapper.countJobs(RecommendationRefreshJob.PENDING);
+  }
+}
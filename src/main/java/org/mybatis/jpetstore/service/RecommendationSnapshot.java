@@ -0,0 +1,107 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * One immutable generation of the in-memory survey recommendation structures. {@link CatalogService} publishes a
+ * snapshot with a single reference swap, so a request that already holds one keeps reading consistent data while a
+ * reload builds the next one.
+ */
+public final class RecommendationSnapshot {
+
+  private final long version;
+  private final long dataVersion;
+  private final SurveyScoring scoring;
+  private final SurveyRecommendationIndex index;
+  private final SurveyExclusionRules exclusionRules;
+  private final SurveyProfileTable profileTable;
+  private final SurveyProfileVerdicts profileVerdicts;
+  private final SurveyProfileNeighbours profileNeighbours;
+  private final long buildMillis;
+  private final LocalDateTime builtAt;
+
+  RecommendationSnapshot(long version, long dataVersion, SurveyScoring scoring, SurveyRecommendationIndex index,
+      SurveyExclusionRules exclusionRules, SurveyProfileTable profileTable, SurveyProfileVerdicts profileVerdicts,
+      SurveyProfileNeighbours profileNeighbours, long buildMillis) {
+    this.version = version;
+    this.dataVersion = dataVersion;
+    this.scoring = scoring;
+    this.index = index;
+    this.exclusionRules = exclusionRules;
+    this.profileTable = profileTable;
+    this.profileVerdicts = profileVerdicts;
+    this.profileNeighbours = profileNeighbours;
+    this.buildMillis = buildMillis;
+    this.builtAt = LocalDateTime.now();
+  }
+
+  /**
+   * Sequence number of this snapshot, starting at 1 and incremented by every reload.
+   *
+   * @return the snapshot version
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * The SURVEY_RECOMMENDATION_VERSION value the snapshot was built from.
+   *
+   * @return the data version
+   */
+  public long getDataVersion() {
+    return dataVersion;
+  }
+
+  /**
+   * The SURVEY_SCORING weights and threshold every score in this snapshot was computed with.
+   *
+   * @return the scoring
+   */
+  public SurveyScoring getScoring() {
+    return scoring;
+  }
+
+  public SurveyRecommendationIndex getIndex() {
+    return index;
+  }
+
+  public SurveyExclusionRules getExclusionRules() {
+    return exclusionRules;
+  }
+
+  public SurveyProfileTable getProfileTable() {
+    return profileTable;
+  }
+
+  public SurveyProfileVerdicts getProfileVerdicts() {
+    return profileVerdicts;
+  }
+
+  public SurveyProfileNeighbours getProfileNeighbours() {
+    return profileNeighbours;
+  }
+
+  public long getBuildMillis() {
+    return buildMillis;
+  }
+
+  public LocalDateTime getBuiltAt() {
+    return builtAt;
+  }
+}
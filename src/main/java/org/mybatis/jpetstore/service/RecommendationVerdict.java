@@ -0,0 +1,133 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.mybatis.jpetstore.domain.SurveyDimension;
+
+/**
+ * The outcome of evaluating one product against an account's survey answers. A verdict is explained by a single
+ * survey recommendation row: the first qualifying row listing the product if it is recommended, otherwise the first
+ * row listing it at all. Condition sets hold {@link SurveyDimension#getConditionName() condition names} in dimension
+ * order.
+ */
+public final class RecommendationVerdict {
+
+  /** Survey recommendation id of a verdict for a product that no row lists. */
+  public static final int NO_ROW = -1;
+
+  // Verdicts are rebuilt on every lookup, so share one condition set per dimension mask
+  private static final List<Set<String>> CONDITION_SETS = conditionSets();
+
+  private final String productId;
+  private final boolean recommended;
+  private final double score;
+  private final int surveyRecommendationId;
+  private final Set<String> matchingConditions;
+  private final Set<String> mismatchingConditions;
+
+  RecommendationVerdict(String productId, boolean recommended, double score, int surveyRecommendationId,
+      int matchingMask, int mismatchingMask) {
+    this.productId = productId;
+    this.recommended = recommended;
+    this.score = score;
+    this.surveyRecommendationId = surveyRecommendationId;
+    this.matchingConditions = conditionNames(matchingMask);
+    this.mismatchingConditions = conditionNames(mismatchingMask);
+  }
+
+  static RecommendationVerdict notRecommended(String productId) {
+    return new RecommendationVerdict(productId, false, 0.0, NO_ROW, 0, 0);
+  }
+
+  static Set<String> conditionNames(int mask) {
+    return CONDITION_SETS.get(mask);
+  }
+
+  private static List<Set<String>> conditionSets() {
+    SurveyDimension[] dimensions = SurveyDimension.values();
+    List<Set<String>> sets = new ArrayList<>(1 << dimensions.length);
+    for (int mask = 0; mask < 1 << dimensions.length; mask++) {
+      Set<String> names = new LinkedHashSet<>();
+      for (SurveyDimension dimension : dimensions) {
+        if ((mask & (1 << dimension.ordinal())) != 0) {
+          names.add(dimension.getConditionName());
+        }
+      }
+      sets.add(Collections.unmodifiableSet(names));
+    }
+    return Collections.unmodifiableList(sets);
+  }
+
+  public String getProductId() {
+    return productId;
+  }
+
+  public boolean isRecommended() {
+    return recommended;
+  }
+
+  /**
+   * Weighted score of the explaining row.
+   *
+   * @return the score, or 0 if no row lists the product
+   */
+  public double getScore() {
+    return score;
+  }
+
+  /**
+   * Id of the explaining survey recommendation row.
+   *
+   * @return the survey recommendation id, or {@link #NO_ROW}
+   */
+  public int getSurveyRecommendationId() {
+    return surveyRecommendationId;
+  }
+
+  /**
+   * Survey conditions that matched the explaining row.
+   *
+   * @return the matching condition names
+   */
+  public Set<String> getMatchingConditions() {
+    return matchingConditions;
+  }
+
+  /**
+   * Survey conditions that did not match the explaining row.
+   *
+   * @return the mismatching condition names
+   */
+  public Set<String> getMismatchingConditions() {
+    return mismatchingConditions;
+  }
+
+  /**
+   * The conditions a recommendation message should mention: matching ones for a recommended product, mismatching ones
+   * otherwise.
+   *
+   * @return the condition names
+   */
+  public Set<String> getConditionsToMention() {
+    return recommended ? matchingConditions : mismatchingConditions;
+  }
+}
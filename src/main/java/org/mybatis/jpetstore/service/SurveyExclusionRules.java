@@ -0,0 +1,127 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.mybatis.jpetstore.domain.Account;
+import org.mybatis.jpetstore.domain.SurveyDimension;
+import org.mybatis.jpetstore.domain.SurveyExclusionRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SURVEY_EXCLUSION_RULE compiled against the product catalogue of a {@link SurveyRecommendationIndex}. Every rule is
+ * resolved once into a bitmask of product ordinals attached to one survey answer, so the products excluded for a
+ * profile are the union of at most one mask per dimension, whatever the number of rules.
+ */
+public final class SurveyExclusionRules {
+
+  private static final Logger logger = LoggerFactory.getLogger(SurveyExclusionRules.class);
+  private static final SurveyDimension[] DIMENSIONS = SurveyDimension.values();
+
+  // Excluded product ordinals by dimension and answer ordinal; null where no rule applies
+  private final BitSet[][] excludedByAnswer;
+  private final int ruleCount;
+
+  private SurveyExclusionRules(BitSet[][] excludedByAnswer, int ruleCount) {
+    this.excludedByAnswer = excludedByAnswer;
+    this.ruleCount = ruleCount;
+  }
+
+  /**
+   * Compiles rules against the catalogue of an index. Rules naming an unknown condition or an answer that is not one
+   * of its options can never match and are skipped with a warning.
+   *
+   * @param rules
+   *          the exclusion rules
+   * @param index
+   *          the index whose product ordinals the masks use
+   *
+   * @return the compiled rules
+   */
+  public static SurveyExclusionRules compile(List<SurveyExclusionRule> rules, SurveyRecommendationIndex index) {
+    BitSet[][] excludedByAnswer = new BitSet[DIMENSIONS.length][];
+    for (SurveyDimension dimension : DIMENSIONS) {
+      excludedByAnswer[dimension.ordinal()] = new BitSet[dimension.getCardinality()];
+    }
+    int ruleCount = 0;
+    for (SurveyExclusionRule rule : rules) {
+      SurveyDimension dimension = SurveyDimension.forConditionName(rule.getConditionName());
+      int answer = dimension == null ? -1 : dimension.ordinalOf(rule.getAnswer());
+      if (answer < 0 || rule.getProductIdPrefix() == null || rule.getProductIdPrefix().isEmpty()) {
+        logger.warn("Skipping exclusion rule {}: no survey answer '{}' for condition '{}' or no product id prefix",
+            rule.getRuleId(), rule.getAnswer(), rule.getConditionName());
+        continue;
+      }
+      BitSet[] masks = excludedByAnswer[dimension.ordinal()];
+      if (masks[answer] == null) {
+        masks[answer] = new BitSet(index.getProductCount());
+      }
+      for (int p = 0; p < index.getProductCount(); p++) {
+        if (index.getProduct(p).getProductId().startsWith(rule.getProductIdPrefix())) {
+          masks[answer].set(p);
+        }
+      }
+      ruleCount++;
+    }
+    return new SurveyExclusionRules(excludedByAnswer, ruleCount);
+  }
+
+  /**
+   * Gets the products excluded for a profile.
+   *
+   * @param ordinals
+   *          the answer ordinal of each dimension, or -1 where the answer is missing or not canonical
+   *
+   * @return a new bitset of excluded product ordinals
+   */
+  public BitSet excludedProducts(int[] ordinals) {
+    BitSet excluded = new BitSet();
+    for (int d = 0; d < DIMENSIONS.length; d++) {
+      if (ordinals[d] >= 0 && excludedByAnswer[d][ordinals[d]] != null) {
+        excluded.or(excludedByAnswer[d][ordinals[d]]);
+      }
+    }
+    return excluded;
+  }
+
+  /**
+   * Gets the products excluded for an account's answers. Answers that are not survey options match no rule.
+   *
+   * @param account
+   *          the account
+   *
+   * @return a new bitset of excluded product ordinals
+   */
+  public BitSet excludedProducts(Account account) {
+    int[] ordinals = new int[DIMENSIONS.length];
+    for (SurveyDimension dimension : DIMENSIONS) {
+      ordinals[dimension.ordinal()] = dimension.ordinalOf(dimension.getValue(account));
+    }
+    return excludedProducts(ordinals);
+  }
+
+  /**
+   * Number of rules that compiled.
+   *
+   * @return the rule count
+   */
+  public int size() {
+    return ruleCount;
+  }
+}
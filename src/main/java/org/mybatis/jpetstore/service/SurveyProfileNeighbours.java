@@ -0,0 +1,238 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.mybatis.jpetstore.domain.Account;
+import org.mybatis.jpetstore.domain.SurveyDimension;
+
+/**
+ * The nearest {@link SurveyProfileTable} rows of every complete survey profile, ranked by weighted Hamming similarity:
+ * the sum of the weights of the dimensions whose answers are equal. Like {@link SurveyProfileVerdicts}, all
+ * {@link SurveyDimension#PROFILE_COUNT} profiles are ranked up front, so a lookup is a slice of an array instead of a
+ * scan over the rows.
+ * <p>
+ * Each neighbour is stored as its profile key and the dimension mask it matches; the entry and the score are resolved
+ * from those on lookup. Ties are broken by survey recommendation id, so the first row wins as in the exact lookup.
+ */
+public final class SurveyProfileNeighbours {
+
+  private static final int NO_NEIGHBOUR = -1;
+
+  private final SurveyProfileTable table;
+  private final int neighboursPerProfile;
+  private final double[] maskScores;
+  private final int[] neighbourKeys;
+  private final byte[] neighbourMasks;
+  private final long buildMillis;
+
+  private SurveyProfileNeighbours(SurveyProfileTable table, int neighboursPerProfile, double[] maskScores,
+      int[] neighbourKeys, byte[] neighbourMasks, long buildMillis) {
+    this.table = table;
+    this.neighboursPerProfile = neighboursPerProfile;
+    this.maskScores = maskScores;
+    this.neighbourKeys = neighbourKeys;
+    this.neighbourMasks = neighbourMasks;
+    this.buildMillis = buildMillis;
+  }
+
+  /**
+   * Ranks the rows of a table for all profiles in parallel on the common fork-join pool.
+   *
+   * @param table
+   *          the exact-match table holding the candidate rows
+   * @param weights
+   *          the dimension weights, in {@link SurveyDimension} order
+   * @param neighboursPerProfile
+   *          how many rows to keep per profile
+   *
+   * @return the ranked neighbours
+   */
+  public static SurveyProfileNeighbours build(SurveyProfileTable table, double[] weights, int neighboursPerProfile) {
+    SurveyDimension[] dimensions = SurveyDimension.values();
+    if (weights.length != dimensions.length) {
+      throw new IllegalArgumentException("Expected " + dimensions.length + " weights but got " + weights.length);
+    }
+    if (neighboursPerProfile < 1) {
+      throw new IllegalArgumentException("neighboursPerProfile must be positive but was " + neighboursPerProfile);
+    }
+    long start = System.nanoTime();
+    double[] maskScores = new double[1 << dimensions.length];
+    for (int mask = 0; mask < maskScores.length; mask++) {
+      for (int d = 0; d < dimensions.length; d++) {
+        if ((mask & (1 << d)) != 0) {
+          maskScores[mask] += weights[d];
+        }
+      }
+    }
+
+    // Candidates in survey recommendation id order, with their answers stored dimension-major
+    Integer[] sorted = IntStream.range(0, SurveyDimension.PROFILE_COUNT).filter(key -> table.get(key) != null)
+        .boxed()
+        .sorted(Comparator.comparingInt(key -> table.get(key).getRecommendation().getSurveyRecommendationId()))
+        .toArray(Integer[]::new);
+    int[] candidates = new int[sorted.length];
+    byte[][] columns = new byte[dimensions.length][sorted.length];
+    for (int c = 0; c < sorted.length; c++) {
+      candidates[c] = sorted[c];
+      int[] ordinals = SurveyDimension.ordinals(sorted[c]);
+      for (int d = 0; d < dimensions.length; d++) {
+        columns[d][c] = (byte) ordinals[d];
+      }
+    }
+
+    int[] neighbourKeys = new int[SurveyDimension.PROFILE_COUNT * neighboursPerProfile];
+    byte[] neighbourMasks = new byte[neighbourKeys.length];
+    Arrays.fill(neighbourKeys, NO_NEIGHBOUR);
+    // Each profile writes its own slice, so the parallel tasks never share a slot
+    IntStream.range(0, SurveyDimension.PROFILE_COUNT).parallel()
+        .forEach(profileKey -> rank(SurveyDimension.ordinals(profileKey), columns, candidates, maskScores,
+            neighbourKeys, neighbourMasks, profileKey * neighboursPerProfile, neighboursPerProfile));
+    return new SurveyProfileNeighbours(table, neighboursPerProfile, maskScores, neighbourKeys, neighbourMasks,
+        (System.nanoTime() - start) / 1_000_000);
+  }
+
+  private static void rank(int[] profile, byte[][] columns, int[] candidates, double[] maskScores, int[] keys,
+      byte[] masks, int offset, int limit) {
+    int[] matchMasks = new int[candidates.length];
+    for (int d = 0; d < profile.length; d++) {
+      byte[] column = columns[d];
+      int value = profile[d];
+      int bit = 1 << d;
+      for (int c = 0; c < column.length; c++) {
+        if (column[c] == value) {
+          matchMasks[c] |= bit;
+        }
+      }
+    }
+    // Insertion into a short sorted slice; strict comparison keeps the earlier candidate first on ties
+    int size = 0;
+    for (int c = 0; c < candidates.length; c++) {
+      double score = maskScores[matchMasks[c]];
+      if (size == limit && score <= maskScores[masks[offset + limit - 1]]) {
+        continue;
+      }
+      int slot = Math.min(size, limit - 1);
+      while (slot > 0 && score > maskScores[masks[offset + slot - 1]]) {
+        keys[offset + slot] = keys[offset + slot - 1];
+        masks[offset + slot] = masks[offset + slot - 1];
+        slot--;
+      }
+      keys[offset + slot] = candidates[c];
+      masks[offset + slot] = (byte) matchMasks[c];
+      if (size < limit) {
+        size++;
+      }
+    }
+  }
+
+  /**
+   * Gets the nearest rows to the account's answers.
+   *
+   * @param account
+   *          the account
+   *
+   * @return the neighbours, best first; empty if the survey is incomplete or the table has no rows
+   */
+  public List<Neighbour> get(Account account) {
+    return get(SurveyDimension.profileKey(account));
+  }
+
+  public List<Neighbour> get(int profileKey) {
+    if (profileKey < 0 || profileKey >= SurveyDimension.PROFILE_COUNT) {
+      return Collections.emptyList();
+    }
+    List<Neighbour> neighbours = new ArrayList<>(neighboursPerProfile);
+    for (int i = profileKey * neighboursPerProfile; i < (profileKey + 1) * neighboursPerProfile; i++) {
+      if (neighbourKeys[i] == NO_NEIGHBOUR) {
+        break;
+      }
+      neighbours.add(new Neighbour(table.get(neighbourKeys[i]), maskScores[neighbourMasks[i]], neighbourMasks[i],
+          maskScores.length - 1));
+    }
+    return neighbours;
+  }
+
+  public long getBuildMillis() {
+    return buildMillis;
+  }
+
+  /**
+   * Approximate heap used by the neighbour lists.
+   *
+   * @return the size in bytes
+   */
+  public long getFootprintBytes() {
+    // int[] and byte[] headers plus 5 bytes per neighbour slot
+    return 32L + 5L * neighbourKeys.length;
+  }
+
+  /**
+   * One row near a profile and how well it matches.
+   */
+  public static final class Neighbour {
+
+    private final SurveyProfileTable.Entry entry;
+    private final double score;
+    private final int matchingMask;
+    private final int allDimensionsMask;
+
+    Neighbour(SurveyProfileTable.Entry entry, double score, int matchingMask, int allDimensionsMask) {
+      this.entry = entry;
+      this.score = score;
+      this.matchingMask = matchingMask;
+      this.allDimensionsMask = allDimensionsMask;
+    }
+
+    public SurveyProfileTable.Entry getEntry() {
+      return entry;
+    }
+
+    /**
+     * Sum of the weights of the matching dimensions.
+     *
+     * @return the score
+     */
+    public double getScore() {
+      return score;
+    }
+
+    /**
+     * Whether all six answers are equal, i.e. the row is the exact match.
+     *
+     * @return true for the exact match
+     */
+    public boolean isExact() {
+      return matchingMask == allDimensionsMask;
+    }
+
+    /**
+     * Survey conditions whose answers differ from the row.
+     *
+     * @return the mismatching condition names
+     */
+    public Set<String> getMismatchingConditions() {
+      return RecommendationVerdict.conditionNames(~matchingMask & allDimensionsMask);
+    }
+  }
+}
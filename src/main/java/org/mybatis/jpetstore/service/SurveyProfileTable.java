@@ -0,0 +1,125 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.mybatis.jpetstore.domain.Account;
+import org.mybatis.jpetstore.domain.Item;
+import org.mybatis.jpetstore.domain.SurveyDimension;
+import org.mybatis.jpetstore.domain.SurveyRecommendation;
+
+/**
+ * Immutable exact-match lookup of SURVEY_RECOMMENDATIONS. The survey answer space is a fixed Cartesian product, so
+ * every complete profile has a dense mixed-radix key ({@link SurveyDimension#profileKey(Account)}) that addresses an
+ * array slot holding the matching row and its already resolved items.
+ */
+public final class SurveyProfileTable {
+
+  private final Entry[] entries;
+  private final int size;
+
+  private SurveyProfileTable(Entry[] entries, int size) {
+    this.entries = entries;
+    this.size = size;
+  }
+
+  /**
+   * Builds the table. When several rows share a profile the first one wins, like the original
+   * {@code FETCH FIRST 1 ROWS ONLY} query. Rows with non-canonical answers cannot be addressed and are skipped.
+   *
+   * @param recommendations
+   *          all survey recommendation rows
+   * @param firstItemOfProduct
+   *          resolves the item shown for a product, or null if the product has no items
+   *
+   * @return the table
+   */
+  public static SurveyProfileTable build(List<SurveyRecommendation> recommendations,
+      Function<String, Item> firstItemOfProduct) {
+    Entry[] entries = new Entry[SurveyDimension.PROFILE_COUNT];
+    Map<String, Item> items = new HashMap<>();
+    int size = 0;
+    for (SurveyRecommendation recommendation : recommendations) {
+      int key = SurveyDimension.profileKey(recommendation);
+      if (key < 0 || entries[key] != null) {
+        continue;
+      }
+      List<Item> recommendedItems = new ArrayList<>();
+      for (String productId : SurveyRecommendationIndex.productIds(recommendation)) {
+        Item item = items.computeIfAbsent(productId, firstItemOfProduct);
+        if (item != null) {
+          recommendedItems.add(item);
+        }
+      }
+      entries[key] = new Entry(recommendation, Collections.unmodifiableList(recommendedItems));
+      size++;
+    }
+    return new SurveyProfileTable(entries, size);
+  }
+
+  /**
+   * Looks up the row whose six answers equal the account's answers.
+   *
+   * @param account
+   *          the account
+   *
+   * @return the entry, or null if the survey is incomplete or no row matches exactly
+   */
+  public Entry get(Account account) {
+    return get(SurveyDimension.profileKey(account));
+  }
+
+  public Entry get(int profileKey) {
+    return profileKey < 0 || profileKey >= entries.length ? null : entries[profileKey];
+  }
+
+  /**
+   * Number of addressable profiles that have a row.
+   *
+   * @return the number of filled slots
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * A survey recommendation row together with the first item of each recommended product, in JSON order.
+   */
+  public static final class Entry {
+
+    private final SurveyRecommendation recommendation;
+    private final List<Item> items;
+
+    Entry(SurveyRecommendation recommendation, List<Item> items) {
+      this.recommendation = recommendation;
+      this.items = items;
+    }
+
+    public SurveyRecommendation getRecommendation() {
+      return recommendation;
+    }
+
+    public List<Item> getItems() {
+      return items;
+    }
+  }
+}
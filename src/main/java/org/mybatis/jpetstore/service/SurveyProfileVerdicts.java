@@ -0,0 +1,186 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import org.mybatis.jpetstore.domain.SurveyDimension;
+
+/**
+ * Recommendation verdicts of every product for every complete survey profile, materialized from a
+ * {@link SurveyRecommendationIndex}. The answer space has only {@link SurveyDimension#PROFILE_COUNT} profiles, so all
+ * of them are evaluated up front and serving an account is an array lookup by its
+ * {@link SurveyDimension#profileKey(org.mybatis.jpetstore.domain.Account) profile key}.
+ * <p>
+ * Only the explaining row of each (profile, product) pair is stored, in the compact form written by
+ * {@link SurveyRecommendationIndex#explain}; verdicts are rebuilt from it on lookup. The best-scoring row of each pair
+ * is kept alongside for {@link #rank ranking} products by fit.
+ */
+public final class SurveyProfileVerdicts {
+
+  private static final SurveyDimension[] DIMENSIONS = SurveyDimension.values();
+
+  private final SurveyRecommendationIndex index;
+  private final int productCount;
+  private final int[] explanations;
+  private final int[] bestRows;
+  private final long buildMillis;
+
+  private SurveyProfileVerdicts(SurveyRecommendationIndex index, int[] explanations, int[] bestRows,
+      long buildMillis) {
+    this.index = index;
+    this.productCount = index.getProductCount();
+    this.explanations = explanations;
+    this.bestRows = bestRows;
+    this.buildMillis = buildMillis;
+  }
+
+  /**
+   * Evaluates all profiles in parallel on the common fork-join pool. Canonical answers have the same ordinal in
+   * {@link SurveyDimension} and in the index dictionaries, so decoded profile keys are used as encoded profiles as is.
+   *
+   * @param index
+   *          the index to evaluate
+   * @param excludedProducts
+   *          the product ordinals excluded for a profile key
+   *
+   * @return the materialized verdicts
+   */
+  public static SurveyProfileVerdicts build(SurveyRecommendationIndex index, IntFunction<BitSet> excludedProducts) {
+    long start = System.nanoTime();
+    int productCount = index.getProductCount();
+    int[] explanations = new int[SurveyDimension.PROFILE_COUNT * productCount];
+    int[] bestRows = new int[explanations.length];
+    // Each profile writes its own slice, so the parallel tasks never share a slot
+    IntStream.range(0, SurveyDimension.PROFILE_COUNT).parallel().forEach(profileKey -> index.explain(
+        SurveyDimension.ordinals(profileKey), excludedProducts.apply(profileKey), explanations, bestRows,
+        profileKey * productCount));
+    return new SurveyProfileVerdicts(index, explanations, bestRows, (System.nanoTime() - start) / 1_000_000);
+  }
+
+  /**
+   * Gets the verdict of a product for a profile.
+   *
+   * @param profileKey
+   *          the profile key
+   * @param productId
+   *          the product id
+   *
+   * @return the verdict; not recommended if the product was not in the catalogue of the index
+   */
+  public RecommendationVerdict get(int profileKey, String productId) {
+    int productOrdinal = index.productOrdinal(productId);
+    if (productOrdinal < 0) {
+      return RecommendationVerdict.notRecommended(productId);
+    }
+    return index.verdict(SurveyDimension.ordinals(profileKey), productOrdinal,
+        explanations[profileKey * productCount + productOrdinal]);
+  }
+
+  /**
+   * Gets the verdicts of all products for a profile.
+   *
+   * @param profileKey
+   *          the profile key
+   *
+   * @return the verdicts, indexed by product ordinal
+   */
+  public RecommendationVerdict[] get(int profileKey) {
+    int[] profile = SurveyDimension.ordinals(profileKey);
+    RecommendationVerdict[] verdicts = new RecommendationVerdict[productCount];
+    for (int p = 0; p < productCount; p++) {
+      verdicts[p] = index.verdict(profile, p, explanations[profileKey * productCount + p]);
+    }
+    return verdicts;
+  }
+
+  /**
+   * Ranks products by their best weighted score for a profile, from the precomputed best rows.
+   *
+   * @param profileKey
+   *          the profile key
+   * @param candidates
+   *          the product ordinals to rank, or null for the whole catalogue
+   * @param k
+   *          the maximum number of products to return
+   *
+   * @return verdicts explained by each product's best row, best first; products no row lists and excluded products
+   *         are left out
+   */
+  public List<RecommendationVerdict> rank(int profileKey, BitSet candidates, int k) {
+    return index.rank(SurveyDimension.ordinals(profileKey), bestRows, profileKey * productCount, candidates, k);
+  }
+
+  /**
+   * Counts, for every product, the complete profiles that recommend it among the completions of a partially answered
+   * survey. Reads the recommended bit of the stored explanations only, so no verdict is rebuilt.
+   *
+   * @param partialProfile
+   *          the ordinal of each answered dimension, or -1 for an unanswered one
+   * @param recommendedCounts
+   *          the target, indexed by product ordinal
+   *
+   * @return the number of completions
+   */
+  public int countRecommended(int[] partialProfile, int[] recommendedCounts) {
+    return countRecommended(partialProfile, 0, 0, recommendedCounts);
+  }
+
+  private int countRecommended(int[] partialProfile, int dimension, int keyPrefix, int[] recommendedCounts) {
+    if (dimension == partialProfile.length) {
+      int offset = keyPrefix * productCount;
+      for (int p = 0; p < productCount; p++) {
+        int explanation = explanations[offset + p];
+        if (explanation != SurveyRecommendationIndex.NO_MATCH && (explanation & 1) != 0) {
+          recommendedCounts[p]++;
+        }
+      }
+      return 1;
+    }
+    int cardinality = DIMENSIONS[dimension].getCardinality();
+    if (partialProfile[dimension] >= 0) {
+      return countRecommended(partialProfile, dimension + 1, keyPrefix * cardinality + partialProfile[dimension],
+          recommendedCounts);
+    }
+    int completions = 0;
+    for (int ordinal = 0; ordinal < cardinality; ordinal++) {
+      completions += countRecommended(partialProfile, dimension + 1, keyPrefix * cardinality + ordinal,
+          recommendedCounts);
+    }
+    return completions;
+  }
+
+  public SurveyRecommendationIndex getIndex() {
+    return index;
+  }
+
+  public long getBuildMillis() {
+    return buildMillis;
+  }
+
+  /**
+   * Approximate heap used by the materialized explanations and best rows.
+   *
+   * @return the size in bytes
+   */
+  public long getFootprintBytes() {
+    // Two int[] headers plus 8 bytes per (profile, product) pair
+    return 32L + 8L * explanations.length;
+  }
+}
@@ -0,0 +1,614 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.mybatis.jpetstore.domain.Account;
+import org.mybatis.jpetstore.domain.Product;
+import org.mybatis.jpetstore.domain.SurveyDimension;
+import org.mybatis.jpetstore.domain.SurveyRecommendation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Immutable, dictionary-encoded snapshot of SURVEY_RECOMMENDATIONS. Every survey answer is stored as a small ordinal in
+ * one column per {@link SurveyDimension}, and the recommended products of each row as a bitset over the product
+ * catalogue, so evaluating a profile is a few byte comparisons and a bit test per row with no string or JSON work.
+ * <p>
+ * Whole-table evaluation uses a columnar kernel ({@link #matchMasks}) that compares one column at a time and records
+ * which dimensions of each row matched. A row's score depends only on that 6-bit mask, so scores and the threshold
+ * test come from 64-entry tables computed from the weights.
+ */
+public final class SurveyRecommendationIndex {
+
+  /** Ordinal of a profile answer that matches no survey row. */
+  public static final int NO_MATCH = -1;
+
+  private static final Logger logger = LoggerFactory.getLogger(SurveyRecommendationIndex.class);
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final SurveyDimension[] DIMENSIONS = SurveyDimension.values();
+
+  private final List<Map<String, Integer>> dictionaries;
+  private final byte[][] columns;
+  private final int[] rowIds;
+  private final BitSet[] rowProducts;
+  private final Map<String, Integer> productOrdinals;
+  private final List<Product> products;
+  private final double[] weights;
+  private final double threshold;
+  private final double[] maskScores;
+  private final long qualifyingMasks;
+  // Position of each mask's score among the distinct scores, best first
+  private final int[] maskScoreRanks;
+  private final int scoreRankCount;
+  private final BitSet listedProducts;
+
+  private SurveyRecommendationIndex(List<Map<String, Integer>> dictionaries, byte[][] columns, int[] rowIds,
+      BitSet[] rowProducts, Map<String, Integer> productOrdinals, List<Product> products, double[] weights,
+      double threshold) {
+    this.dictionaries = dictionaries;
+    this.columns = columns;
+    this.rowIds = rowIds;
+    this.rowProducts = rowProducts;
+    this.productOrdinals = productOrdinals;
+    this.products = products;
+    this.weights = weights;
+    this.threshold = threshold;
+    this.maskScores = new double[1 << weights.length];
+    long qualifying = 0L;
+    for (int mask = 0; mask < maskScores.length; mask++) {
+      for (int d = 0; d < weights.length; d++) {
+        if ((mask & (1 << d)) != 0) {
+          maskScores[mask] += weights[d];
+        }
+      }
+      if (maskScores[mask] >= threshold) {
+        qualifying |= 1L << mask;
+      }
+    }
+    this.qualifyingMasks = qualifying;
+    double[] distinctScores = Arrays.stream(maskScores).distinct().sorted().toArray();
+    this.scoreRankCount = distinctScores.length;
+    this.maskScoreRanks = new int[maskScores.length];
+    for (int mask = 0; mask < maskScores.length; mask++) {
+      maskScoreRanks[mask] = scoreRankCount - 1 - Arrays.binarySearch(distinctScores, maskScores[mask]);
+    }
+    this.listedProducts = new BitSet(products.size());
+    for (BitSet bits : rowProducts) {
+      listedProducts.or(bits);
+    }
+  }
+
+  /**
+   * Builds an index from the survey recommendation rows and the product catalogue.
+   *
+   * @param recommendations
+   *          all survey recommendation rows
+   * @param catalogue
+   *          all products; recommended product ids that are not in the catalogue are ignored
+   * @param weights
+   *          the score weight of each dimension, in {@link SurveyDimension} order
+   * @param threshold
+   *          the minimum weighted score for a row to apply to a profile
+   *
+   * @return the index
+   */
+  public static SurveyRecommendationIndex build(List<SurveyRecommendation> recommendations, List<Product> catalogue,
+      double[] weights, double threshold) {
+    if (weights.length != DIMENSIONS.length) {
+      throw new IllegalArgumentException("Expected " + DIMENSIONS.length + " weights but got " + weights.length);
+    }
+
+    List<Product> products = new ArrayList<>(catalogue.size());
+    Map<String, Integer> productOrdinals = new HashMap<>();
+    for (Product product : catalogue) {
+      if (product.getProductId() != null && !productOrdinals.containsKey(product.getProductId())) {
+        productOrdinals.put(product.getProductId(), products.size());
+        products.add(product);
+      }
+    }
+
+    // Seed every dictionary with the canonical answers so ordinals are stable across reloads
+    List<Map<String, Integer>> dictionaries = new ArrayList<>(DIMENSIONS.length);
+    for (SurveyDimension dimension : DIMENSIONS) {
+      Map<String, Integer> dictionary = new HashMap<>();
+      for (String option : dimension.getOptions()) {
+        dictionary.put(option, dictionary.size());
+      }
+      dictionaries.add(dictionary);
+    }
+
+    List<SurveyRecommendation> rows = new ArrayList<>(recommendations.size());
+    for (SurveyRecommendation recommendation : recommendations) {
+      if (recommendation.getRecommendedJsonData() != null) {
+        rows.add(recommendation);
+      }
+    }
+
+    byte[][] columns = new byte[DIMENSIONS.length][rows.size()];
+    int[] rowIds = new int[rows.size()];
+    BitSet[] rowProducts = new BitSet[rows.size()];
+    for (int row = 0; row < rows.size(); row++) {
+      SurveyRecommendation recommendation = rows.get(row);
+      rowIds[row] = recommendation.getSurveyRecommendationId();
+      for (int d = 0; d < DIMENSIONS.length; d++) {
+        columns[d][row] = (byte) encodeRowValue(dictionaries.get(d), DIMENSIONS[d].getValue(recommendation));
+      }
+      rowProducts[row] = parseProducts(recommendation, productOrdinals);
+    }
+
+    List<Map<String, Integer>> frozenDictionaries = new ArrayList<>(dictionaries.size());
+    for (Map<String, Integer> dictionary : dictionaries) {
+      frozenDictionaries.add(Collections.unmodifiableMap(dictionary));
+    }
+    return new SurveyRecommendationIndex(Collections.unmodifiableList(frozenDictionaries), columns, rowIds,
+        rowProducts, Collections.unmodifiableMap(productOrdinals), Collections.unmodifiableList(products),
+        weights.clone(), threshold);
+  }
+
+  private static int encodeRowValue(Map<String, Integer> dictionary, String value) {
+    String key = value == null ? "" : value.trim();
+    Integer ordinal = dictionary.get(key);
+    if (ordinal == null) {
+      if (dictionary.size() > Byte.MAX_VALUE) {
+        throw new IllegalStateException("Too many distinct survey answers to encode: " + key);
+      }
+      ordinal = dictionary.size();
+      dictionary.put(key, ordinal);
+    }
+    return ordinal;
+  }
+
+  private static BitSet parseProducts(SurveyRecommendation recommendation, Map<String, Integer> productOrdinals) {
+    BitSet bits = new BitSet(productOrdinals.size());
+    for (String productId : productIds(recommendation)) {
+      Integer ordinal = productOrdinals.get(productId);
+      if (ordinal != null) {
+        bits.set(ordinal);
+      }
+    }
+    return bits;
+  }
+
+  /**
+   * Gets the recommended product ids of a row from SURVEY_RECOMMENDATION_PRODUCT, falling back to its
+   * recommended_json_data for rows that have not been migrated yet.
+   *
+   * @param recommendation
+   *          the survey recommendation
+   *
+   * @return the product ids, in order
+   */
+  static List<String> productIds(SurveyRecommendation recommendation) {
+    List<String> productIds = recommendation.getRecommendedProductIds();
+    return productIds == null || productIds.isEmpty() ? parseProductIds(recommendation) : productIds;
+  }
+
+  /**
+   * Reads the product ids listed in the recommended_json_data of a row, in order and without duplicates.
+   *
+   * @param recommendation
+   *          the survey recommendation
+   *
+   * @return the product ids; empty if the JSON cannot be read
+   */
+  static List<String> parseProductIds(SurveyRecommendation recommendation) {
+    List<String> productIds = new ArrayList<>();
+    String json = recommendation.getRecommendedJsonData();
+    if (json == null || json.isBlank()) {
+      return productIds;
+    }
+    try {
+      JsonNode array = OBJECT_MAPPER.readTree(json);
+      if (array.isArray()) {
+        for (JsonNode node : array) {
+          String productId = node.path("productId").asText(null);
+          if (productId != null && !productId.isBlank() && !productIds.contains(productId)) {
+            productIds.add(productId);
+          }
+        }
+      }
+    } catch (Exception e) {
+      logger.warn("Ignoring unreadable recommended_json_data of survey recommendation {}: {}",
+          recommendation.getSurveyRecommendationId(), e.getMessage());
+    }
+    return productIds;
+  }
+
+  /**
+   * Encodes the survey answers of an account into per-dimension ordinals.
+   *
+   * @param account
+   *          the account
+   *
+   * @return the encoded profile; answers that appear in no survey row are {@link #NO_MATCH}
+   */
+  public int[] encode(Account account) {
+    int[] profile = new int[DIMENSIONS.length];
+    for (int d = 0; d < DIMENSIONS.length; d++) {
+      String value = DIMENSIONS[d].getValue(account);
+      Integer ordinal = value == null || value.isEmpty() ? null : dictionaries.get(d).get(value.trim());
+      profile[d] = ordinal == null ? NO_MATCH : ordinal;
+    }
+    return profile;
+  }
+
+  /**
+   * Computes the weighted score of a row for an encoded profile.
+   *
+   * @param profile
+   *          the encoded profile
+   * @param row
+   *          the row position in this index
+   *
+   * @return the weighted score
+   */
+  public double score(int[] profile, int row) {
+    double score = 0.0;
+    for (int d = 0; d < columns.length; d++) {
+      if (columns[d][row] == profile[d]) {
+        score += weights[d];
+      }
+    }
+    return score;
+  }
+
+  /**
+   * Computes which dimensions of every row match a profile. The loop runs column by column over the byte arrays with
+   * no data-dependent branches, so the JIT can unroll and vectorize it.
+   *
+   * @param profile
+   *          the encoded profile
+   * @param masks
+   *          receives one match mask per row position, bit {@code d} set if dimension {@code d} matched
+   */
+  void matchMasks(int[] profile, int[] masks) {
+    int rows = rowIds.length;
+    Arrays.fill(masks, 0, rows, 0);
+    for (int d = 0; d < columns.length; d++) {
+      if (profile[d] == NO_MATCH) {
+        continue;
+      }
+      byte[] column = columns[d];
+      byte value = (byte) profile[d];
+      int bit = 1 << d;
+      for (int row = 0; row < rows; row++) {
+        masks[row] |= column[row] == value ? bit : 0;
+      }
+    }
+  }
+
+  /**
+   * Checks whether any row that scores at least the threshold for the profile recommends the product.
+   *
+   * @param profile
+   *          the encoded profile
+   * @param productId
+   *          the product id
+   *
+   * @return true if the product is recommended
+   */
+  public boolean isRecommended(int[] profile, String productId) {
+    Integer product = productOrdinals.get(productId);
+    if (product == null) {
+      return false;
+    }
+    for (int row = 0; row < rowIds.length; row++) {
+      if (rowProducts[row].get(product) && score(profile, row) >= threshold) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Evaluates one product for a profile in a single pass over the rows: the score, the explaining row and the matched
+   * and mismatched dimensions all come out of the same scan.
+   *
+   * @param profile
+   *          the encoded profile
+   * @param productId
+   *          the product id
+   * @param excluded
+   *          whether the product must not be recommended whatever its score
+   *
+   * @return the verdict
+   */
+  public RecommendationVerdict evaluate(int[] profile, String productId, boolean excluded) {
+    Integer product = productOrdinals.get(productId);
+    if (product == null) {
+      return RecommendationVerdict.notRecommended(productId);
+    }
+    int firstRow = -1;
+    int winningRow = -1;
+    for (int row = 0; row < rowIds.length; row++) {
+      if (!rowProducts[row].get(product)) {
+        continue;
+      }
+      if (firstRow < 0) {
+        firstRow = row;
+        if (excluded) {
+          break;
+        }
+      }
+      if (score(profile, row) >= threshold) {
+        winningRow = row;
+        break;
+      }
+    }
+    return verdict(profile, productId, winningRow, firstRow);
+  }
+
+  /**
+   * Evaluates every catalogue product for a profile in one pass over the rows. Each row is scored once; a product is
+   * recommended by the first qualifying row that lists it, and explained by the first row that lists it otherwise,
+   * which is what the per-product scans used to compute.
+   *
+   * @param profile
+   *          the encoded profile
+   * @param excluded
+   *          product ordinals that must not be recommended whatever their score
+   *
+   * @return the verdict of each product, indexed by product ordinal
+   */
+  public RecommendationVerdict[] evaluate(int[] profile, BitSet excluded) {
+    int[] explanations = new int[products.size()];
+    int[] masks = new int[rowIds.length];
+    matchMasks(profile, masks);
+    explainMasks(masks, excluded, explanations, 0);
+    RecommendationVerdict[] verdicts = new RecommendationVerdict[explanations.length];
+    for (int p = 0; p < verdicts.length; p++) {
+      verdicts[p] = verdict(profile, p, explanations[p]);
+    }
+    return verdicts;
+  }
+
+  /**
+   * Compact form of {@link #evaluate(int[], BitSet)}: writes one explanation per product ordinal, starting at
+   * {@code offset}. An explanation is {@code row << 1 | recommended} for the explaining row position, or
+   * {@link #NO_MATCH} if no row lists the product; {@link #verdict} turns it back into a verdict.
+   * <p>
+   * In the same pass, also writes the best-scoring row of each product, as {@link #bestRows} would.
+   *
+   * @param profile
+   *          the encoded profile
+   * @param excluded
+   *          product ordinals that must not be recommended whatever their score
+   * @param explanations
+   *          the target array
+   * @param bestRows
+   *          the target array of best-scoring rows
+   * @param offset
+   *          the position of product ordinal 0 in the target arrays
+   */
+  void explain(int[] profile, BitSet excluded, int[] explanations, int[] bestRows, int offset) {
+    int[] masks = new int[rowIds.length];
+    matchMasks(profile, masks);
+    explainMasks(masks, excluded, explanations, offset);
+    bestRowsOfMasks(masks, excluded, bestRows, offset);
+  }
+
+  private void explainMasks(int[] masks, BitSet excluded, int[] explanations, int offset) {
+    int productCount = products.size();
+    Arrays.fill(explanations, offset, offset + productCount, NO_MATCH);
+    int unresolved = productCount;
+    for (int row = 0; row < rowIds.length && unresolved > 0; row++) {
+      BitSet bits = rowProducts[row];
+      if (bits.isEmpty()) {
+        continue;
+      }
+      boolean qualifies = (qualifyingMasks >>> masks[row] & 1L) != 0;
+      for (int p = bits.nextSetBit(0); p >= 0; p = bits.nextSetBit(p + 1)) {
+        int explanation = explanations[offset + p];
+        if (explanation == NO_MATCH) {
+          explanation = row << 1;
+        }
+        if (qualifies && (explanation & 1) == 0 && !excluded.get(p)) {
+          explanation = row << 1 | 1;
+          unresolved--;
+        }
+        explanations[offset + p] = explanation;
+      }
+    }
+  }
+
+  /**
+   * Writes, per product ordinal starting at {@code offset}, the position of the row listing the product with the
+   * highest weighted score for the profile; the first such row on ties. Excluded products and products no row lists
+   * get {@link #NO_MATCH}.
+   *
+   * @param profile
+   *          the encoded profile
+   * @param excluded
+   *          product ordinals that are never recommended
+   * @param bestRows
+   *          the target array
+   * @param offset
+   *          the position of product ordinal 0 in the target array
+   */
+  void bestRows(int[] profile, BitSet excluded, int[] bestRows, int offset) {
+    int[] masks = new int[rowIds.length];
+    matchMasks(profile, masks);
+    bestRowsOfMasks(masks, excluded, bestRows, offset);
+  }
+
+  private void bestRowsOfMasks(int[] masks, BitSet excluded, int[] bestRows, int offset) {
+    int productCount = products.size();
+    Arrays.fill(bestRows, offset, offset + productCount, NO_MATCH);
+    // Counting sort of the row positions by score, best first and in row order within a score, so the first row that
+    // reaches a product is its best one and the scan can stop once every product has been reached
+    int rows = rowIds.length;
+    int[] starts = new int[scoreRankCount + 1];
+    for (int row = 0; row < rows; row++) {
+      starts[maskScoreRanks[masks[row]] + 1]++;
+    }
+    for (int rank = 0; rank < scoreRankCount; rank++) {
+      starts[rank + 1] += starts[rank];
+    }
+    int[] byScore = new int[rows];
+    for (int row = 0; row < rows; row++) {
+      byScore[starts[maskScoreRanks[masks[row]]]++] = row;
+    }
+
+    BitSet reachable = (BitSet) listedProducts.clone();
+    reachable.andNot(excluded);
+    int unresolved = reachable.cardinality();
+    for (int i = 0; i < rows && unresolved > 0; i++) {
+      int row = byScore[i];
+      BitSet bits = rowProducts[row];
+      for (int p = bits.nextSetBit(0); p >= 0; p = bits.nextSetBit(p + 1)) {
+        if (bestRows[offset + p] == NO_MATCH && !excluded.get(p)) {
+          bestRows[offset + p] = row;
+          unresolved--;
+        }
+      }
+    }
+  }
+
+  /**
+   * Ranks products by their best weighted score for a profile and returns the top {@code k}, keeping only a bounded
+   * min-heap of {@code k} candidates. Ties go to the product that comes first in the catalogue.
+   *
+   * @param profile
+   *          the encoded profile
+   * @param bestRows
+   *          best-scoring rows as written by {@link #bestRows}
+   * @param offset
+   *          the position of product ordinal 0 in {@code bestRows}
+   * @param candidates
+   *          the product ordinals to rank, or null for the whole catalogue
+   * @param k
+   *          the maximum number of products to return
+   *
+   * @return verdicts explained by each product's best row, best first
+   */
+  List<RecommendationVerdict> rank(int[] profile, int[] bestRows, int offset, BitSet candidates, int k) {
+    if (k <= 0) {
+      return Collections.emptyList();
+    }
+    int productCount = products.size();
+    int[] matchMasks = new int[productCount];
+    // Worst candidate on top: lowest score, then latest in the catalogue
+    PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1,
+        (a, b) -> maskScores[matchMasks[a]] != maskScores[matchMasks[b]]
+            ? Double.compare(maskScores[matchMasks[a]], maskScores[matchMasks[b]]) : Integer.compare(b, a));
+    for (int p = 0; p < productCount; p++) {
+      int row = bestRows[offset + p];
+      if (row == NO_MATCH || candidates != null && !candidates.get(p)) {
+        continue;
+      }
+      matchMasks[p] = matchMask(profile, row);
+      heap.add(p);
+      if (heap.size() > k) {
+        heap.poll();
+      }
+    }
+    RecommendationVerdict[] ranked = new RecommendationVerdict[heap.size()];
+    for (int i = ranked.length - 1; i >= 0; i--) {
+      int p = heap.poll();
+      int row = bestRows[offset + p];
+      ranked[i] = verdict(profile, products.get(p).getProductId(), row,
+          (qualifyingMasks >>> matchMasks[p] & 1L) != 0);
+    }
+    return Arrays.asList(ranked);
+  }
+
+  /**
+   * Rebuilds the verdict of a product from an explanation written by {@link #explain}.
+   *
+   * @param profile
+   *          the encoded profile the explanation was computed for
+   * @param productOrdinal
+   *          the product ordinal
+   * @param explanation
+   *          the explanation
+   *
+   * @return the verdict
+   */
+  RecommendationVerdict verdict(int[] profile, int productOrdinal, int explanation) {
+    String productId = products.get(productOrdinal).getProductId();
+    if (explanation == NO_MATCH) {
+      return RecommendationVerdict.notRecommended(productId);
+    }
+    return verdict(profile, productId, explanation >>> 1, (explanation & 1) != 0);
+  }
+
+  private RecommendationVerdict verdict(int[] profile, String productId, int winningRow, int firstRow) {
+    if (winningRow >= 0) {
+      return verdict(profile, productId, winningRow, true);
+    }
+    if (firstRow >= 0) {
+      return verdict(profile, productId, firstRow, false);
+    }
+    return RecommendationVerdict.notRecommended(productId);
+  }
+
+  private RecommendationVerdict verdict(int[] profile, String productId, int row, boolean recommended) {
+    int matchMask = matchMask(profile, row);
+    return new RecommendationVerdict(productId, recommended, maskScores[matchMask], rowIds[row], matchMask,
+        ~matchMask & ((1 << DIMENSIONS.length) - 1));
+  }
+
+  private int matchMask(int[] profile, int row) {
+    int mask = 0;
+    for (int d = 0; d < columns.length; d++) {
+      if (columns[d][row] == profile[d]) {
+        mask |= 1 << d;
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * Gets the ordinal of a product in this index.
+   *
+   * @param productId
+   *          the product id
+   *
+   * @return the ordinal, or -1 if the product was not in the catalogue when the index was built
+   */
+  public int productOrdinal(String productId) {
+    Integer ordinal = productOrdinals.get(productId);
+    return ordinal == null ? -1 : ordinal;
+  }
+
+  public Product getProduct(int productOrdinal) {
+    return products.get(productOrdinal);
+  }
+
+  public int size() {
+    return rowIds.length;
+  }
+
+  public int getProductCount() {
+    return products.size();
+  }
+
+  public double getThreshold() {
+    return threshold;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.mybatis.jpetstore.domain.SurveyRecommendation;
+import org.mybatis.jpetstore.mapper.SurveyRecommendationMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Migrates the recommended_json_data column of SURVEY_RECOMMENDATIONS into the normalized
+ * SURVEY_RECOMMENDATION_PRODUCT table. Each row stores the checksum of the JSON its product rows were built from, so
+ * a row whose JSON is edited in place is migrated again.
+ */
+@Service
+public class SurveyRecommendationMigrationService {
+
+  private static final Logger logger = LoggerFactory.getLogger(SurveyRecommendationMigrationService.class);
+
+  private final SurveyRecommendationMapper surveyRecommendationMapper;
+
+  public SurveyRecommendationMigrationService(SurveyRecommendationMapper surveyRecommendationMapper) {
+    this.surveyRecommendationMapper = surveyRecommendationMapper;
+  }
+
+  /**
+   * Rebuilds the SURVEY_RECOMMENDATION_PRODUCT rows of every survey recommendation whose recommended_json_data no
+   * longer matches the checksum its product rows were built from, including rows that were never migrated; unchanged
+   * rows are left alone, so it is idempotent. {@link CatalogService} runs it before each recommendation snapshot is
+   * built, on startup and on every reload.
+   *
+   * @return the number of migrated survey recommendations
+   */
+  @Transactional
+  public int migrateRecommendedProducts() {
+    long start = System.nanoTime();
+    List<SurveyRecommendation> recommendations = surveyRecommendationMapper.getSurveyRecommendationSources();
+    int migrated = 0;
+    int products = 0;
+    for (SurveyRecommendation recommendation : recommendations) {
+      int checksum = checksum(recommendation.getRecommendedJsonData());
+      Integer productsChecksum = recommendation.getProductsChecksum();
+      if (productsChecksum != null && productsChecksum == checksum) {
+        continue;
+      }
+      products += replaceRecommendedProducts(recommendation.getSurveyRecommendationId(),
+          SurveyRecommendationIndex.parseProductIds(recommendation));
+      surveyRecommendationMapper.updateProductsChecksum(recommendation.getSurveyRecommendationId(), checksum);
+      migrated++;
+    }
+    if (migrated > 0) {
+      logger.info("Migrated recommended_json_data of {} / {} survey recommendations into {} product rows in {} ms",
+          migrated, recommendations.size(), products, (System.nanoTime() - start) / 1_000_000);
+    }
+    return migrated;
+  }
+
+  /**
+   * CRC-32 of a recommended_json_data value, as stored in SURVEY_RECOMMENDATIONS.products_checksum.
+   *
+   * @param recommendedJsonData
+   *          the JSON
+   *
+   * @return the checksum
+   */
+  static int checksum(String recommendedJsonData) {
+    CRC32 crc = new CRC32();
+    if (recommendedJsonData != null) {
+      crc.update(recommendedJsonData.getBytes(StandardCharsets.UTF_8));
+    }
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Replaces the recommended products of a survey recommendation.
+   *
+   * @param surveyRecommendationId
+   *          the survey recommendation id
+   * @param productIds
+   *          the product ids, in order and without duplicates
+   *
+   * @return the number of inserted product rows
+   */
+  @Transactional
+  public int replaceRecommendedProducts(int surveyRecommendationId, List<String> productIds) {
+    surveyRecommendationMapper.deleteRecommendedProducts(surveyRecommendationId);
+    for (int seq = 0; seq < productIds.size(); seq++) {
+      surveyRecommendationMapper.insertRecommendedProduct(surveyRecommendationId, productIds.get(seq), seq);
+    }
+    return productIds.size();
+  }
+}
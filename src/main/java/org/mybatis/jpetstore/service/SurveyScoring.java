@@ -0,0 +1,134 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.mybatis.jpetstore.domain.SurveyDimension;
+import org.mybatis.jpetstore.domain.SurveyScoringSetting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The survey scoring parameters: one weight per {@link SurveyDimension} and the score a row must reach for its products
+ * to be recommended. Loaded from SURVEY_SCORING and fixed for the lifetime of a {@link RecommendationSnapshot}, so
+ * tuning a value means building the next snapshot rather than touching the live one.
+ */
+public final class SurveyScoring {
+
+  /** Setting name of the recommendation threshold; every other setting is named after a survey condition. */
+  public static final String THRESHOLD = "threshold";
+
+  /** The built-in scoring, used for any setting missing from SURVEY_SCORING. */
+  public static final SurveyScoring DEFAULT = new SurveyScoring(new double[] {
+      3.0, // residenceEnv: most important (30%)
+      1.5, // carePeriod: important (15%)
+      1.0, // petColorPref: least important (10%)
+      2.5, // petSizePref: very important (25%)
+      1.0, // activityTime: moderate (10%)
+      1.0 // dietManagement: moderate (10%)
+  }, 7.5); // 75% of total weight (10.0) - stricter criteria
+
+  private static final Logger logger = LoggerFactory.getLogger(SurveyScoring.class);
+
+  private final double[] weights;
+  private final double threshold;
+
+  SurveyScoring(double[] weights, double threshold) {
+    this.weights = weights;
+    this.threshold = threshold;
+  }
+
+  /**
+   * Builds the scoring from SURVEY_SCORING rows on top of {@link #DEFAULT}. Rows with an unknown name, or a negative
+   * or non-finite value, are skipped with a warning.
+   *
+   * @param settings
+   *          the scoring settings
+   *
+   * @return the scoring
+   */
+  public static SurveyScoring of(List<SurveyScoringSetting> settings) {
+    double[] weights = DEFAULT.weights.clone();
+    double threshold = DEFAULT.threshold;
+    for (SurveyScoringSetting setting : settings) {
+      double value = setting.getSettingValue();
+      SurveyDimension dimension = SurveyDimension.forConditionName(setting.getSettingName());
+      if ((dimension == null && !THRESHOLD.equals(setting.getSettingName())) || !(value >= 0)
+          || Double.isInfinite(value)) {
+        logger.warn("Skipping scoring setting '{}' = {}", setting.getSettingName(), value);
+      } else if (dimension == null) {
+        threshold = value;
+      } else {
+        weights[dimension.ordinal()] = value;
+      }
+    }
+    return new SurveyScoring(weights, threshold);
+  }
+
+  /**
+   * Gets the weights in {@link SurveyDimension} order.
+   *
+   * @return a copy of the weights
+   */
+  public double[] getWeights() {
+    return weights.clone();
+  }
+
+  public double getWeight(SurveyDimension dimension) {
+    return weights[dimension.ordinal()];
+  }
+
+  /**
+   * Gets the highest score a row can reach, the one every match score is out of.
+   *
+   * @return the sum of the weights
+   */
+  public double getTotalWeight() {
+    double total = 0;
+    for (double weight : weights) {
+      total += weight;
+    }
+    return total;
+  }
+
+  public double getThreshold() {
+    return threshold;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof SurveyScoring)) {
+      return false;
+    }
+    SurveyScoring other = (SurveyScoring) o;
+    return Arrays.equals(weights, other.weights) && Double.compare(threshold, other.threshold) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(weights) + Double.hashCode(threshold);
+  }
+
+  @Override
+  public String toString() {
+    return "weights " + Arrays.toString(weights) + ", threshold " + threshold;
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.mybatis.jpetstore.domain.Account;
+import org.mybatis.jpetstore.domain.Product;
+import org.mybatis.jpetstore.domain.SurveyDimension;
+import org.springframework.stereotype.Service;
+
+/**
+ * Renders recommendation messages locally from the product's name and category and the survey answers the verdict
+ * turned on, without any remote call. The same inputs always give the same message. Used when a deployment selects
+ * it, and in place of the language model whenever that cannot answer or must not be waited for.
+ */
+@Service
+public class TemplateRecommendationMessageGenerator implements RecommendationMessageGenerator {
+
+  public static final String NAME = "template";
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public String generateMessage(Account account, Product product, boolean recommended,
+      Set<String> conditionsToMention) {
+    StringBuilder message = new StringBuilder();
+    if (product.getCategoryId() != null) {
+      message.append("Among our ").append(product.getCategoryId().toLowerCase(Locale.ROOT)).append(", ");
+    }
+    message.append(product.getName() != null ? product.getName() : product.getProductId());
+
+    List<String> reasons = new ArrayList<>();
+    for (SurveyDimension dimension : SurveyDimension.values()) {
+      if (conditionsToMention.contains(dimension.getConditionName())) {
+        reasons.add(reason(dimension, dimension.getValue(account)));
+      }
+    }
+
+    if (recommended) {
+      message.append(reasons.isEmpty() ? " is recommended based on your survey answers."
+          : " is a good match for you: it suits your " + join(reasons) + ".");
+    } else {
+      message.append(reasons.isEmpty() ? " may not be the best match for your preferences."
+          : " may not be the best match for you: it does not suit your " + join(reasons) + ".");
+    }
+    return message.toString();
+  }
+
+  private static String reason(SurveyDimension dimension, String answer) {
+    String label = label(dimension);
+    if (answer == null || answer.isEmpty()) {
+      return label;
+    }
+    // Survey options explain themselves in parentheses, e.g. "Small (suitable for studio/small apartment)"
+    int details = answer.indexOf(" (");
+    String shortAnswer = details > 0 ? answer.substring(0, details) : answer;
+    return label + " (" + shortAnswer.toLowerCase(Locale.ROOT) + ")";
+  }
+
+  private static String label(SurveyDimension dimension) {
+    switch (dimension) {
+      case RESIDENCE_ENV:
+        return "living environment";
+      case CARE_PERIOD:
+        return "care period";
+      case PET_COLOR_PREF:
+        return "color preference";
+      case PET_SIZE_PREF:
+        return "size preference";
+      case ACTIVITY_TIME:
+        return "activity time";
+      case DIET_MANAGEMENT:
+        return "diet management";
+      default:
+        return dimension.getConditionName();
+    }
+  }
+
+  private static String join(List<String> reasons) {
+    if (reasons.size() == 1) {
+      return reasons.get(0);
+    }
+    return String.join(", ", reasons.subList(0, reasons.size() - 1)) + " and " + reasons.get(reasons.size() - 1);
+  }
+}
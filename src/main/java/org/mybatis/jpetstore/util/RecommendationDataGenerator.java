@@ -21,12 +21,12 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import org.mybatis.jpetstore.domain.Account;
 import org.mybatis.jpetstore.domain.Category;
 import org.mybatis.jpetstore.domain.Product;
+import org.mybatis.jpetstore.domain.SurveyDimension;
 import org.mybatis.jpetstore.service.AccountService;
 import org.mybatis.jpetstore.service.CatalogService;
 import org.mybatis.jpetstore.service.OpenAiRecommendationService;
@@ -45,18 +45,12 @@ public class RecommendationDataGenerator {
     OpenAiRecommendationService openAiRecommendationService = context.getBean(OpenAiRecommendationService.class);
 
     // Define all survey options
-    List<String> residenceEnvs = Arrays.asList("Indoor-focused (apartment, studio, etc.)",
-        "Includes outdoor space (yard, balcony, etc.)", "Humid environment (near river/lake)", "Dry environment",
-        "Can maintain special spaces (aquarium, terrarium, etc.)");
-    List<String> carePeriods = Arrays.asList("5 years or less", "5-10 years", "10 years or more", "Doesn't matter");
-    List<String> petColorPrefs = Arrays.asList("Light colors (white | ivory tones)", "Warm colors (brown | gold tones)",
-        "Dark colors (black | gray tones)", "Mixed colors", "Doesn't matter");
-    List<String> petSizePrefs = Arrays.asList("Small (suitable for studio/small apartment)",
-        "Medium (regular home, some space available)", "Large (yard and spacious indoor area possible)");
-    List<String> activityTimes = Arrays.asList("Day", "Night", "Irregular");
-    List<String> dietManagements = Arrays.asList("Simple kibble-focused (carnivore, omnivore)",
-        "Can provide diverse diet (vegetarian, mixed possible)",
-        "Can manage special diets (insect-based, dried food, etc.)");
+    List<String> residenceEnvs = SurveyDimension.RESIDENCE_ENV.getOptions();
+    List<String> carePeriods = SurveyDimension.CARE_PERIOD.getOptions();
+    List<String> petColorPrefs = SurveyDimension.PET_COLOR_PREF.getOptions();
+    List<String> petSizePrefs = SurveyDimension.PET_SIZE_PREF.getOptions();
+    List<String> activityTimes = SurveyDimension.ACTIVITY_TIME.getOptions();
+    List<String> dietManagements = SurveyDimension.DIET_MANAGEMENT.getOptions();
 
     // Retrieve all products from the catalog
     List<Product> allProducts = new ArrayList<>();
@@ -116,6 +110,8 @@ public class RecommendationDataGenerator {
 
       writer.write(String.join(",\n", insertValues));
       writer.write(";\n");
+      // Lets running applications detect the new data and hot-reload it
+      writer.write("\nUPDATE SURVEY_RECOMMENDATION_VERSION SET version = version + 1;\n");
       System.out.println("SQL INSERT statements generated successfully to " + SQL_FILE_PATH);
     } catch (IOException e) {
       System.err.println("Error writing SQL file: " + e.getMessage());
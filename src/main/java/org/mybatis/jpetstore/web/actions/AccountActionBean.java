@@ -146,7 +146,7 @@ public class AccountActionBean extends AbstractActionBean {
       boolean surveyCompleted = catalogService.hasCompletedSurvey(account);
       System.out.println("=== Survey completed: " + surveyCompleted + " ===");
 
-      // Refresh recommendation messages with the new account data (synchronously)
+      // Wait for the recommendation refresh insertAccount() scheduled on commit
       // This ensures recommendations are ready immediately after signup
       System.out.println("=== Calling refreshRecommendationsForUser() ===");
       accountService.refreshRecommendationsForUser(account.getUsername());
@@ -293,6 +293,9 @@ public class AccountActionBean extends AbstractActionBean {
         account.setPassword(null);
       }
 
+      // Keep the stored survey answers so the refresh can regenerate only the messages they affect
+      Account previousAccount = accountService.getAccount(username);
+
       System.out.println("=== Calling updateAccount() ===");
       accountService.updateAccount(account);
       System.out.println("=== Account updated in DB ===");
@@ -316,9 +319,9 @@ public class AccountActionBean extends AbstractActionBean {
       repeatedPassword = null;
 
       // Refresh recommendation messages with the updated account data
-      // This will generate AI messages for all products if survey is completed
+      // This will generate AI messages for the products whose verdict or explanation changed
       System.out.println("=== Calling refreshRecommendationsForUser() ===");
-      accountService.refreshRecommendationsForUser(username);
+      accountService.refreshRecommendationsForUser(username, previousAccount);
       System.out.println("=== refreshRecommendationsForUser() completed ===");
 
       myList = catalogService.getProductListByCategory(account.getFavouriteCategoryId());
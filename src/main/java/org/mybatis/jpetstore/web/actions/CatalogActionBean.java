@@ -15,6 +15,7 @@
  */
 package org.mybatis.jpetstore.web.actions;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +34,7 @@ import org.mybatis.jpetstore.domain.Product;
 import org.mybatis.jpetstore.domain.RecommendationMessage;
 import org.mybatis.jpetstore.service.CatalogService;
 import org.mybatis.jpetstore.service.RecommendationMessageService;
+import org.mybatis.jpetstore.service.RecommendationVerdict;
 
 /**
  * The Class CatalogActionBean.
@@ -251,21 +253,28 @@ public class CatalogActionBean extends AbstractActionBean {
         Map<String, RecommendationMessage> cachedMessages = recommendationMessageService
             .getRecommendationMessageMap(account.getUsername());
 
+        List<Product> uncachedProducts = new ArrayList<>();
         for (Product product : productList) {
           RecommendationMessage cachedMessage = cachedMessages.get(product.getProductId());
           if (cachedMessage != null) {
             productRecommendationMap.put(product.getProductId(), cachedMessage.isRecommended());
             productRecommendationMessageMap.put(product.getProductId(), cachedMessage.getMessage());
-            continue;
+          } else {
+            uncachedProducts.add(product);
           }
+        }
 
-          if (userCompletedSurvey) {
-            boolean isRecommended = catalogService.isProductRecommended(account, product.getProductId());
-            productRecommendationMap.put(product.getProductId(), isRecommended);
-
-            String recommendationMessage = catalogService.getRecommendationMessage(account, product.getProductId(),
-                isRecommended);
-            productRecommendationMessageMap.put(product.getProductId(), recommendationMessage);
+        // Evaluate all products without a cached message at once; their messages come from the template so that the
+        // page never waits on the language model; the stored messages replace them once generated
+        if (userCompletedSurvey && !uncachedProducts.isEmpty()) {
+          Map<String, RecommendationVerdict> verdicts = catalogService.evaluate(account, uncachedProducts);
+          for (Product product : uncachedProducts) {
+            RecommendationVerdict verdict = verdicts.get(product.getProductId());
+            if (verdict != null) {
+              productRecommendationMap.put(product.getProductId(), verdict.isRecommended());
+              productRecommendationMessageMap.put(product.getProductId(),
+                  catalogService.getTemplateRecommendationMessage(account, product, verdict));
+            }
           }
         }
       }
@@ -17,6 +17,7 @@ package org.mybatis.jpetstore.web.actions;
 
 import com.fasterxml.jackson.databind.ObjectMapper; // ← 추가
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -34,6 +35,7 @@ import org.mybatis.jpetstore.domain.Account;
 import org.mybatis.jpetstore.domain.Item;
 import org.mybatis.jpetstore.service.CatalogService;
 import org.mybatis.jpetstore.service.GptComparisonService;
+import org.mybatis.jpetstore.service.RecommendationVerdict;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -98,6 +100,15 @@ public class ComparisonActionBean implements ActionBean {
       response.put("user_activity_time",
           account.getActivityTime() != null ? account.getActivityTime() : "Not specified");
 
+      // Survey match of both pets, from the same verdicts used for the category badges
+      if (catalogService.hasCompletedSurvey(account)) {
+        Map<String, RecommendationVerdict> verdicts = catalogService.evaluate(account,
+            Arrays.asList(item1.getProduct(), item2.getProduct()));
+        putSurveyMatch(response, "item1", verdicts.get(item1.getProduct().getProductId()));
+        putSurveyMatch(response, "item2", verdicts.get(item2.getProduct().getProductId()));
+        response.put("survey_total_weight", catalogService.getRecommendationSnapshot().getScoring().getTotalWeight());
+      }
+
       try {
         Object gptAnalysisObj = objectMapper.readValue(gptAnalysisStr, Object.class);
         response.put("gpt_analysis", gptAnalysisObj);
@@ -125,4 +136,13 @@ public class ComparisonActionBean implements ActionBean {
       }
     }
   }
+
+  private static void putSurveyMatch(Map<String, Object> response, String prefix, RecommendationVerdict verdict) {
+    if (verdict == null) {
+      return;
+    }
+    response.put(prefix + "_recommended", verdict.isRecommended());
+    response.put(prefix + "_match_score", verdict.getScore());
+    response.put(prefix + "_matched_conditions", verdict.getMatchingConditions());
+  }
 }
@@ -15,15 +15,10 @@
  */
 package org.mybatis.jpetstore.web.actions;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import javax.servlet.http.HttpSession;
 
@@ -36,10 +31,10 @@ import net.sourceforge.stripes.integration.spring.SpringBean;
 import org.mybatis.jpetstore.domain.Account;
 import org.mybatis.jpetstore.domain.Item;
 import org.mybatis.jpetstore.domain.RecommendationMessage;
-import org.mybatis.jpetstore.domain.SurveyRecommendation;
-import org.mybatis.jpetstore.mapper.SurveyRecommendationMapper;
 import org.mybatis.jpetstore.service.CatalogService;
 import org.mybatis.jpetstore.service.RecommendationMessageService;
+import org.mybatis.jpetstore.service.SurveyProfileNeighbours;
+import org.mybatis.jpetstore.service.SurveyProfileTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,16 +45,12 @@ public class LiveRecommendationActionBean extends AbstractActionBean {
 
   private static final long serialVersionUID = -4105627783175794034L;
   private static final Logger logger = LoggerFactory.getLogger(LiveRecommendationActionBean.class);
-  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
   private static final String VIEW = "/WEB-INF/jsp/survey/LiveRecommendation.jsp";
 
   @SpringBean
   private transient CatalogService catalogService;
 
-  @SpringBean
-  private transient SurveyRecommendationMapper surveyRecommendationMapper;
-
   @SpringBean
   private transient RecommendationMessageService recommendationMessageService;
 
@@ -67,6 +58,8 @@ public class LiveRecommendationActionBean extends AbstractActionBean {
   private String recommendationJson;
   private List<Item> recommendedItems = new ArrayList<>();
   private Map<String, RecommendationMessage> recommendationMessageMap = new HashMap<>();
+  private SurveyProfileNeighbours.Neighbour nearestMatch;
+  private double totalWeight;
 
   public Account getAccount() {
     return account;
@@ -84,6 +77,24 @@ public class LiveRecommendationActionBean extends AbstractActionBean {
     return recommendationMessageMap;
   }
 
+  /**
+   * The closest survey row used when no row matches the answers exactly.
+   *
+   * @return the nearest match, or null if the recommendations come from an exact match or there are none
+   */
+  public SurveyProfileNeighbours.Neighbour getNearestMatch() {
+    return nearestMatch;
+  }
+
+  /**
+   * The score the nearest match is out of, the sum of the current survey weights.
+   *
+   * @return the total weight
+   */
+  public double getTotalWeight() {
+    return totalWeight;
+  }
+
   @DefaultHandler
   public Resolution showRecommendation() {
     HttpSession session = context.getRequest().getSession(false);
@@ -97,52 +108,40 @@ public class LiveRecommendationActionBean extends AbstractActionBean {
     account = accountBean.getAccount();
 
     // Look up precomputed recommendations from SURVEY_RECOMMENDATIONS
-    // This uses exact match (all 6 conditions must match exactly)
+    // This uses exact match (all 6 conditions must match exactly), served from the in-memory profile table,
+    // falling back to the nearest row by weighted similarity when no row matches exactly
     // This is separate from the weighted scoring used in Category.jsp popup
     logger.info(
         "Requesting recommendation for account survey: residenceEnv='{}', carePeriod='{}', petColorPref='{}', petSizePref='{}', activityTime='{}', dietManagement='{}'",
         account.getResidenceEnv(), account.getCarePeriod(), account.getPetColorPref(), account.getPetSizePref(),
         account.getActivityTime(), account.getDietManagement());
 
-    SurveyRecommendation rec = surveyRecommendationMapper.getSurveyRecommendationBySurvey(account.getResidenceEnv(),
-        account.getCarePeriod(), account.getPetColorPref(), account.getPetSizePref(), account.getActivityTime(),
-        account.getDietManagement());
-    recommendationJson = rec == null ? "" : rec.getRecommendedJsonData();
-    if (rec == null) {
+    SurveyProfileTable.Entry match = catalogService.getExactSurveyMatch(account);
+    if (match == null) {
+      // Fall back to the closest row by weighted similarity, precomputed per profile
+      List<SurveyProfileNeighbours.Neighbour> neighbours = catalogService.getNearestSurveyMatches(account);
+      if (!neighbours.isEmpty()) {
+        nearestMatch = neighbours.get(0);
+        totalWeight = catalogService.getRecommendationSnapshot().getScoring().getTotalWeight();
+        match = nearestMatch.getEntry();
+        logger.info("No exact SURVEY_RECOMMENDATIONS match; using nearest row {} (score {}, differs in {}).",
+            match.getRecommendation().getSurveyRecommendationId(), nearestMatch.getScore(),
+            nearestMatch.getMismatchingConditions());
+      }
+    }
+    if (match == null) {
       logger.warn("No SURVEY_RECOMMENDATIONS match found for the given survey answers.");
+      recommendationJson = "";
+      recommendedItems = new ArrayList<>();
+    } else {
+      recommendationJson = match.getRecommendation().getRecommendedJsonData();
+      // Only the first item of each product is kept so the table matches the JSON rows.
+      recommendedItems = new ArrayList<>(match.getItems());
     }
-    recommendedItems = buildRecommendedItems(recommendationJson);
     recommendationMessageMap = buildRecommendationMessageMap();
     return new ForwardResolution(VIEW);
   }
 
-  private List<Item> buildRecommendedItems(String rawJson) {
-    List<Item> items = new ArrayList<>();
-    if (rawJson == null || rawJson.isBlank()) {
-      return items;
-    }
-    try {
-      JsonNode array = OBJECT_MAPPER.readTree(rawJson);
-      if (!array.isArray()) {
-        return items;
-      }
-      Set<String> productIds = new HashSet<>();
-      for (JsonNode node : array) {
-        String productId = node.path("productId").asText(null);
-        if (productId != null && !productId.isBlank() && productIds.add(productId)) {
-          List<Item> list = catalogService.getItemListByProduct(productId);
-          // Only take the first item for each product so the table matches the JSON rows.
-          if (!list.isEmpty()) {
-            items.add(list.get(0));
-          }
-        }
-      }
-    } catch (Exception e) {
-      logger.warn("Failed to parse recommendation JSON: {}", e.getMessage());
-    }
-    return items;
-  }
-
   private Map<String, RecommendationMessage> buildRecommendationMessageMap() {
     Map<String, RecommendationMessage> result = new HashMap<>();
     if (account == null || account.getUsername() == null) {
@@ -0,0 +1,96 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.web.actions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.stripes.action.DefaultHandler;
+import net.sourceforge.stripes.action.DontValidate;
+import net.sourceforge.stripes.action.ErrorResolution;
+import net.sourceforge.stripes.action.Resolution;
+import net.sourceforge.stripes.action.StreamingResolution;
+import net.sourceforge.stripes.integration.spring.SpringBean;
+
+import org.mybatis.jpetstore.domain.SurveyDimension;
+import org.mybatis.jpetstore.service.CatalogService;
+import org.mybatis.jpetstore.service.RecommendationPreview;
+
+/**
+ * JSON endpoint behind the survey form's live preview. Takes the answers chosen so far, named like the survey
+ * conditions ({@code residenceEnv}, {@code carePeriod}, ...), and returns the products they would be recommended
+ * without saving the account or generating any messages.
+ */
+public class RecommendationPreviewActionBean extends AbstractActionBean {
+
+  private static final long serialVersionUID = 3215290587130478934L;
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  @SpringBean
+  private transient CatalogService catalogService;
+
+  /**
+   * Previews the recommendations for the submitted answers.
+   *
+   * @return the preview as JSON, or 400 if an answer is not a survey option
+   *
+   * @throws Exception
+   *           if the preview cannot be serialized
+   */
+  @DefaultHandler
+  @DontValidate
+  public Resolution preview() throws Exception {
+    Map<SurveyDimension, String> answers = new EnumMap<>(SurveyDimension.class);
+    for (SurveyDimension dimension : SurveyDimension.values()) {
+      answers.put(dimension, context.getRequest().getParameter(dimension.getConditionName()));
+    }
+
+    RecommendationPreview preview;
+    try {
+      preview = catalogService.previewRecommendations(answers);
+    } catch (IllegalArgumentException e) {
+      return new ErrorResolution(400, e.getMessage());
+    }
+
+    List<Map<String, Object>> products = new ArrayList<>();
+    for (RecommendationPreview.ProductPreview product : preview.getProducts()) {
+      Map<String, Object> json = new LinkedHashMap<>();
+      json.put("productId", product.getProduct().getProductId());
+      json.put("name", product.getProduct().getName());
+      json.put("categoryId", product.getProduct().getCategoryId());
+      json.put("share", product.getShare());
+      json.put("recommended", product.isRecommended());
+      if (product.getVerdict() != null) {
+        json.put("score", product.getVerdict().getScore());
+        json.put("matchedConditions", product.getVerdict().getMatchingConditions());
+      }
+      products.add(json);
+    }
+
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("answered", preview.getAnsweredDimensions());
+    result.put("complete", preview.isComplete());
+    result.put("completions", preview.getCompletions());
+    result.put("totalWeight", catalogService.getRecommendationSnapshot().getScoring().getTotalWeight());
+    result.put("products", products);
+    return new StreamingResolution("application/json", OBJECT_MAPPER.writeValueAsString(result));
+  }
+}
@@ -16,24 +16,53 @@
  */
 package org.mybatis.jpetstore.web.actions;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpSession;
 
 import net.sourceforge.stripes.action.ActionBean;
 import net.sourceforge.stripes.action.ActionBeanContext;
 import net.sourceforge.stripes.action.DefaultHandler;
+import net.sourceforge.stripes.action.ErrorResolution;
 import net.sourceforge.stripes.action.ForwardResolution;
+import net.sourceforge.stripes.action.HandlesEvent;
+import net.sourceforge.stripes.action.RedirectResolution;
 import net.sourceforge.stripes.action.Resolution;
+import net.sourceforge.stripes.action.StreamingResolution;
 import net.sourceforge.stripes.integration.spring.SpringBean;
 
 import org.mybatis.jpetstore.domain.SurveyRecommendation;
 import org.mybatis.jpetstore.mapper.SurveyRecommendationMapper;
+import org.mybatis.jpetstore.service.AccountService;
+import org.mybatis.jpetstore.service.CatalogService;
+import org.mybatis.jpetstore.service.RecommendationMessageCache;
+import org.mybatis.jpetstore.service.RecommendationMessageService;
+import org.mybatis.jpetstore.service.RecommendationRefreshMetrics;
+import org.mybatis.jpetstore.service.RecommendationRefreshScheduler;
+import org.mybatis.jpetstore.service.RecommendationSnapshot;
 
 public class SurveyRecommendationActionBean implements ActionBean {
 
   private static final String VIEW_SURVEY_RECOMMENDATIONS = "/WEB-INF/jsp/survey/SurveyRecommendationView.jsp";
 
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
   @SpringBean
   private transient SurveyRecommendationMapper surveyRecommendationMapper;
+  @SpringBean
+  private transient AccountService accountService;
+  @SpringBean
+  private transient CatalogService catalogService;
+  @SpringBean
+  private transient RecommendationMessageService recommendationMessageService;
+  @SpringBean
+  private transient RecommendationMessageCache recommendationMessageCache;
+  @SpringBean
+  private transient RecommendationRefreshScheduler recommendationRefreshScheduler;
 
   private ActionBeanContext context;
   private List<SurveyRecommendation> surveyRecommendations;
@@ -54,9 +83,106 @@ public class SurveyRecommendationActionBean implements ActionBean {
     this.surveyRecommendations = surveyRecommendations;
   }
 
+  public RecommendationSnapshot getRecommendationSnapshot() {
+    return catalogService.getRecommendationSnapshot();
+  }
+
+  /**
+   * Whether the signed-on user is an admin, who alone may reload the recommendation data and read its status.
+   *
+   * @return true for a signed-on admin
+   */
+  public boolean isAdmin() {
+    HttpSession session = context.getRequest().getSession(false);
+    AccountActionBean accountBean = session == null ? null : (AccountActionBean) session.getAttribute("accountBean");
+    return accountBean != null && accountBean.isAuthenticated() && accountBean.getAccount() != null
+        && accountService.isAdmin(accountBean.getAccount().getUsername());
+  }
+
   @DefaultHandler
   public Resolution viewAllSurveyRecommendations() {
     surveyRecommendations = surveyRecommendationMapper.getSurveyRecommendations();
     return new ForwardResolution(VIEW_SURVEY_RECOMMENDATIONS);
   }
+
+  /**
+   * Starts rebuilding the in-memory recommendation data in the background. The current snapshot keeps serving requests
+   * until the new one is published. A rebuild evaluates every survey profile, so only admins may start one, and only
+   * with a POST, which links cannot trigger and crawlers do not send.
+   *
+   * @return a redirect to the survey recommendation list, 405 for a GET or 403 unless signed on as an admin
+   */
+  @HandlesEvent("reload")
+  public Resolution reload() {
+    if (!"POST".equalsIgnoreCase(context.getRequest().getMethod())) {
+      return new ErrorResolution(405, "Reload with a POST");
+    }
+    if (!isAdmin()) {
+      return new ErrorResolution(403, "Only admins may reload the survey recommendations");
+    }
+    catalogService.reloadRecommendationsAsync();
+    return new RedirectResolution(SurveyRecommendationActionBean.class);
+  }
+
+  /**
+   * Reports the current recommendation snapshot for monitoring.
+   *
+   * @return the snapshot version, data version, build time, row count, scoring and message refresh and cache metrics
+   *         as JSON
+   */
+  @HandlesEvent("status")
+  public Resolution status() throws Exception {
+    if (!isAdmin()) {
+      return new ErrorResolution(403, "Only admins may read the survey recommendation status");
+    }
+    RecommendationSnapshot snapshot = catalogService.getRecommendationSnapshot();
+    Map<String, Object> status = new LinkedHashMap<>();
+    status.put("snapshotVersion", snapshot.getVersion());
+    status.put("dataVersion", snapshot.getDataVersion());
+    status.put("builtAt", snapshot.getBuiltAt().toString());
+    status.put("buildMillis", snapshot.getBuildMillis());
+    status.put("surveyRecommendations", snapshot.getIndex().size());
+    status.put("weights", snapshot.getScoring().getWeights());
+    status.put("threshold", snapshot.getScoring().getThreshold());
+
+    RecommendationRefreshMetrics refreshMetrics = recommendationMessageService.getRefreshMetrics();
+    Map<String, Object> messageRefresh = new LinkedHashMap<>();
+    messageRefresh.put("generator", catalogService.getMessageGeneratorName());
+    messageRefresh.put("refreshes", refreshMetrics.getRefreshes());
+    messageRefresh.put("generationMillis", refreshMetrics.getGenerationMillis());
+    messageRefresh.put("connectionHoldMillis", refreshMetrics.getConnectionHoldMillis());
+    messageRefresh.put("maxConnectionHoldMillis", refreshMetrics.getMaxConnectionHoldMillis());
+    messageRefresh.put("lastConnectionHoldMillis", refreshMetrics.getLastConnectionHoldMillis());
+    status.put("messageRefresh", messageRefresh);
+
+    Map<String, Object> refreshScheduler = new LinkedHashMap<>();
+    refreshScheduler.put("requests", recommendationRefreshScheduler.getRequests());
+    refreshScheduler.put("runs", recommendationRefreshScheduler.getRuns());
+    refreshScheduler.put("coalesced", recommendationRefreshScheduler.getCoalesced());
+    refreshScheduler.put("retries", recommendationRefreshScheduler.getRetries());
+    refreshScheduler.put("failures", recommendationRefreshScheduler.getFailures());
+    refreshScheduler.put("running", recommendationRefreshScheduler.getRunning());
+    refreshScheduler.put("workers", recommendationRefreshScheduler.getWorkerCount());
+    refreshScheduler.put("pendingJobs", recommendationRefreshScheduler.getPendingJobs());
+    status.put("refreshScheduler", refreshScheduler);
+
+    Map<String, Object> messageCache = new LinkedHashMap<>();
+    messageCache.put("memoryHits", recommendationMessageCache.getMemoryHits());
+    messageCache.put("tableHits", recommendationMessageCache.getTableHits());
+    messageCache.put("misses", recommendationMessageCache.getMisses());
+    messageCache.put("hitRatio", recommendationMessageCache.getHitRatio());
+    messageCache.put("size", recommendationMessageCache.getSize());
+    messageCache.put("capacity", recommendationMessageCache.getCapacity());
+    messageCache.put("evictions", recommendationMessageCache.getEvictions());
+    messageCache.put("generations", recommendationMessageCache.getGenerations());
+    messageCache.put("coalesced", recommendationMessageCache.getCoalesced());
+    messageCache.put("inFlight", recommendationMessageCache.getInFlight());
+    messageCache.put("tableSize", recommendationMessageCache.getTableSize());
+    messageCache.put("tableCapacity", recommendationMessageCache.getTableCapacity());
+    messageCache.put("tablePurged", recommendationMessageCache.getTablePurged());
+    messageCache.put("expirations", recommendationMessageCache.getExpirations());
+    messageCache.put("ttlMillis", recommendationMessageCache.getTtlMillis());
+    status.put("messageCache", messageCache);
+    return new StreamingResolution("application/json", OBJECT_MAPPER.writeValueAsString(status));
+  }
 }
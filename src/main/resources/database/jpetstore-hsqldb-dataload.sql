@@ -16,14 +16,27 @@
 
 INSERT INTO sequence VALUES('ordernum', 1000);
 
+INSERT INTO survey_recommendation_version VALUES(0);
+
+INSERT INTO survey_exclusion_rule VALUES(1, 'residenceEnv', 'Dry environment', 'FI-FW-', 'Freshwater fish need water');
+INSERT INTO survey_exclusion_rule VALUES(2, 'residenceEnv', 'Dry environment', 'FI-SW-', 'Saltwater fish need water');
+
+INSERT INTO survey_scoring VALUES('residenceEnv', 3.0);
+INSERT INTO survey_scoring VALUES('carePeriod', 1.5);
+INSERT INTO survey_scoring VALUES('petColorPref', 1.0);
+INSERT INTO survey_scoring VALUES('petSizePref', 2.5);
+INSERT INTO survey_scoring VALUES('activityTime', 1.0);
+INSERT INTO survey_scoring VALUES('dietManagement', 1.0);
+INSERT INTO survey_scoring VALUES('threshold', 7.5);
+
 INSERT INTO signon VALUES('j2ee','j2ee');
 INSERT INTO signon VALUES('ACID','ACID');
 
 INSERT INTO account VALUES('j2ee','yourname@yourdomain.com','ABC', 'XYX', 'OK', '901 San Antonio Road', 'MS UCUP02-206', 'Palo Alto', 'CA', '94303', 'USA',  '555-555-5555');
 INSERT INTO account VALUES('ACID','acid@yourdomain.com','ABC', 'XYX', 'OK', '901 San Antonio Road', 'MS UCUP02-206', 'Palo Alto', 'CA', '94303', 'USA',  '555-555-5555');
 
-INSERT INTO profile VALUES('j2ee','english','DOGS',1,1, NULL, NULL, NULL, NULL, NULL, NULL);
-INSERT INTO profile VALUES('ACID','english','CATS',1,1, NULL, NULL, NULL, NULL, NULL, NULL);
+INSERT INTO profile VALUES('j2ee','english','DOGS',1,1, NULL, NULL, NULL, NULL, NULL, NULL, -1);
+INSERT INTO profile VALUES('ACID','english','CATS',1,1, NULL, NULL, NULL, NULL, NULL, NULL, -1);
 
 INSERT INTO bannerdata VALUES ('FISH','<image src="../images/banner_fish.gif">');
 INSERT INTO bannerdata VALUES ('CATS','<image src="../images/banner_cats.gif">');
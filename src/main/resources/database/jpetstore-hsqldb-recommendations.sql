@@ -16359,3 +16359,5 @@ INSERT INTO SURVEY_RECOMMENDATIONS (survey_recommendation_id, residence_env, car
     {"productId": "FI-FW-01", "productName": "Koi"},
     {"productId": "RP-LI-02", "productName": "Iguana"}
 ]');
+
+UPDATE SURVEY_RECOMMENDATION_VERSION SET version = version + 1;
@@ -61,9 +61,13 @@ create table profile (
     pet_size_pref varchar(255),
     activity_time varchar(255),
     diet_management varchar(255),
+    -- Canonical survey fingerprint written with the answers, see SurveyDimension.surveyKey
+    surveykey int,
     constraint pk_profile primary key (userid)
 );
 
+create index profileSurveyKey on profile (surveykey);
+
 create table survey_recommendations (
     survey_recommendation_id int generated by default as identity (start with 1) primary key,
     residence_env varchar(255) not null,
@@ -72,7 +76,45 @@ create table survey_recommendations (
     pet_size_pref varchar(255) not null,
     activity_time varchar(255) not null,
     diet_management varchar(255) not null,
-    recommended_json_data varchar(1024) not null
+    recommended_json_data varchar(1024) not null,
+    -- Checksum of the recommended_json_data the survey_recommendation_product rows were built from
+    products_checksum int null
+);
+
+-- Normalized form of recommended_json_data, rebuilt from the JSON on startup and reload whenever it changed
+create table survey_recommendation_product (
+    survey_recommendation_id int not null,
+    productid varchar(10) not null,
+    seq int not null,
+    constraint pk_survey_recommendation_product primary key (survey_recommendation_id, productid),
+    constraint fk_survey_recommendation_product foreign key (survey_recommendation_id)
+        references survey_recommendations (survey_recommendation_id) on delete cascade
+);
+
+create index surveyRecommendationProduct on survey_recommendation_product (productid, survey_recommendation_id);
+
+-- Hard filters: a product whose id starts with productid_prefix is never recommended for the given survey answer.
+-- Compiled into product bitmasks with the recommendation data; bump survey_recommendation_version after editing.
+create table survey_exclusion_rule (
+    ruleid int not null,
+    condition_name varchar(30) not null,
+    answer varchar(255) not null,
+    productid_prefix varchar(10) not null,
+    description varchar(255) null,
+    constraint pk_survey_exclusion_rule primary key (ruleid)
+);
+
+-- Scoring weight per survey condition name, plus the recommendation threshold under the name 'threshold'.
+-- Polled with survey_recommendation_version; editing a value rebuilds the in-memory recommendation data.
+create table survey_scoring (
+    setting_name varchar(30) not null,
+    setting_value double not null,
+    constraint pk_survey_scoring primary key (setting_name)
+);
+
+-- Bumped whenever SURVEY_RECOMMENDATIONS is (re)loaded, polled to hot-reload the in-memory recommendation data
+create table survey_recommendation_version (
+    version bigint not null
 );
 
 create table bannerdata (
@@ -158,6 +200,36 @@ create table recommendation_messages (
     constraint fk_recommendation_messages_product foreign key (productid) references product (productid)
 );
 
+-- Generated recommendation messages keyed by the SHA-256 of the model and prompt. The prompt holds no username, so
+-- every user whose answers produce the same prompt shares one entry.
+create table recommendation_message_cache (
+    prompt_hash char(64) not null,
+    message varchar(1024) not null,
+    created timestamp default current_timestamp,
+    constraint pk_recommendation_message_cache primary key (prompt_hash)
+);
+
+-- Recommendation message refreshes waiting for, or claimed by, a worker. A worker claims a job by leasing it until
+-- lease_until; a job whose lease ran out, e.g. because its worker stopped, can be claimed again. previous_answers holds
+-- the survey answers before the edit as JSON, or null for a full refresh.
+create table recommendation_refresh_job (
+    job_id bigint generated by default as identity (start with 1) primary key,
+    username varchar(80) not null,
+    previous_answers varchar(1024),
+    job_status varchar(10) not null,
+    attempts int default 0 not null,
+    run_after timestamp not null,
+    lease_owner varchar(40),
+    lease_until timestamp,
+    last_error varchar(1024),
+    created timestamp default current_timestamp,
+    updated timestamp default current_timestamp,
+    constraint fk_recommendation_refresh_job_account foreign key (username) references account (userid)
+);
+
+create index refreshJobStatus on recommendation_refresh_job (job_status, run_after);
+create index refreshJobUser on recommendation_refresh_job (username, job_status);
+
 create table item (
     itemid varchar(10) not null,
     productid varchar(10) not null,
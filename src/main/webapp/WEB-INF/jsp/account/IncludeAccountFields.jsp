@@ -207,3 +207,80 @@
 	</tr>
 
 </table>
+
+<div id="recommendationPreview" style="margin-top: 10px;">
+	<h3>Recommendation Preview</h3>
+	<div id="recommendationPreviewContent">Answer the questions above to preview your recommendations.</div>
+</div>
+
+<script>
+  (function () {
+    // Asks the in-memory engine what the current answers would recommend; nothing is saved until the form is submitted
+    const previewUrl = '${pageContext.request.contextPath}/actions/RecommendationPreview.action';
+    const questions = ['residenceEnv', 'carePeriod', 'petColorPref', 'petSizePref', 'activityTime', 'dietManagement'];
+    const content = document.getElementById('recommendationPreviewContent');
+    let pending = null;
+
+    function escapeHtml(text) {
+      const div = document.createElement('div');
+      div.textContent = text;
+      return div.innerHTML;
+    }
+
+    function render(preview) {
+      if (preview.answered === 0) {
+        content.innerHTML = 'Answer the questions above to preview your recommendations.';
+        return;
+      }
+      if (preview.products.length === 0) {
+        content.innerHTML = 'No pets are recommended for these answers.';
+        return;
+      }
+      let html = preview.complete ? '' : '<p>' + preview.answered + ' of ' + questions.length
+          + ' questions answered; likelihood over the remaining answers:</p>';
+      html += '<ul>';
+      preview.products.forEach(function (product) {
+        html += '<li>' + escapeHtml(product.name) + ' (' + escapeHtml(product.productId) + ')';
+        if (preview.complete) {
+          html += ' - match score ' + product.score + ' / ' + preview.totalWeight;
+        } else {
+          html += ' - ' + Math.round(product.share * 100) + '%';
+        }
+        html += '</li>';
+      });
+      content.innerHTML = html + '</ul>';
+    }
+
+    function refresh() {
+      const params = new URLSearchParams();
+      questions.forEach(function (question) {
+        const select = document.querySelector('select[name="account.' + question + '"]');
+        if (select && select.value) {
+          params.append(question, select.value);
+        }
+      });
+      // Only the answer set chosen last matters, so drop any response still in flight
+      if (pending) {
+        pending.abort();
+      }
+      pending = new AbortController();
+      fetch(previewUrl + '?' + params.toString(), { signal: pending.signal })
+        .then(function (response) { return response.ok ? response.json() : Promise.reject(response.status); })
+        .then(render)
+        .catch(function (error) {
+          if (error && error.name === 'AbortError') {
+            return;
+          }
+          content.innerHTML = 'Recommendation preview is not available right now.';
+        });
+    }
+
+    questions.forEach(function (question) {
+      const select = document.querySelector('select[name="account.' + question + '"]');
+      if (select) {
+        select.addEventListener('change', refresh);
+      }
+    });
+    refresh();
+  })();
+</script>
@@ -284,6 +284,17 @@
           console.log('item1Price:', item1Price);
           console.log('item2Price:', item2Price);
 
+          // 설문 매칭 결과 (설문 완료 사용자만)
+          const surveyMatch = (prefix) => {
+            if (responseData[prefix + '_recommended'] === undefined) {
+              return 'N/A';
+            }
+            const label = responseData[prefix + '_recommended'] ? 'Recommended' : 'Not recommended';
+            return label + ' (' + responseData[prefix + '_match_score'] + ' / ' + responseData.survey_total_weight + ')';
+          };
+          const item1SurveyMatch = surveyMatch('item1');
+          const item2SurveyMatch = surveyMatch('item2');
+
           // 사용자 정보
           const livingEnvUser = responseData.user_living_environment || 'Not specified';
           const petSizeUser = responseData.user_pet_size || 'Not specified';
@@ -342,6 +353,11 @@
                         <td style="border: 1px solid #ddd; padding: 10px;">\${item1Price}</td>
                         <td style="border: 1px solid #ddd; padding: 10px;">\${item2Price}</td>
                       </tr>
+                      <tr>
+                        <td style="border: 1px solid #ddd; padding: 10px; font-weight: bold;">Survey Match</td>
+                        <td style="border: 1px solid #ddd; padding: 10px;">\${item1SurveyMatch}</td>
+                        <td style="border: 1px solid #ddd; padding: 10px;">\${item2SurveyMatch}</td>
+                      </tr>
                     </table>
                   </div>
 
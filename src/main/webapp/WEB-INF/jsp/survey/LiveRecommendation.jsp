@@ -31,6 +31,14 @@
       <div class="Message">No recommendations available.</div>
     </c:if>
     <c:if test="${not empty actionBean.recommendedItems}">
+      <c:if test="${not empty actionBean.nearestMatch}">
+        <div class="Message">
+          No survey profile matches your answers exactly. Showing the closest one
+          (match score ${actionBean.nearestMatch.score} / ${actionBean.totalWeight}, differs in:
+          <c:forEach var="condition" items="${actionBean.nearestMatch.mismatchingConditions}" varStatus="status"
+            >${status.first ? '' : ', '}<c:out value="${condition}" /></c:forEach>).
+        </div>
+      </c:if>
 
       <div class="table-container" style="position: relative; width: max-content; margin: 0 auto;">
 
@@ -21,6 +21,17 @@
 
   <h2>Survey Recommendations</h2>
 
+  <p>
+    Recommendation snapshot ${actionBean.recommendationSnapshot.version}
+    (data version ${actionBean.recommendationSnapshot.dataVersion}),
+    built at ${actionBean.recommendationSnapshot.builtAt} in ${actionBean.recommendationSnapshot.buildMillis} ms
+  </p>
+  <c:if test="${actionBean.admin}">
+    <stripes:form beanclass="org.mybatis.jpetstore.web.actions.SurveyRecommendationActionBean" method="post">
+      <stripes:submit name="reload" value="Reload" />
+    </stripes:form>
+  </c:if>
+
   <table class="table table-striped">
     <thead>
       <tr>
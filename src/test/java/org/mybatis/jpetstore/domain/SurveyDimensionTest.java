@@ -0,0 +1,100 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class SurveyDimensionTest {
+
+  @Test
+  void shouldCoverTheWholeSurveyAnswerSpace() {
+    assertThat(SurveyDimension.PROFILE_COUNT).isEqualTo(5 * 4 * 5 * 3 * 3 * 3);
+  }
+
+  @Test
+  void shouldEncodeAccountAnswersAsMixedRadixKey() {
+    // given
+    Account account = new Account();
+    account.setResidenceEnv("Can maintain special spaces (aquarium, terrarium, etc.)");
+    account.setCarePeriod("Doesn't matter ");
+    account.setPetColorPref("Doesn't matter");
+    account.setPetSizePref("Large (yard and spacious indoor area possible)");
+    account.setActivityTime("Irregular");
+    account.setDietManagement("Can manage special diets (insect-based, dried food, etc.)");
+
+    // when
+    int key = SurveyDimension.profileKey(account);
+
+    // then
+    assertThat(key).isEqualTo(SurveyDimension.PROFILE_COUNT - 1);
+    assertThat(SurveyDimension.ordinals(key)).containsExactly(4, 3, 4, 2, 2, 2);
+    assertThat(SurveyDimension.profileKey(SurveyDimension.ordinals(key))).isEqualTo(key);
+  }
+
+  @Test
+  void shouldRoundTripEveryProfileKey() {
+    for (int key = 0; key < SurveyDimension.PROFILE_COUNT; key++) {
+      assertThat(SurveyDimension.profileKey(SurveyDimension.ordinals(key))).isEqualTo(key);
+    }
+  }
+
+  @Test
+  void shouldNotEncodeIncompleteOrUnknownAnswers() {
+    // given
+    Account account = new Account();
+    account.setResidenceEnv("Dry environment");
+    account.setCarePeriod("5 years or less");
+    account.setPetColorPref("Mixed colors");
+    account.setPetSizePref("Small (suitable for studio/small apartment)");
+    account.setActivityTime("Day");
+
+    // when
+    int incomplete = SurveyDimension.profileKey(account);
+    account.setDietManagement("Only cake");
+    int unknown = SurveyDimension.profileKey(account);
+
+    // then
+    assertThat(incomplete).isEqualTo(-1);
+    assertThat(unknown).isEqualTo(-1);
+  }
+
+  @Test
+  void shouldFlagIncompleteAndNonCanonicalSurveyKeys() {
+    // given
+    Account account = new Account();
+    account.setResidenceEnv("Dry environment");
+    account.setCarePeriod("5 years or less");
+    account.setPetColorPref("Mixed colors");
+    account.setPetSizePref("Small (suitable for studio/small apartment)");
+    account.setActivityTime("Day");
+
+    // when
+    int incomplete = account.getSurveyKey();
+    account.setDietManagement("Only cake");
+    int nonCanonical = account.getSurveyKey();
+    account.setDietManagement("Simple kibble-focused (carnivore, omnivore)");
+    int canonical = account.getSurveyKey();
+
+    // then
+    assertThat(incomplete).isEqualTo(SurveyDimension.INCOMPLETE_SURVEY_KEY);
+    assertThat(nonCanonical).isEqualTo(SurveyDimension.NON_CANONICAL_SURVEY_KEY);
+    assertThat(canonical).isEqualTo(SurveyDimension.profileKey(new int[] { 3, 0, 3, 0, 0, 0 }));
+    assertThat(SurveyDimension.profileKey(account)).isEqualTo(canonical);
+  }
+
+}
@@ -22,6 +22,7 @@ import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mybatis.jpetstore.domain.Account;
+import org.mybatis.jpetstore.domain.SurveyDimension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ContextConfiguration;
@@ -98,6 +99,21 @@ class AccountMapperTest {
 
   }
 
+  @Test
+  void getAccountByUsernameKeepsStoredSurveyKey() {
+    // given
+    // A key that does not match the answers shows whether the stored one survives the answer setters
+    jdbcTemplate.update("UPDATE PROFILE SET RESIDENCE_ENV = ?, SURVEYKEY = ? WHERE USERID = ?", "Dry environment",
+        12345, "j2ee");
+
+    // when
+    Account account = mapper.getAccountByUsername("j2ee");
+
+    // then
+    assertThat(account.getResidenceEnv()).isEqualTo("Dry environment");
+    assertThat(account.getSurveyKey()).isEqualTo(12345);
+  }
+
   @Test
   void insertAccount() {
 
@@ -147,7 +163,7 @@ class AccountMapperTest {
     // then
     Map<String, Object> record = jdbcTemplate.queryForMap("SELECT * FROM profile WHERE userid = ?", "mybatis");
 
-    assertThat(record).hasSize(11).containsEntry("USERID", account.getUsername())
+    assertThat(record).hasSize(12).containsEntry("USERID", account.getUsername())
         .containsEntry("LANGPREF", account.getLanguagePreference())
         .containsEntry("FAVCATEGORY", account.getFavouriteCategoryId()).containsEntry("MYLISTOPT", 1)
         .containsEntry("BANNEROPT", 0).containsEntry("RESIDENCE_ENV", account.getResidenceEnv())
@@ -155,7 +171,8 @@ class AccountMapperTest {
         .containsEntry("PET_COLOR_PREF", account.getPetColorPref())
         .containsEntry("PET_SIZE_PREF", account.getPetSizePref())
         .containsEntry("ACTIVITY_TIME", account.getActivityTime())
-        .containsEntry("DIET_MANAGEMENT", account.getDietManagement());
+        .containsEntry("DIET_MANAGEMENT", account.getDietManagement())
+        .containsEntry("SURVEYKEY", SurveyDimension.INCOMPLETE_SURVEY_KEY);
   }
 
   @Test
@@ -226,7 +243,7 @@ class AccountMapperTest {
     // then
     Map<String, Object> record = jdbcTemplate.queryForMap("SELECT * FROM profile WHERE userid = ?", "j2ee");
 
-    assertThat(record).hasSize(11).containsEntry("USERID", account.getUsername())
+    assertThat(record).hasSize(12).containsEntry("USERID", account.getUsername())
         .containsEntry("LANGPREF", account.getLanguagePreference())
         .containsEntry("FAVCATEGORY", account.getFavouriteCategoryId()).containsEntry("MYLISTOPT", 0)
         .containsEntry("BANNEROPT", 0).containsEntry("RESIDENCE_ENV", account.getResidenceEnv())
@@ -234,7 +251,8 @@ class AccountMapperTest {
         .containsEntry("PET_COLOR_PREF", account.getPetColorPref())
         .containsEntry("PET_SIZE_PREF", account.getPetSizePref())
         .containsEntry("ACTIVITY_TIME", account.getActivityTime())
-        .containsEntry("DIET_MANAGEMENT", account.getDietManagement());
+        .containsEntry("DIET_MANAGEMENT", account.getDietManagement())
+        .containsEntry("SURVEYKEY", SurveyDimension.INCOMPLETE_SURVEY_KEY);
   }
 
   @Test
@@ -0,0 +1,94 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = MapperTestContext.class)
+@Transactional
+class RecommendationMessageCacheMapperTest {
+
+  private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+  private static final String OTHER_HASH = "60303ae22b998861bce3b28f33eec1be758a213c86c93c076dbe9f558c11c752";
+
+  @Autowired
+  private RecommendationMessageCacheMapper mapper;
+
+  @Test
+  void insertMessageKeepsTheFirstMessage() {
+    // given
+    LocalDateTime notBefore = LocalDateTime.now().minusDays(30);
+    mapper.insertMessage(HASH, "First message", notBefore);
+
+    // when
+    mapper.insertMessage(HASH, "Second message", notBefore);
+
+    // then
+    assertThat(mapper.getMessage(HASH, notBefore).getMessage()).isEqualTo("First message");
+    assertThat(mapper.getMessage(HASH, notBefore).getPromptHash()).isEqualTo(HASH);
+    assertThat(mapper.countMessages()).isEqualTo(1L);
+  }
+
+  @Test
+  void insertMessageReplacesAnExpiredMessage() {
+    // given
+    mapper.insertMessage(HASH, "First message", LocalDateTime.now().minusDays(30));
+    // The first message was created before this, so it counts as expired
+    LocalDateTime notBefore = LocalDateTime.now().plusMinutes(1);
+
+    // when
+    mapper.insertMessage(HASH, "Second message", notBefore);
+
+    // then
+    assertThat(mapper.getMessage(HASH, LocalDateTime.now().minusMinutes(1)).getMessage()).isEqualTo("Second message");
+    assertThat(mapper.countMessages()).isEqualTo(1L);
+  }
+
+  @Test
+  void getMessageMissing() {
+    assertThat(mapper.getMessage(HASH, LocalDateTime.now().minusDays(30))).isNull();
+  }
+
+  @Test
+  void deleteMessagesCreatedBeforeTheNewest() {
+    // given
+    LocalDateTime notBefore = LocalDateTime.now().minusDays(30);
+    mapper.insertMessage(HASH, "First message", notBefore);
+    mapper.insertMessage(OTHER_HASH, "Other message", notBefore);
+
+    // when
+    LocalDateTime newest = mapper.getCreatedAtOffset(0);
+    int kept = mapper.deleteMessagesCreatedBefore(newest.minusMinutes(1));
+    int deleted = mapper.deleteMessagesCreatedBefore(newest.plusMinutes(1));
+
+    // then
+    assertThat(mapper.getCreatedAtOffset(2)).isNull();
+    assertThat(kept).isEqualTo(0);
+    assertThat(deleted).isEqualTo(2);
+    assertThat(mapper.countMessages()).isEqualTo(0L);
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.mapper;
+package org.mybatis.jpetstore.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mybatis.jpetstore.domain.RecommendationMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = MapperTestContext.class)
+@Transactional
+class RecommendationMessageMapperTest {
+
+  @Autowired
+  private RecommendationMessageMapper mapper;
+
+  private static RecommendationMessage message(String productId, boolean recommended, String text) {
+    RecommendationMessage message = new RecommendationMessage();
+    message.setUsername("j2ee");
+    message.setProductId(productId);
+    message.setRecommended(recommended);
+    message.setMessage(text);
+    return message;
+  }
+
+  @Test
+  void upsertRecommendationMessagesAndDeleteTheRest() {
+    // given
+    mapper.insertRecommendationMessage(message("FI-SW-01", false, "Old angelfish message"));
+    mapper.insertRecommendationMessage(message("K9-BD-01", true, "Old bulldog message"));
+
+    // when
+    mapper.upsertRecommendationMessages(
+        List.of(message("FI-SW-01", true, "New angelfish message"), message("AV-CB-01", true, "Amazon parrot")));
+    mapper.deleteMessagesForUserExcept("j2ee", List.of("FI-SW-01", "AV-CB-01"));
+
+    // then
+    List<RecommendationMessage> messages = mapper.getMessagesForUser("j2ee");
+    assertThat(messages).extracting(RecommendationMessage::getProductId).containsExactlyInAnyOrder("FI-SW-01",
+        "AV-CB-01");
+    RecommendationMessage updated = mapper.getMessage("j2ee", "FI-SW-01");
+    assertThat(updated.isRecommended()).isTrue();
+    assertThat(updated.getMessage()).isEqualTo("New angelfish message");
+  }
+
+  @Test
+  void deleteMessagesForUserExceptNothing() {
+    // given
+    mapper.insertRecommendationMessage(message("FI-SW-01", false, "Angelfish message"));
+
+    // when
+    mapper.deleteMessagesForUserExcept("j2ee", List.of());
+
+    // then
+    assertThat(mapper.getMessagesForUser("j2ee")).isEmpty();
+  }
+
+}
@@ -0,0 +1,129 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mybatis.jpetstore.domain.RecommendationRefreshJob;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = MapperTestContext.class)
+@Transactional
+class RecommendationRefreshJobMapperTest {
+
+  private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+  @Autowired
+  private RecommendationRefreshJobMapper mapper;
+
+  private RecommendationRefreshJob queue(String username, String previousAnswers, LocalDateTime runAfter) {
+    RecommendationRefreshJob job = new RecommendationRefreshJob();
+    job.setUsername(username);
+    job.setPreviousAnswers(previousAnswers);
+    job.setJobStatus(RecommendationRefreshJob.PENDING);
+    job.setRunAfter(runAfter);
+    job.setCreated(NOW);
+    job.setUpdated(NOW);
+    mapper.insertJob(job);
+    return job;
+  }
+
+  @Test
+  void insertJobAndMergeRequestsIntoThePendingOne() {
+    // given
+    RecommendationRefreshJob job = queue("j2ee", "{\"activityTime\":\"Day\"}", NOW.plusMinutes(5));
+
+    // when
+    int superseded = mapper.supersedePendingJob(job.getJobId(), true, NOW);
+
+    // then
+    assertThat(superseded).isEqualTo(1);
+    RecommendationRefreshJob active = mapper.getActiveJob("j2ee");
+    assertThat(active.getJobId()).isEqualTo(job.getJobId());
+    assertThat(active.getPreviousAnswers()).isNull();
+    assertThat(active.getRunAfter()).isEqualTo(NOW);
+    assertThat(active.getAttempts()).isZero();
+  }
+
+  @Test
+  void claimJobOncePerUserAndLease() {
+    // given
+    RecommendationRefreshJob first = queue("j2ee", null, NOW);
+    RecommendationRefreshJob second = queue("j2ee", null, NOW);
+    RecommendationRefreshJob later = queue("ACID", null, NOW.plusMinutes(5));
+
+    // when
+    int claimed = mapper.claimJob(first.getJobId(), "pool-1", NOW.plusMinutes(10), NOW);
+    int claimedAgain = mapper.claimJob(first.getJobId(), "pool-2", NOW.plusMinutes(10), NOW);
+
+    // then
+    assertThat(claimed).isEqualTo(1);
+    assertThat(claimedAgain).isZero();
+    // j2ee already has a job running and ACID's job is not due yet
+    assertThat(mapper.getClaimableJobIds(NOW, 10)).isEmpty();
+    assertThat(mapper.claimJob(second.getJobId(), "pool-2", NOW.plusMinutes(10), NOW)).isZero();
+    // Once the lease runs out, the running job can be claimed again, oldest due first
+    assertThat(mapper.getClaimableJobIds(NOW.plusMinutes(11), 10)).containsExactly(first.getJobId(),
+        second.getJobId(), later.getJobId());
+    RecommendationRefreshJob running = mapper.getJob(first.getJobId());
+    assertThat(running.getJobStatus()).isEqualTo(RecommendationRefreshJob.RUNNING);
+    assertThat(running.getLeaseOwner()).isEqualTo("pool-1");
+    assertThat(running.getAttempts()).isEqualTo(1);
+  }
+
+  @Test
+  void retryAndCompleteJobOnlyUnderTheLease() {
+    // given
+    RecommendationRefreshJob job = queue("j2ee", null, NOW);
+    mapper.claimJob(job.getJobId(), "pool-1", NOW.plusMinutes(10), NOW);
+
+    // when
+    int retriedByOther = mapper.retryJob(job.getJobId(), "pool-2", NOW.plusMinutes(1), "stolen", NOW);
+    int retried = mapper.retryJob(job.getJobId(), "pool-1", NOW.plusMinutes(1), "OpenAI unavailable", NOW);
+
+    // then
+    assertThat(retriedByOther).isZero();
+    assertThat(retried).isEqualTo(1);
+    RecommendationRefreshJob pending = mapper.getJob(job.getJobId());
+    assertThat(pending.getJobStatus()).isEqualTo(RecommendationRefreshJob.PENDING);
+    assertThat(pending.getLastError()).isEqualTo("OpenAI unavailable");
+    assertThat(pending.getLeaseOwner()).isNull();
+    assertThat(mapper.getClaimableJobIds(NOW, 10)).isEmpty();
+
+    // when
+    mapper.claimJob(job.getJobId(), "pool-1", NOW.plusMinutes(11), NOW.plusMinutes(1));
+    int completed = mapper.completeJob(job.getJobId(), "pool-1", NOW.plusMinutes(2));
+
+    // then
+    assertThat(completed).isEqualTo(1);
+    RecommendationRefreshJob done = mapper.getJob(job.getJobId());
+    assertThat(done.getJobStatus()).isEqualTo(RecommendationRefreshJob.DONE);
+    assertThat(done.getAttempts()).isEqualTo(2);
+    assertThat(mapper.getActiveJob("j2ee")).isNull();
+    assertThat(mapper.getLatestJob("j2ee").getJobId()).isEqualTo(job.getJobId());
+    assertThat(mapper.countJobs(RecommendationRefreshJob.DONE)).isEqualTo(1L);
+    assertThat(mapper.deleteFinishedJobs(NOW.plusMinutes(3))).isEqualTo(1);
+  }
+
+}
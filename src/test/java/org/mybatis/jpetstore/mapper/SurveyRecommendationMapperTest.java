@@ -0,0 +1,131 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mybatis.jpetstore.domain.SurveyExclusionRule;
+import org.mybatis.jpetstore.domain.SurveyRecommendation;
+import org.mybatis.jpetstore.domain.SurveyScoringSetting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = MapperTestContext.class)
+@Transactional
+class SurveyRecommendationMapperTest {
+
+  @Autowired
+  private SurveyRecommendationMapper mapper;
+
+  @Test
+  void insertAndGetRecommendedProducts() {
+    // given
+    mapper.insertRecommendedProduct(1, "FL-DSH-01", 1);
+    mapper.insertRecommendedProduct(1, "AV-SB-02", 0);
+    mapper.insertRecommendedProduct(2, "FL-DSH-01", 0);
+
+    // when
+    List<String> productIds = mapper.getRecommendedProductIds(1);
+    List<Integer> surveyRecommendationIds = mapper.getSurveyRecommendationIdsByProduct("FL-DSH-01");
+
+    // then
+    assertThat(productIds).containsExactly("AV-SB-02", "FL-DSH-01");
+    assertThat(surveyRecommendationIds).containsExactly(1, 2);
+  }
+
+  @Test
+  void getSurveyRecommendationsWithProducts() {
+    // given
+    mapper.insertRecommendedProduct(1, "AV-SB-02", 0);
+    mapper.insertRecommendedProduct(1, "FL-DSH-01", 1);
+
+    // when
+    List<SurveyRecommendation> recommendations = mapper.getSurveyRecommendations();
+
+    // then
+    assertThat(recommendations).hasSize(2700);
+    assertThat(recommendations.get(0).getSurveyRecommendationId()).isEqualTo(1);
+    assertThat(recommendations.get(0).getRecommendedProductIds()).containsExactly("AV-SB-02", "FL-DSH-01");
+    assertThat(recommendations.get(1).getRecommendedProductIds()).isEmpty();
+  }
+
+  @Test
+  void getSurveyRecommendationSources() {
+    // given
+    mapper.updateProductsChecksum(1, 42);
+
+    // when
+    List<SurveyRecommendation> sources = mapper.getSurveyRecommendationSources();
+
+    // then
+    assertThat(sources).hasSize(2700);
+    assertThat(sources.get(0).getSurveyRecommendationId()).isEqualTo(1);
+    assertThat(sources.get(0).getProductsChecksum()).isEqualTo(42);
+    assertThat(sources.get(0).getRecommendedJsonData()).isNotEmpty();
+    assertThat(sources.get(1).getProductsChecksum()).isNull();
+  }
+
+  @Test
+  void deleteRecommendedProducts() {
+    // given
+    mapper.insertRecommendedProduct(1, "AV-SB-02", 0);
+
+    // when
+    mapper.deleteRecommendedProducts(1);
+
+    // then
+    assertThat(mapper.getRecommendedProductIds(1)).isEmpty();
+  }
+
+  @Test
+  void getExclusionRules() {
+    // given
+
+    // when
+    List<SurveyExclusionRule> rules = mapper.getExclusionRules();
+
+    // then
+    assertThat(rules).hasSize(2);
+    assertThat(rules.get(0).getRuleId()).isEqualTo(1);
+    assertThat(rules.get(0).getConditionName()).isEqualTo("residenceEnv");
+    assertThat(rules.get(0).getAnswer()).isEqualTo("Dry environment");
+    assertThat(rules.get(0).getProductIdPrefix()).isEqualTo("FI-FW-");
+    assertThat(rules.get(1).getProductIdPrefix()).isEqualTo("FI-SW-");
+  }
+
+  @Test
+  void getScoringSettings() {
+    // given
+
+    // when
+    List<SurveyScoringSetting> settings = mapper.getScoringSettings();
+
+    // then
+    assertThat(settings).hasSize(7);
+    assertThat(settings.get(0).getSettingName()).isEqualTo("activityTime");
+    assertThat(settings.get(0).getSettingValue()).isEqualTo(1.0);
+    assertThat(settings.get(6).getSettingName()).isEqualTo("threshold");
+    assertThat(settings.get(6).getSettingValue()).isEqualTo(7.5);
+  }
+
+}
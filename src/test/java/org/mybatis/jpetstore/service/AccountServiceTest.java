@@ -98,4 +98,17 @@ class AccountServiceTest {
     assertThat(account).isSameAs(expectedAccount);
   }
 
+  @Test
+  void shouldOnlyTreatConfiguredUsersAsAdmins() {
+    // given
+    AccountService configured = new AccountService(accountMapper, null, " ACID, admin ,");
+
+    // then
+    assertThat(configured.isAdmin("ACID")).isTrue();
+    assertThat(configured.isAdmin("admin")).isTrue();
+    assertThat(configured.isAdmin("j2ee")).isFalse();
+    assertThat(configured.isAdmin(null)).isFalse();
+    assertThat(accountService.isAdmin("ACID")).isFalse();
+  }
+
 }
@@ -0,0 +1,96 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+class AsyncConfigTest {
+
+  @Test
+  void shouldRunAtMostConcurrencyLimitMessageBatchesAndBlockSubmission() throws Exception {
+    // given
+    AsyncTaskExecutor executor = AsyncConfig.messageExecutor(2, 17);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    AtomicInteger submitted = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(2);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch finished = new CountDownLatch(4);
+    Runnable batch = () -> {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      started.countDown();
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      running.decrementAndGet();
+      finished.countDown();
+    };
+    Thread submitter = new Thread(() -> {
+      for (int i = 0; i < 4; i++) {
+        executor.execute(batch);
+        submitted.incrementAndGet();
+      }
+    });
+
+    // when
+    submitter.start();
+    assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (submitter.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+
+    // then
+    assertThat(submitter.getState()).isEqualTo(Thread.State.WAITING);
+    assertThat(submitted.get()).isEqualTo(2);
+    assertThat(running.get()).isEqualTo(2);
+    release.countDown();
+    assertThat(finished.await(10, TimeUnit.SECONDS)).isTrue();
+    submitter.join(10_000);
+    assertThat(submitted.get()).isEqualTo(4);
+    assertThat(maxRunning.get()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldFallBackToPlatformThreadsBeforeJava21() throws Exception {
+    // given
+    AsyncTaskExecutor executor = AsyncConfig.messageExecutor(2, 17);
+    AtomicReference<String> threadName = new AtomicReference<>();
+    AtomicReference<String> threadGroup = new AtomicReference<>();
+
+    // when
+    executor.submit(() -> {
+      threadName.set(Thread.currentThread().getName());
+      threadGroup.set(Thread.currentThread().getThreadGroup().getName());
+    }).get(10, TimeUnit.SECONDS);
+
+    // then
+    assertThat(threadName.get()).startsWith("recommendation-message-");
+    // Virtual threads all belong to the "VirtualThreads" group
+    assertThat(threadGroup.get()).isNotEqualTo("VirtualThreads");
+  }
+
+}
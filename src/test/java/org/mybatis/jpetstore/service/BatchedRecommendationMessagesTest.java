@@ -0,0 +1,143 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.product;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.sampleAccount;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.mybatis.jpetstore.domain.Account;
+import org.mybatis.jpetstore.domain.Product;
+import org.mybatis.jpetstore.domain.SurveyDimension;
+
+class BatchedRecommendationMessagesTest {
+
+  private static final Set<String> BATCH = Set.of("RP-LI-02", "RP-SN-01");
+  private static final int RESIDENCE_AND_SIZE = (1 << SurveyDimension.RESIDENCE_ENV.ordinal())
+      | (1 << SurveyDimension.PET_SIZE_PREF.ordinal());
+  private static final int ACTIVITY = 1 << SurveyDimension.ACTIVITY_TIME.ordinal();
+
+  @Test
+  void shouldParseWellFormedArrayInsideCodeFence() throws IOException {
+    // given
+    String response = "```json\n[{\"productId\": \"RP-LI-02\", \"message\": \" Iguana suits you. \"},"
+        + " {\"productId\": \"RP-SN-01\", \"message\": \"A snake may not fit.\"}]\n```";
+
+    // when
+    Map<String, String> messages = BatchedRecommendationMessages.parse(response, BATCH);
+
+    // then
+    assertThat(messages).hasSize(2);
+    assertThat(messages).containsEntry("RP-LI-02", "Iguana suits you.");
+    assertThat(messages).containsEntry("RP-SN-01", "A snake may not fit.");
+  }
+
+  @Test
+  void shouldLeaveOutMissingAndInvalidEntries() throws IOException {
+    // given
+    String response = "[{\"productId\": \"RP-LI-02\", \"message\": \"\"},"
+        + " {\"productId\": \"RP-SN-01\", \"message\": \"" + "x".repeat(301) + "\"}]";
+
+    // when
+    Map<String, String> messages = BatchedRecommendationMessages.parse(response, BATCH);
+
+    // then
+    assertThat(messages).isEmpty();
+  }
+
+  @Test
+  void shouldIgnoreUnknownAndRepeatedProducts() throws IOException {
+    // given
+    String response = "[{\"productId\": \"RP-LI-02\", \"message\": \"First.\"},"
+        + " {\"productId\": \"RP-LI-02\", \"message\": \"Second.\"},"
+        + " {\"productId\": \"K9-BD-01\", \"message\": \"Not in the batch.\"}, {\"message\": \"No id.\"}]";
+
+    // when
+    Map<String, String> messages = BatchedRecommendationMessages.parse(response, BATCH);
+
+    // then
+    assertThat(messages).hasSize(1);
+    assertThat(messages).containsEntry("RP-LI-02", "First.");
+    assertThat(messages).doesNotContainKey("K9-BD-01");
+  }
+
+  @Test
+  void shouldRejectResponseWithoutJsonArray() {
+    assertThatThrownBy(() -> BatchedRecommendationMessages.parse("Sorry, I cannot help with that.", BATCH))
+        .isInstanceOf(IOException.class);
+    assertThatThrownBy(() -> BatchedRecommendationMessages.parse("[not json]", BATCH)).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void shouldKeyBatchedMessageOnItsOwnEntryOnly() {
+    // given
+    Product iguana = product("RP-LI-02", "REPTILES", "Iguana");
+    Product snake = product("RP-SN-01", "REPTILES", "Rattlesnake");
+    Map<String, RecommendationVerdict> verdicts = Map.of();
+
+    // when
+    String key = BatchedRecommendationMessages.entryKey("gpt-3.5-turbo", sampleAccount(), iguana, verdicts);
+    String otherModel = BatchedRecommendationMessages.entryKey("gpt-4o", sampleAccount(), iguana, verdicts);
+    String otherProduct = BatchedRecommendationMessages.entryKey("gpt-3.5-turbo", sampleAccount(), snake, verdicts);
+    String batchOfTwo = RecommendationMessageCache.key("gpt-3.5-turbo",
+        BatchedRecommendationMessages.prompt(sampleAccount(), List.of(iguana, snake), verdicts));
+
+    // then
+    assertThat(BatchedRecommendationMessages.entryKey("gpt-3.5-turbo", sampleAccount(), iguana, verdicts))
+        .isEqualTo(key);
+    assertThat(otherModel).isNotEqualTo(key);
+    assertThat(otherProduct).isNotEqualTo(key);
+    assertThat(batchOfTwo).isNotEqualTo(key);
+    assertThat(BatchedRecommendationMessages.prompt(sampleAccount(), List.of(iguana, snake), verdicts))
+        .contains("Product ID: RP-LI-02", "Product ID: RP-SN-01");
+  }
+
+  @Test
+  void shouldOnlySendTheAnswersEachMessageMentions() {
+    // given
+    Product iguana = product("RP-LI-02", "REPTILES", "Iguana");
+    Product snake = product("RP-SN-01", "REPTILES", "Rattlesnake");
+    Map<String, RecommendationVerdict> verdicts = Map.of("RP-LI-02",
+        new RecommendationVerdict("RP-LI-02", true, 5.5, 1, RESIDENCE_AND_SIZE, ACTIVITY), "RP-SN-01",
+        new RecommendationVerdict("RP-SN-01", false, 2.0, 1, RESIDENCE_AND_SIZE, ACTIVITY));
+    Account dayUser = sampleAccount();
+    dayUser.setActivityTime("Day");
+
+    // when
+    String prompt = BatchedRecommendationMessages.prompt(sampleAccount(), List.of(iguana, snake), verdicts);
+
+    // then
+    assertThat(prompt).doesNotContain("User Preferences:\n").contains("ONLY mention these");
+    assertThat(prompt.substring(prompt.indexOf("RP-LI-02"), prompt.indexOf("RP-SN-01")))
+        .contains("Living Environment: Dry environment", "Pet Size Preference: Small")
+        .doesNotContain("Activity Time", "Pet Care Period");
+    assertThat(prompt.substring(prompt.indexOf("RP-SN-01"))).contains("Activity Time: Night")
+        .doesNotContain("Living Environment");
+    // The iguana message does not mention the activity time, the snake message does
+    assertThat(BatchedRecommendationMessages.entryKey("gpt-3.5-turbo", dayUser, iguana, verdicts))
+        .isEqualTo(BatchedRecommendationMessages.entryKey("gpt-3.5-turbo", sampleAccount(), iguana, verdicts));
+    assertThat(BatchedRecommendationMessages.entryKey("gpt-3.5-turbo", dayUser, snake, verdicts))
+        .isNotEqualTo(BatchedRecommendationMessages.entryKey("gpt-3.5-turbo", sampleAccount(), snake, verdicts));
+  }
+
+}
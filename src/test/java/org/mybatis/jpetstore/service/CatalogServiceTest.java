@@ -16,7 +16,11 @@
 package org.mybatis.jpetstore.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.product;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.row;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -32,6 +36,7 @@ import org.mybatis.jpetstore.domain.Product;
 import org.mybatis.jpetstore.mapper.CategoryMapper;
 import org.mybatis.jpetstore.mapper.ItemMapper;
 import org.mybatis.jpetstore.mapper.ProductMapper;
+import org.mybatis.jpetstore.mapper.SurveyRecommendationMapper;
 
 /**
  * @author Eduardo Macarron
@@ -45,6 +50,10 @@ class CatalogServiceTest {
   private CategoryMapper categoryMapper;
   @Mock
   private ItemMapper itemMapper;
+  @Mock
+  private SurveyRecommendationMapper surveyRecommendationMapper;
+  @Mock
+  private SurveyRecommendationMigrationService migrationService;
 
   @InjectMocks
   private CatalogService catalogService;
@@ -190,4 +199,43 @@ class CatalogServiceTest {
 
   }
 
+  @Test
+  void shouldPublishNewSnapshotOnReload() {
+    // given
+    when(surveyRecommendationMapper.getDataVersion()).thenReturn(1L, 2L);
+    when(surveyRecommendationMapper.getSurveyRecommendations()).thenReturn(List.of(row(1, "Dry environment",
+        "5 years or less", "Mixed colors", "Small (suitable for studio/small apartment)", "Day",
+        "Simple kibble-focused (carnivore, omnivore)", "RP-LI-02")));
+    when(productMapper.getAllProducts()).thenReturn(List.of(product("RP-LI-02")));
+    when(itemMapper.getItemListByProduct("RP-LI-02")).thenReturn(List.of(new Item()));
+    RecommendationSnapshot first = catalogService.getRecommendationSnapshot();
+
+    // when
+    RecommendationSnapshot reloaded = catalogService.reloadRecommendations();
+
+    // then
+    assertThat(first.getVersion()).isEqualTo(1L);
+    assertThat(first.getDataVersion()).isEqualTo(1L);
+    assertThat(reloaded.getVersion()).isEqualTo(2L);
+    assertThat(reloaded.getDataVersion()).isEqualTo(2L);
+    assertThat(reloaded.getIndex()).isNotSameAs(first.getIndex());
+    assertThat(catalogService.getRecommendationSnapshot()).isSameAs(reloaded);
+    verify(migrationService, times(2)).migrateRecommendedProducts();
+  }
+
+  @Test
+  void shouldNotReloadWhenDataVersionIsUnchanged() {
+    // given
+    when(surveyRecommendationMapper.getDataVersion()).thenReturn(1L);
+    when(surveyRecommendationMapper.getSurveyRecommendations()).thenReturn(new ArrayList<>());
+    when(productMapper.getAllProducts()).thenReturn(new ArrayList<>());
+    RecommendationSnapshot first = catalogService.getRecommendationSnapshot();
+
+    // when
+    catalogService.reloadIfDataChanged();
+
+    // then
+    assertThat(catalogService.getRecommendationSnapshot()).isSameAs(first);
+  }
+
 }
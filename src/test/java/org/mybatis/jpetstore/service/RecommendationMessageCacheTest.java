@@ -0,0 +1,218 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.mybatis.jpetstore.domain.CachedRecommendationMessage;
+import org.mybatis.jpetstore.mapper.RecommendationMessageCacheMapper;
+
+class RecommendationMessageCacheTest {
+
+  private static final long TTL_MILLIS = 60_000L;
+
+  private static final class TableMapper implements RecommendationMessageCacheMapper {
+
+    private final Map<String, CachedRecommendationMessage> rows = new HashMap<>();
+
+    @Override
+    public CachedRecommendationMessage getMessage(String promptHash, LocalDateTime notBefore) {
+      CachedRecommendationMessage row = rows.get(promptHash);
+      return row == null || row.getCreated().isBefore(notBefore) ? null : row;
+    }
+
+    @Override
+    public void insertMessage(String promptHash, String message, LocalDateTime notBefore) {
+      if (getMessage(promptHash, notBefore) == null) {
+        insert(promptHash, message, LocalDateTime.now());
+      }
+    }
+
+    void insert(String promptHash, String message, LocalDateTime created) {
+      CachedRecommendationMessage row = new CachedRecommendationMessage();
+      row.setPromptHash(promptHash);
+      row.setMessage(message);
+      row.setCreated(created);
+      rows.put(promptHash, row);
+    }
+
+    @Override
+    public long countMessages() {
+      return rows.size();
+    }
+
+    @Override
+    public LocalDateTime getCreatedAtOffset(int offset) {
+      return rows.values().stream().map(CachedRecommendationMessage::getCreated)
+          .sorted(Comparator.reverseOrder()).skip(offset).findFirst().orElse(null);
+    }
+
+    @Override
+    public int deleteMessagesCreatedBefore(LocalDateTime before) {
+      int size = rows.size();
+      rows.values().removeIf(row -> row.getCreated().isBefore(before));
+      return size - rows.size();
+    }
+  }
+
+  private static RecommendationMessageCache cache(RecommendationMessageCacheMapper table, int capacity,
+      int tableCapacity) {
+    return new RecommendationMessageCache(table, capacity, TTL_MILLIS, tableCapacity);
+  }
+
+  @Test
+  void shouldAddressMessagesByModelAndPrompt() {
+    String key = RecommendationMessageCache.key("gpt-3.5-turbo", "prompt");
+
+    assertThat(key).hasSize(64);
+    assertThat(RecommendationMessageCache.key("gpt-3.5-turbo", "prompt")).isEqualTo(key);
+    assertThat(RecommendationMessageCache.key("gpt-4", "prompt")).isNotEqualTo(key);
+    assertThat(RecommendationMessageCache.key("gpt-3.5-turbo", "prompt ")).isNotEqualTo(key);
+  }
+
+  @Test
+  void shouldServeFromMemoryThenTableAndEvictLeastRecentlyUsed() {
+    // given
+    TableMapper table = new TableMapper();
+    RecommendationMessageCache cache = cache(table, 2, 100);
+    cache.put("a", "Message A");
+    cache.put("b", "Message B");
+
+    // when
+    String memoryHit = cache.get("a");
+    cache.put("c", "Message C");
+    String tableHit = cache.get("b");
+    String miss = cache.get("d");
+
+    // then
+    assertThat(memoryHit).isEqualTo("Message A");
+    assertThat(tableHit).isEqualTo("Message B");
+    assertThat(miss).isNull();
+    assertThat(cache.getMemoryHits()).isEqualTo(1L);
+    assertThat(cache.getTableHits()).isEqualTo(1L);
+    assertThat(cache.getMisses()).isEqualTo(1L);
+    assertThat(cache.getHitRatio()).isEqualTo(2.0 / 3);
+    // b was evicted by c, then promoted back from the table, evicting a
+    assertThat(cache.getEvictions()).isEqualTo(2L);
+    assertThat(cache.getSize()).isEqualTo(2);
+    assertThat(cache.getTableSize()).isEqualTo(3L);
+  }
+
+  @Test
+  void shouldCoalesceConcurrentGenerationsOfTheSameKey() throws Exception {
+    // given
+    RecommendationMessageCache cache = cache(new TableMapper(), 10, 100);
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    // when
+    CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> cache.getOrGenerate("a", () -> {
+      calls.incrementAndGet();
+      started.countDown();
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return "Message A";
+    }));
+    started.await(10, TimeUnit.SECONDS);
+    CompletableFuture<String> follower = CompletableFuture
+        .supplyAsync(() -> cache.getOrGenerate("a", () -> "Message " + calls.incrementAndGet()));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (cache.getCoalesced() == 0 && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    release.countDown();
+
+    // then
+    assertThat(leader.get(10, TimeUnit.SECONDS)).isEqualTo("Message A");
+    assertThat(follower.get(10, TimeUnit.SECONDS)).isEqualTo("Message A");
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(cache.getGenerations()).isEqualTo(1L);
+    assertThat(cache.getCoalesced()).isEqualTo(1L);
+    assertThat(cache.getInFlight()).isEqualTo(0);
+  }
+
+  @Test
+  void shouldNotCacheFailedGenerations() {
+    // given
+    RecommendationMessageCache cache = cache(new TableMapper(), 10, 100);
+
+    // when
+    assertThatThrownBy(() -> cache.getOrGenerate("a", () -> {
+      throw new IllegalStateException("API down");
+    })).isInstanceOf(CompletionException.class);
+    String retried = cache.getOrGenerate("a", () -> "Message A");
+
+    // then
+    assertThat(retried).isEqualTo("Message A");
+    assertThat(cache.getGenerations()).isEqualTo(2L);
+    assertThat(cache.getInFlight()).isEqualTo(0);
+  }
+
+  @Test
+  void shouldNotServeExpiredTableMessages() {
+    // given
+    TableMapper table = new TableMapper();
+    RecommendationMessageCache cache = cache(table, 10, 100);
+    table.insert("a", "Old message", LocalDateTime.now().minusSeconds(120));
+
+    // when
+    String expired = cache.get("a");
+    cache.put("a", "New message");
+
+    // then
+    assertThat(expired).isNull();
+    assertThat(cache.getMisses()).isEqualTo(1L);
+    assertThat(table.getMessage("a", LocalDateTime.now().minusSeconds(60)).getMessage()).isEqualTo("New message");
+  }
+
+  @Test
+  void shouldPurgeExpiredAndOldestTableMessages() {
+    // given
+    TableMapper table = new TableMapper();
+    RecommendationMessageCache cache = cache(table, 10, 2);
+    LocalDateTime now = LocalDateTime.now();
+    table.insert("expired", "Expired", now.minusSeconds(120));
+    table.insert("oldest", "Oldest", now.minusSeconds(30));
+    table.insert("older", "Older", now.minusSeconds(20));
+    table.insert("newest", "Newest", now.minusSeconds(10));
+
+    // when
+    int purged = cache.purgeTable();
+
+    // then
+    assertThat(purged).isEqualTo(2);
+    assertThat(cache.getTablePurged()).isEqualTo(2L);
+    assertThat(table.rows.keySet()).containsExactlyInAnyOrder("older", "newest");
+    assertThat(cache.getTableSize()).isEqualTo(2L);
+  }
+
+}
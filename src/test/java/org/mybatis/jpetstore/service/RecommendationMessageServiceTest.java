@@ -0,0 +1,273 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.account;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mybatis.jpetstore.domain.Account;
+import org.mybatis.jpetstore.domain.Product;
+import org.mybatis.jpetstore.domain.RecommendationMessage;
+import org.mybatis.jpetstore.domain.SurveyDimension;
+import org.mybatis.jpetstore.mapper.ProductMapper;
+import org.mybatis.jpetstore.mapper.RecommendationMessageMapper;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class RecommendationMessageServiceTest {
+
+  private static final int RESIDENCE_AND_SIZE = (1 << SurveyDimension.RESIDENCE_ENV.ordinal())
+      | (1 << SurveyDimension.PET_SIZE_PREF.ordinal());
+  private static final int ACTIVITY = 1 << SurveyDimension.ACTIVITY_TIME.ordinal();
+
+  private static Account dayAccount() {
+    return account("Dry environment", "5 years or less", "Mixed colors", "Small (suitable for studio/small apartment)",
+        "Day", "Simple kibble-focused (carnivore, omnivore)");
+  }
+
+  @Mock
+  private RecommendationMessageMapper recommendationMessageMapper;
+  @Mock
+  private ProductMapper productMapper;
+  @Mock
+  private CatalogService catalogService;
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  // Batches of one product, generated on the calling thread
+  private RecommendationMessageService service() {
+    return new RecommendationMessageService(recommendationMessageMapper, productMapper, catalogService,
+        new TaskExecutorAdapter(Runnable::run), transactionManager, 1);
+  }
+
+  static Product product(String productId) {
+    Product product = new Product();
+    product.setProductId(productId);
+    product.setCategoryId("REPTILES");
+    product.setName(productId);
+    return product;
+  }
+
+  // One product whose message generation takes at least generationMillis
+  private Account stubOneProductRefresh(long generationMillis) {
+    Account account = dayAccount();
+    account.setUsername("j2ee");
+    Product iguana = product("RP-LI-02");
+    when(catalogService.hasCompletedSurvey(account)).thenReturn(true);
+    when(productMapper.getAllProducts()).thenReturn(List.of(iguana));
+    when(catalogService.evaluate(account, List.of(iguana))).thenReturn(Map.of());
+    when(catalogService.getRecommendationMessages(eq(account), eq(List.of(iguana)), any())).thenAnswer(invocation -> {
+      Thread.sleep(generationMillis);
+      return Map.of("RP-LI-02", "Iguana suits you.");
+    });
+    return account;
+  }
+
+  private static Account nightAccount() {
+    return account("Dry environment", "5 years or less", "Mixed colors", "Small (suitable for studio/small apartment)",
+        "Night", "Simple kibble-focused (carnivore, omnivore)");
+  }
+
+  @Test
+  void shouldDetectUnchangedSurveyAnswers() {
+    // given
+    Account previous = dayAccount();
+
+    // when
+    boolean same = RecommendationMessageService.sameSurveyAnswers(previous, dayAccount());
+    boolean edited = RecommendationMessageService.sameSurveyAnswers(previous, nightAccount());
+
+    // then
+    assertThat(same).isTrue();
+    assertThat(edited).isFalse();
+  }
+
+  @Test
+  void shouldKeepMessagesThatDoNotMentionTheEditedAnswer() {
+    // given
+    RecommendationVerdict verdict = new RecommendationVerdict("RP-LI-02", true, 5.5, 1, RESIDENCE_AND_SIZE, ACTIVITY);
+
+    // when
+    boolean changed = RecommendationMessageService.explanationChanged(dayAccount(), verdict, nightAccount(), verdict);
+
+    // then
+    assertThat(changed).isFalse();
+  }
+
+  @Test
+  void shouldRegenerateMessagesWhoseVerdictOrMentionedAnswersChanged() {
+    // given
+    RecommendationVerdict recommended = new RecommendationVerdict("RP-LI-02", true, 5.5, 1, RESIDENCE_AND_SIZE,
+        ACTIVITY);
+    RecommendationVerdict notRecommended = new RecommendationVerdict("RP-LI-02", false, 5.5, 1, RESIDENCE_AND_SIZE,
+        ACTIVITY);
+    RecommendationVerdict moreMatches = new RecommendationVerdict("RP-LI-02", true, 6.5, 1,
+        RESIDENCE_AND_SIZE | ACTIVITY, 0);
+
+    // when
+    boolean flipped = RecommendationMessageService.explanationChanged(dayAccount(), recommended, nightAccount(),
+        notRecommended);
+    boolean newCondition = RecommendationMessageService.explanationChanged(dayAccount(), recommended, nightAccount(),
+        moreMatches);
+    boolean mentionedAnswer = RecommendationMessageService.explanationChanged(dayAccount(), notRecommended,
+        nightAccount(), notRecommended);
+
+    // then
+    assertThat(flipped).isTrue();
+    assertThat(newCondition).isTrue();
+    assertThat(mentionedAnswer).isTrue();
+  }
+
+  @Test
+  void shouldKeepPreviousMessagesOfFailedBatch() {
+    // given
+    Account account = dayAccount();
+    account.setUsername("j2ee");
+    Product iguana = product("RP-LI-02");
+    Product snake = product("RP-SN-01");
+    Map<String, RecommendationVerdict> verdicts = Map.of("RP-LI-02",
+        new RecommendationVerdict("RP-LI-02", true, 5.5, 1, RESIDENCE_AND_SIZE, ACTIVITY), "RP-SN-01",
+        RecommendationVerdict.notRecommended("RP-SN-01"));
+    when(catalogService.hasCompletedSurvey(account)).thenReturn(true);
+    when(productMapper.getAllProducts()).thenReturn(List.of(iguana, snake));
+    when(catalogService.evaluate(account, List.of(iguana, snake))).thenReturn(verdicts);
+    when(catalogService.getRecommendationMessages(eq(account), eq(List.of(iguana)), any()))
+        .thenReturn(Map.of("RP-LI-02", "Iguana suits you."));
+    when(catalogService.getRecommendationMessages(eq(account), eq(List.of(snake)), any()))
+        .thenThrow(new IllegalStateException("OpenAI unavailable"));
+
+    // when
+    boolean refreshed = service().refreshRecommendations(account);
+
+    // then
+    assertThat(refreshed).isFalse();
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<RecommendationMessage>> saved = ArgumentCaptor.forClass(List.class);
+    verify(recommendationMessageMapper).upsertRecommendationMessages(saved.capture());
+    assertThat(saved.getValue()).extracting(RecommendationMessage::getProductId).containsExactly("RP-LI-02");
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<String>> keptProductIds = ArgumentCaptor.forClass(List.class);
+    verify(recommendationMessageMapper).deleteMessagesForUserExcept(eq("j2ee"), keptProductIds.capture());
+    assertThat(keptProductIds.getValue()).containsExactlyInAnyOrder("RP-LI-02", "RP-SN-01");
+  }
+
+  @Test
+  void shouldSaveTemplateMessageForProductMissingFromBatch() {
+    // given
+    Account account = dayAccount();
+    account.setUsername("j2ee");
+    Product iguana = product("RP-LI-02");
+    Product snake = product("RP-SN-01");
+    RecommendationVerdict snakeVerdict = RecommendationVerdict.notRecommended("RP-SN-01");
+    Map<String, RecommendationVerdict> verdicts = Map.of("RP-SN-01", snakeVerdict);
+    when(catalogService.hasCompletedSurvey(account)).thenReturn(true);
+    when(productMapper.getAllProducts()).thenReturn(List.of(iguana, snake));
+    when(catalogService.evaluate(account, List.of(iguana, snake))).thenReturn(verdicts);
+    when(catalogService.getRecommendationMessages(eq(account), eq(List.of(iguana)), any()))
+        .thenReturn(Map.of("RP-LI-02", "Iguana suits you."));
+    when(catalogService.getRecommendationMessages(eq(account), eq(List.of(snake)), any())).thenReturn(Map.of());
+    when(catalogService.getTemplateRecommendationMessage(account, snake, snakeVerdict))
+        .thenReturn("RP-SN-01 may not be the best match for your preferences.");
+
+    // when
+    boolean refreshed = service().refreshRecommendations(account);
+
+    // then
+    assertThat(refreshed).isFalse();
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<RecommendationMessage>> saved = ArgumentCaptor.forClass(List.class);
+    verify(recommendationMessageMapper).upsertRecommendationMessages(saved.capture());
+    assertThat(saved.getValue()).extracting(RecommendationMessage::getMessage).containsExactlyInAnyOrder(
+        "Iguana suits you.", "RP-SN-01 may not be the best match for your preferences.");
+  }
+
+  @Test
+  void shouldKeepPreviousMessagesWhenUpsertFails() {
+    // given
+    Account account = stubOneProductRefresh(0);
+    doThrow(new IllegalStateException("Connection lost")).when(recommendationMessageMapper)
+        .upsertRecommendationMessages(anyList());
+
+    // when
+    boolean refreshed = service().refreshRecommendations(account);
+
+    // then
+    assertThat(refreshed).isFalse();
+    verify(recommendationMessageMapper, never()).deleteMessagesForUserExcept(anyString(), anyList());
+    verify(transactionManager).rollback(any());
+    verify(transactionManager, never()).commit(any());
+  }
+
+  @Test
+  void shouldRollBackMergedMessagesWhenDeleteFails() {
+    // given
+    Account account = stubOneProductRefresh(0);
+    doThrow(new IllegalStateException("Connection lost")).when(recommendationMessageMapper)
+        .deleteMessagesForUserExcept(eq("j2ee"), anyList());
+
+    // when
+    boolean refreshed = service().refreshRecommendations(account);
+
+    // then
+    assertThat(refreshed).isFalse();
+    verify(recommendationMessageMapper).upsertRecommendationMessages(anyList());
+    verify(transactionManager).rollback(any());
+    verify(transactionManager, never()).commit(any());
+  }
+
+  @Test
+  void shouldRecordGenerationAndConnectionHoldTimes() {
+    // given
+    Account account = stubOneProductRefresh(30);
+    doAnswer(invocation -> {
+      Thread.sleep(20);
+      return null;
+    }).when(recommendationMessageMapper).upsertRecommendationMessages(anyList());
+    RecommendationMessageService service = service();
+
+    // when
+    boolean refreshed = service.refreshRecommendations(account);
+
+    // then
+    assertThat(refreshed).isTrue();
+    verify(transactionManager).commit(any());
+    RecommendationRefreshMetrics metrics = service.getRefreshMetrics();
+    assertThat(metrics.getRefreshes()).isEqualTo(1L);
+    assertThat(metrics.getGenerationMillis()).isGreaterThanOrEqualTo(30L);
+    assertThat(metrics.getConnectionHoldMillis()).isGreaterThanOrEqualTo(20L);
+    assertThat(metrics.getMaxConnectionHoldMillis()).isEqualTo(metrics.getConnectionHoldMillis());
+    assertThat(metrics.getLastConnectionHoldMillis()).isEqualTo(metrics.getConnectionHoldMillis());
+  }
+
+}
@@ -0,0 +1,338 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.account;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.sampleAccount;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mybatis.jpetstore.domain.Account;
+import org.mybatis.jpetstore.domain.RecommendationRefreshJob;
+import org.mybatis.jpetstore.mapper.AccountMapper;
+import org.mybatis.jpetstore.mapper.RecommendationRefreshJobMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class RecommendationRefreshSchedulerTest {
+
+  /**
+   * Queues tasks until the test runs them, one at a time.
+   */
+  private static final class ManualExecutor implements Executor {
+
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    @Override
+    public void execute(Runnable task) {
+      tasks.add(task);
+    }
+
+    boolean runNext() {
+      Runnable task = tasks.poll();
+      if (task == null) {
+        return false;
+      }
+      task.run();
+      return true;
+    }
+  }
+
+  @Mock
+  private RecommendationRefreshJobMapper jobMapper;
+  @Mock
+  private AccountMapper accountMapper;
+  @Mock
+  private RecommendationMessageService recommendationMessageService;
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  private final ManualExecutor workers = new ManualExecutor();
+
+  // One worker, three attempts, 5 s base backoff
+  private RecommendationRefreshScheduler scheduler() {
+    return new RecommendationRefreshScheduler(jobMapper, accountMapper, recommendationMessageService, workers,
+        transactionManager, 1, 600000, 3, 5000, 600000, 60000);
+  }
+
+  private static RecommendationRefreshJob job(long jobId, String jobStatus, int attempts) {
+    RecommendationRefreshJob job = new RecommendationRefreshJob();
+    job.setJobId(jobId);
+    job.setUsername("j2ee");
+    job.setJobStatus(jobStatus);
+    job.setAttempts(attempts);
+    return job;
+  }
+
+  // Queues job 8 for j2ee and lets the only worker claim it
+  private CompletableFuture<Void> scheduleClaimedJob(RecommendationRefreshScheduler scheduler, int attempts) {
+    doAnswer(invocation -> {
+      invocation.<RecommendationRefreshJob> getArgument(0).setJobId(8L);
+      return null;
+    }).when(jobMapper).insertJob(any());
+    when(jobMapper.getJob(8L)).thenReturn(job(8L, RecommendationRefreshJob.PENDING, attempts));
+    when(jobMapper.getClaimableJobIds(any(), eq(1))).thenReturn(List.of(8L), List.of());
+    when(jobMapper.claimJob(eq(8L), anyString(), any(), any())).thenReturn(1);
+    return scheduler.schedule("j2ee", null);
+  }
+
+  @Test
+  void shouldMergeRequestIntoPendingJob() {
+    // given
+    RecommendationRefreshJob pending = job(7L, RecommendationRefreshJob.PENDING, 0);
+    when(jobMapper.getActiveJob("j2ee")).thenReturn(pending);
+    when(jobMapper.supersedePendingJob(eq(7L), eq(false), any())).thenReturn(1);
+    when(jobMapper.getJob(7L)).thenReturn(pending);
+    RecommendationRefreshScheduler scheduler = scheduler();
+
+    // when
+    CompletableFuture<Void> refresh = scheduler.schedule("j2ee", sampleAccount());
+
+    // then
+    assertThat(refresh).isNotDone();
+    verify(jobMapper, never()).insertJob(any());
+    assertThat(scheduler.getRequests()).isEqualTo(1L);
+    assertThat(scheduler.getCoalesced()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldQueueNewJobWhenPendingJobWasClaimedMeanwhile() {
+    // given
+    when(jobMapper.getActiveJob("j2ee")).thenReturn(job(7L, RecommendationRefreshJob.PENDING, 0));
+    when(jobMapper.supersedePendingJob(eq(7L), eq(true), any())).thenReturn(0);
+    doAnswer(invocation -> {
+      invocation.<RecommendationRefreshJob> getArgument(0).setJobId(8L);
+      return null;
+    }).when(jobMapper).insertJob(any());
+    when(jobMapper.getJob(8L)).thenReturn(job(8L, RecommendationRefreshJob.PENDING, 0));
+    RecommendationRefreshScheduler scheduler = scheduler();
+
+    // when
+    CompletableFuture<Void> refresh = scheduler.schedule("j2ee", null);
+
+    // then
+    assertThat(refresh).isNotDone();
+    ArgumentCaptor<RecommendationRefreshJob> queued = ArgumentCaptor.forClass(RecommendationRefreshJob.class);
+    verify(jobMapper).insertJob(queued.capture());
+    assertThat(queued.getValue().getUsername()).isEqualTo("j2ee");
+    assertThat(queued.getValue().getJobStatus()).isEqualTo(RecommendationRefreshJob.PENDING);
+    assertThat(queued.getValue().getPreviousAnswers()).isNull();
+    assertThat(scheduler.getCoalesced()).isZero();
+  }
+
+  @Test
+  void shouldJoinActiveJobInsteadOfQueueingAnother() {
+    // given
+    RecommendationRefreshJob running = job(7L, RecommendationRefreshJob.RUNNING, 1);
+    when(jobMapper.getLatestJob("j2ee")).thenReturn(running);
+    when(jobMapper.getJob(7L)).thenReturn(running);
+    RecommendationRefreshScheduler scheduler = scheduler();
+
+    // when
+    CompletableFuture<Void> joined = scheduler.join("j2ee");
+
+    // then
+    assertThat(joined).isNotDone();
+    verify(jobMapper, never()).insertJob(any());
+    assertThat(scheduler.getCoalesced()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldJoinJobThatFinishedBeforeTheCallerArrived() {
+    // given
+    RecommendationRefreshJob done = job(7L, RecommendationRefreshJob.DONE, 1);
+    when(jobMapper.getLatestJob("j2ee")).thenReturn(done);
+    when(jobMapper.getJob(7L)).thenReturn(done);
+    RecommendationRefreshScheduler scheduler = scheduler();
+
+    // when
+    CompletableFuture<Void> joined = scheduler.join("j2ee");
+
+    // then
+    assertThat(scheduler.await(joined, 0)).isTrue();
+    verify(jobMapper, never()).insertJob(any());
+    verify(jobMapper, never()).getClaimableJobIds(any(), eq(1));
+  }
+
+  @Test
+  void shouldQueueFullRefreshWhenThereIsNothingToJoin() {
+    // given
+    doAnswer(invocation -> {
+      invocation.<RecommendationRefreshJob> getArgument(0).setJobId(8L);
+      return null;
+    }).when(jobMapper).insertJob(any());
+    when(jobMapper.getJob(8L)).thenReturn(job(8L, RecommendationRefreshJob.PENDING, 0));
+    RecommendationRefreshScheduler scheduler = scheduler();
+
+    // when
+    CompletableFuture<Void> joined = scheduler.join("j2ee");
+
+    // then
+    assertThat(joined).isNotDone();
+    verify(jobMapper).insertJob(any());
+    assertThat(scheduler.getCoalesced()).isZero();
+  }
+
+  @Test
+  void shouldRenewLeasesAndClaimOnlyForIdleWorkers() {
+    // given
+    RecommendationRefreshScheduler scheduler = scheduler();
+    scheduleClaimedJob(scheduler, 1);
+
+    // when
+    scheduler.dispatch();
+
+    // then
+    assertThat(scheduler.getRunning()).isEqualTo(1);
+    verify(jobMapper).renewLeases(anyString(), any());
+    verify(jobMapper, times(1)).getClaimableJobIds(any(), eq(1));
+  }
+
+  @Test
+  void shouldCompleteJobAndNotifyWaiters() {
+    // given
+    Account account = sampleAccount();
+    when(accountMapper.getAccountByUsername("j2ee")).thenReturn(account);
+    when(recommendationMessageService.refreshRecommendations(account)).thenReturn(true);
+    RecommendationRefreshScheduler scheduler = scheduler();
+    CompletableFuture<Void> refresh = scheduleClaimedJob(scheduler, 1);
+
+    // when
+    workers.runNext();
+
+    // then
+    assertThat(scheduler.await(refresh, 0)).isTrue();
+    verify(jobMapper).completeJob(eq(8L), anyString(), any());
+    assertThat(scheduler.getRuns()).isEqualTo(1L);
+    assertThat(scheduler.getRunning()).isZero();
+  }
+
+  @Test
+  void shouldRetryIncompleteRefreshWithBackoff() {
+    // given
+    Account account = sampleAccount();
+    when(accountMapper.getAccountByUsername("j2ee")).thenReturn(account);
+    when(recommendationMessageService.refreshRecommendations(account)).thenReturn(false);
+    RecommendationRefreshScheduler scheduler = scheduler();
+    CompletableFuture<Void> refresh = scheduleClaimedJob(scheduler, 1);
+    LocalDateTime before = LocalDateTime.now();
+
+    // when
+    workers.runNext();
+
+    // then
+    assertThat(refresh).isNotDone();
+    ArgumentCaptor<LocalDateTime> runAfter = ArgumentCaptor.forClass(LocalDateTime.class);
+    verify(jobMapper).retryJob(eq(8L), anyString(), runAfter.capture(), anyString(), any());
+    assertThat(runAfter.getValue()).isAfterOrEqualTo(before.plusNanos(2_500_000_000L));
+    verify(jobMapper, never()).failJob(eq(8L), anyString(), anyString(), any());
+    assertThat(scheduler.getRetries()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldFailJobAndWaitersAfterLastAttempt() {
+    // given
+    Account account = sampleAccount();
+    when(accountMapper.getAccountByUsername("j2ee")).thenReturn(account);
+    when(recommendationMessageService.refreshRecommendations(account))
+        .thenThrow(new IllegalStateException("OpenAI unavailable"));
+    RecommendationRefreshScheduler scheduler = scheduler();
+    CompletableFuture<Void> refresh = scheduleClaimedJob(scheduler, 3);
+
+    // when
+    workers.runNext();
+
+    // then
+    assertThat(refresh).isCompletedExceptionally();
+    assertThat(scheduler.await(refresh, 0)).isFalse();
+    verify(jobMapper).failJob(eq(8L), anyString(), eq("java.lang.IllegalStateException: OpenAI unavailable"), any());
+    verify(jobMapper, never()).retryJob(eq(8L), anyString(), any(), anyString(), any());
+    assertThat(scheduler.getFailures()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldStopWaitingAfterTimeout() {
+    // given
+    RecommendationRefreshScheduler scheduler = scheduler();
+    CompletableFuture<Void> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IllegalStateException("failed"));
+
+    // then
+    assertThat(scheduler.await(new CompletableFuture<>(), 10)).isFalse();
+    assertThat(scheduler.await(CompletableFuture.completedFuture(null), 10)).isTrue();
+    assertThat(scheduler.await(failed, 10)).isFalse();
+  }
+
+  @Test
+  void shouldBackOffExponentiallyWithEqualJitter() {
+    // when
+    long firstLow = RecommendationRefreshScheduler.backoffMillis(1, 5000, 600000, 0.0);
+    long firstHigh = RecommendationRefreshScheduler.backoffMillis(1, 5000, 600000, 0.999);
+    long third = RecommendationRefreshScheduler.backoffMillis(3, 5000, 600000, 0.0);
+
+    // then
+    assertThat(firstLow).isEqualTo(2500L);
+    assertThat(firstHigh).isBetween(4990L, 5000L);
+    assertThat(third).isEqualTo(10000L);
+  }
+
+  @Test
+  void shouldCapBackoff() {
+    // when
+    long tenth = RecommendationRefreshScheduler.backoffMillis(10, 5000, 600000, 0.0);
+    long hundredth = RecommendationRefreshScheduler.backoffMillis(100, 5000, 600000, 0.999);
+
+    // then
+    assertThat(tenth).isEqualTo(300000L);
+    assertThat(hundredth).isBetween(599000L, 600000L);
+  }
+
+  @Test
+  void shouldRoundTripPreviousAnswers() {
+    // given
+    Account previous = account("Dry environment", "5 years or less", "Mixed colors",
+        "Small (suitable for studio/small apartment)", "Day", null);
+
+    // when
+    String json = RecommendationRefreshScheduler.encodeAnswers(previous);
+    Account decoded = RecommendationRefreshScheduler.decodeAnswers(json);
+
+    // then
+    assertThat(json).startsWith("{\"residenceEnv\":\"Dry environment\"");
+    assertThat(RecommendationMessageService.sameSurveyAnswers(previous, decoded)).isTrue();
+    assertThat(decoded.getDietManagement()).isNull();
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.account;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.sampleIndex;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mybatis.jpetstore.domain.SurveyExclusionRule;
+
+class SurveyExclusionRulesTest {
+
+  private static SurveyExclusionRule rule(int ruleId, String conditionName, String answer, String productIdPrefix) {
+    SurveyExclusionRule rule = new SurveyExclusionRule();
+    rule.setRuleId(ruleId);
+    rule.setConditionName(conditionName);
+    rule.setAnswer(answer);
+    rule.setProductIdPrefix(productIdPrefix);
+    return rule;
+  }
+
+  @Test
+  void shouldCompileRulesIntoProductMasksPerAnswer() {
+    // given
+    SurveyRecommendationIndex index = sampleIndex();
+    List<SurveyExclusionRule> rules = List.of(rule(1, "residenceEnv", "Dry environment", "FI-FW-"),
+        rule(2, "residenceEnv", "Dry environment", "FI-SW-"), rule(3, "activityTime", "Night", "AV-"));
+
+    // when
+    SurveyExclusionRules compiled = SurveyExclusionRules.compile(rules, index);
+    BitSet dryAtNight = compiled.excludedProducts(account(" Dry environment ", "5 years or less", "Mixed colors",
+        "Small (suitable for studio/small apartment)", "Night", "Simple kibble-focused (carnivore, omnivore)"));
+    BitSet humidByDay = compiled.excludedProducts(account("Humid environment (near river/lake)", "5 years or less",
+        "Mixed colors", "Small (suitable for studio/small apartment)", "Day",
+        "Simple kibble-focused (carnivore, omnivore)"));
+
+    // then
+    assertThat(compiled.size()).isEqualTo(3);
+    assertThat(dryAtNight.cardinality()).isEqualTo(2);
+    assertThat(dryAtNight.get(index.productOrdinal("FI-FW-01"))).isTrue();
+    assertThat(dryAtNight.get(index.productOrdinal("AV-SB-02"))).isTrue();
+    assertThat(humidByDay.isEmpty()).isTrue();
+  }
+
+  @Test
+  void shouldSkipRulesThatCanNeverMatch() {
+    // given
+    SurveyRecommendationIndex index = sampleIndex();
+    List<SurveyExclusionRule> rules = List.of(rule(1, "unknownCondition", "Dry environment", "FI-"),
+        rule(2, "residenceEnv", "On the moon", "FI-"), rule(3, "residenceEnv", "Dry environment", ""));
+
+    // when
+    SurveyExclusionRules compiled = SurveyExclusionRules.compile(rules, index);
+
+    // then
+    assertThat(compiled.size()).isEqualTo(0);
+    assertThat(compiled.excludedProducts(account("Dry environment", "5 years or less", "Mixed colors",
+        "Small (suitable for studio/small apartment)", "Day", "Simple kibble-focused (carnivore, omnivore)"))
+        .isEmpty()).isTrue();
+  }
+
+}
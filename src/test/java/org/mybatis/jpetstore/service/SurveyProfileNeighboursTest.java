@@ -0,0 +1,84 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.account;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.row;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mybatis.jpetstore.domain.SurveyRecommendation;
+
+class SurveyProfileNeighboursTest {
+
+  private static final double[] WEIGHTS = { 3.0, 1.5, 1.0, 2.5, 1.0, 1.0 };
+
+  private static SurveyProfileTable sampleTable() {
+    SurveyRecommendation dayActivity = row(1, "Dry environment", "5 years or less", "Mixed colors",
+        "Small (suitable for studio/small apartment)", "Day", "Simple kibble-focused (carnivore, omnivore)", "RP-LI-02");
+    SurveyRecommendation longerCare = row(2, "Dry environment", "5-10 years", "Mixed colors",
+        "Small (suitable for studio/small apartment)", "Night", "Simple kibble-focused (carnivore, omnivore)",
+        "AV-SB-02");
+    SurveyRecommendation warmColors = row(3, "Dry environment", "5 years or less", "Warm colors (brown | gold tones)",
+        "Small (suitable for studio/small apartment)", "Night", "Simple kibble-focused (carnivore, omnivore)",
+        "K9-RT-01");
+    return SurveyProfileTable.build(List.of(warmColors, longerCare, dayActivity), productId -> null);
+  }
+
+  @Test
+  void shouldRankNearestRowsByWeightedSimilarity() {
+    // given
+    SurveyProfileNeighbours neighbours = SurveyProfileNeighbours.build(sampleTable(), WEIGHTS, 2);
+
+    // when
+    List<SurveyProfileNeighbours.Neighbour> nearest = neighbours.get(account("Dry environment", "5 years or less",
+        "Mixed colors", "Small (suitable for studio/small apartment)", "Night",
+        "Simple kibble-focused (carnivore, omnivore)"));
+
+    // then
+    assertThat(nearest).hasSize(2);
+    // Rows 1 and 3 both miss a weight-1.0 answer; the lower id wins the tie, row 2 misses care period (1.5)
+    assertThat(nearest.get(0).getEntry().getRecommendation().getSurveyRecommendationId()).isEqualTo(1);
+    assertThat(nearest.get(0).getScore()).isEqualTo(9.0);
+    assertThat(nearest.get(0).isExact()).isFalse();
+    assertThat(nearest.get(0).getMismatchingConditions()).containsExactly("activityTime");
+    assertThat(nearest.get(1).getEntry().getRecommendation().getSurveyRecommendationId()).isEqualTo(3);
+    assertThat(nearest.get(1).getMismatchingConditions()).containsExactly("petColorPref");
+  }
+
+  @Test
+  void shouldPutExactMatchFirstAndSkipIncompleteSurveys() {
+    // given
+    SurveyProfileNeighbours neighbours = SurveyProfileNeighbours.build(sampleTable(), WEIGHTS, 5);
+
+    // when
+    List<SurveyProfileNeighbours.Neighbour> nearest = neighbours.get(account("Dry environment", "5-10 years",
+        "Mixed colors", "Small (suitable for studio/small apartment)", "Night",
+        "Simple kibble-focused (carnivore, omnivore)"));
+
+    // then
+    assertThat(nearest).hasSize(3);
+    assertThat(nearest.get(0).getEntry().getRecommendation().getSurveyRecommendationId()).isEqualTo(2);
+    assertThat(nearest.get(0).isExact()).isTrue();
+    assertThat(nearest.get(0).getScore()).isEqualTo(10.0);
+    assertThat(nearest.get(0).getMismatchingConditions()).isEmpty();
+    assertThat(neighbours.get(account("Dry environment", "5-10 years", "Mixed colors",
+        "Small (suitable for studio/small apartment)", "Night", null))).isEmpty();
+  }
+
+}
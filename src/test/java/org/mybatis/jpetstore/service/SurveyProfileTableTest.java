@@ -0,0 +1,79 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.account;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.product;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.row;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mybatis.jpetstore.domain.Item;
+import org.mybatis.jpetstore.domain.SurveyRecommendation;
+
+class SurveyProfileTableTest {
+
+  private static Item item(String productId) {
+    Item item = new Item();
+    item.setItemId("EST-" + productId);
+    item.setProduct(product(productId));
+    return item;
+  }
+
+  @Test
+  void shouldServeExactMatchWithResolvedItemsInJsonOrder() {
+    // given
+    SurveyRecommendation first = row(1, "Dry environment", "5 years or less", "Mixed colors",
+        "Small (suitable for studio/small apartment)", "Day", "Simple kibble-focused (carnivore, omnivore)", "RP-LI-02",
+        "NO-ITEMS", "AV-SB-02");
+    SurveyRecommendation duplicate = row(2, "Dry environment", "5 years or less", "Mixed colors",
+        "Small (suitable for studio/small apartment)", "Day", "Simple kibble-focused (carnivore, omnivore)",
+        "K9-RT-01");
+    SurveyRecommendation nonCanonical = row(3, "Somewhere else", "5 years or less", "Mixed colors",
+        "Small (suitable for studio/small apartment)", "Day", "Simple kibble-focused (carnivore, omnivore)",
+        "K9-RT-01");
+
+    // when
+    SurveyProfileTable table = SurveyProfileTable.build(List.of(first, duplicate, nonCanonical),
+        productId -> "NO-ITEMS".equals(productId) ? null : item(productId));
+    SurveyProfileTable.Entry entry = table.get(account("Dry environment", "5 years or less", "Mixed colors",
+        "Small (suitable for studio/small apartment)", "Day", "Simple kibble-focused (carnivore, omnivore)"));
+
+    // then
+    assertThat(table.size()).isEqualTo(1);
+    assertThat(entry.getRecommendation()).isSameAs(first);
+    assertThat(entry.getItems()).hasSize(2);
+    assertThat(entry.getItems().get(0).getItemId()).isEqualTo("EST-RP-LI-02");
+    assertThat(entry.getItems().get(1).getItemId()).isEqualTo("EST-AV-SB-02");
+  }
+
+  @Test
+  void shouldReturnNullWithoutExactMatch() {
+    // given
+    SurveyProfileTable table = SurveyProfileTable.build(List.of(), productId -> null);
+
+    // when
+    SurveyProfileTable.Entry entry = table.get(account("Dry environment", "5 years or less", "Mixed colors",
+        "Small (suitable for studio/small apartment)", "Day", null));
+
+    // then
+    assertThat(entry).isNull();
+    assertThat(table.get(-1)).isNull();
+  }
+
+}
@@ -0,0 +1,149 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.account;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.sampleIndex;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mybatis.jpetstore.domain.Account;
+import org.mybatis.jpetstore.domain.SurveyDimension;
+
+class SurveyProfileVerdictsTest {
+
+  @Test
+  void shouldMatchLiveEvaluationForEveryProfile() {
+    // given
+    SurveyRecommendationIndex index = sampleIndex();
+    BitSet excluded = new BitSet();
+    excluded.set(index.productOrdinal("AV-SB-02"));
+
+    // when
+    SurveyProfileVerdicts verdicts = SurveyProfileVerdicts.build(index, profileKey -> excluded);
+
+    // then
+    for (int profileKey = 0; profileKey < SurveyDimension.PROFILE_COUNT; profileKey++) {
+      RecommendationVerdict[] live = index.evaluate(SurveyDimension.ordinals(profileKey), excluded);
+      RecommendationVerdict[] materialized = verdicts.get(profileKey);
+      for (int p = 0; p < live.length; p++) {
+        assertThat(materialized[p].isRecommended()).isEqualTo(live[p].isRecommended());
+        assertThat(materialized[p].getSurveyRecommendationId()).isEqualTo(live[p].getSurveyRecommendationId());
+        assertThat(materialized[p].getMatchingConditions()).isEqualTo(live[p].getMatchingConditions());
+      }
+    }
+    assertThat(verdicts.getFootprintBytes()).isGreaterThan(4L * SurveyDimension.PROFILE_COUNT);
+  }
+
+  @Test
+  void shouldLookUpVerdictByProfileKey() {
+    // given
+    SurveyRecommendationIndex index = sampleIndex();
+    SurveyProfileVerdicts verdicts = SurveyProfileVerdicts.build(index, profileKey -> new BitSet());
+    Account account = account("Dry environment", "5 years or less", "Mixed colors",
+        "Small (suitable for studio/small apartment)", "Day", "Simple kibble-focused (carnivore, omnivore)");
+
+    // when
+    RecommendationVerdict verdict = verdicts.get(SurveyDimension.profileKey(account), "RP-LI-02");
+    RecommendationVerdict unknown = verdicts.get(SurveyDimension.profileKey(account), "UNKNOWN-01");
+
+    // then
+    assertThat(verdict.isRecommended()).isTrue();
+    assertThat(verdict.getScore()).isEqualTo(10.0);
+    assertThat(verdict.getSurveyRecommendationId()).isEqualTo(1);
+    assertThat(unknown.isRecommended()).isFalse();
+  }
+
+  @Test
+  void shouldCountRecommendationsOverCompletionsOfPartialProfile() {
+    // given
+    SurveyRecommendationIndex index = sampleIndex();
+    SurveyProfileVerdicts verdicts = SurveyProfileVerdicts.build(index, profileKey -> new BitSet());
+    int[] partial = { SurveyDimension.RESIDENCE_ENV.ordinalOf("Dry environment"), -1, -1,
+        SurveyDimension.PET_SIZE_PREF.ordinalOf("Small (suitable for studio/small apartment)"), -1, -1 };
+
+    // when
+    int[] counts = new int[index.getProductCount()];
+    int completions = verdicts.countRecommended(partial, counts);
+
+    // then
+    int[] expected = new int[index.getProductCount()];
+    int expectedCompletions = 0;
+    for (int profileKey = 0; profileKey < SurveyDimension.PROFILE_COUNT; profileKey++) {
+      int[] ordinals = SurveyDimension.ordinals(profileKey);
+      if (ordinals[0] != partial[0] || ordinals[3] != partial[3]) {
+        continue;
+      }
+      expectedCompletions++;
+      RecommendationVerdict[] all = verdicts.get(profileKey);
+      for (int p = 0; p < all.length; p++) {
+        expected[p] += all[p].isRecommended() ? 1 : 0;
+      }
+    }
+    assertThat(completions).isEqualTo(expectedCompletions).isEqualTo(SurveyDimension.PROFILE_COUNT / 15);
+    assertThat(counts).isEqualTo(expected);
+    assertThat(counts[index.productOrdinal("RP-LI-02")]).isPositive();
+  }
+
+  @Test
+  void shouldRankProductsByBestScore() {
+    // given
+    SurveyRecommendationIndex index = sampleIndex();
+    BitSet excluded = new BitSet();
+    excluded.set(index.productOrdinal("AV-SB-02"));
+    SurveyProfileVerdicts verdicts = SurveyProfileVerdicts.build(index, profileKey -> excluded);
+    int profileKey = SurveyDimension.profileKey(account("Dry environment", "5 years or less", "Mixed colors",
+        "Small (suitable for studio/small apartment)", "Night", "Can provide diverse diet (vegetarian, mixed possible)"));
+    BitSet onlyK9 = new BitSet();
+    onlyK9.set(index.productOrdinal("K9-RT-01"));
+
+    // when
+    List<RecommendationVerdict> ranked = verdicts.rank(profileKey, null, 10);
+    List<RecommendationVerdict> top = verdicts.rank(profileKey, null, 1);
+    List<RecommendationVerdict> candidate = verdicts.rank(profileKey, onlyK9, 10);
+
+    // then
+    // AV-SB-02 is excluded and no row lists FI-FW-01
+    assertThat(ranked).extracting(RecommendationVerdict::getProductId).containsExactly("RP-LI-02", "K9-RT-01");
+    assertThat(ranked.get(0).getScore()).isEqualTo(8.0);
+    assertThat(ranked.get(0).isRecommended()).isTrue();
+    assertThat(ranked.get(1).getScore()).isEqualTo(2.0);
+    assertThat(ranked.get(1).isRecommended()).isFalse();
+    assertThat(ranked.get(1).getMatchingConditions()).containsExactly("activityTime", "dietManagement");
+    assertThat(top).extracting(RecommendationVerdict::getProductId).containsExactly("RP-LI-02");
+    assertThat(candidate).extracting(RecommendationVerdict::getProductId).containsExactly("K9-RT-01");
+  }
+
+  @Test
+  void shouldBreakRankingTiesByCatalogueOrder() {
+    // given
+    SurveyRecommendationIndex index = sampleIndex();
+    SurveyProfileVerdicts verdicts = SurveyProfileVerdicts.build(index, profileKey -> new BitSet());
+    int profileKey = SurveyDimension.profileKey(account("Dry environment", "5 years or less", "Mixed colors",
+        "Small (suitable for studio/small apartment)", "Day", "Simple kibble-focused (carnivore, omnivore)"));
+
+    // when
+    List<RecommendationVerdict> ranked = verdicts.rank(profileKey, null, 2);
+
+    // then
+    assertThat(ranked).extracting(RecommendationVerdict::getProductId).containsExactly("RP-LI-02", "AV-SB-02");
+    assertThat(ranked).extracting(RecommendationVerdict::getScore).containsExactly(10.0, 10.0);
+  }
+
+}
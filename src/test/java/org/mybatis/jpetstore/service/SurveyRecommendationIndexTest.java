@@ -0,0 +1,247 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mybatis.jpetstore.domain.Account;
+import org.mybatis.jpetstore.domain.Product;
+import org.mybatis.jpetstore.domain.SurveyRecommendation;
+
+class SurveyRecommendationIndexTest {
+
+  private static final double[] WEIGHTS = { 3.0, 1.5, 1.0, 2.5, 1.0, 1.0 };
+
+  static Product product(String productId) {
+    Product product = new Product();
+    product.setProductId(productId);
+    product.setName(productId);
+    return product;
+  }
+
+  static Product product(String productId, String categoryId, String name) {
+    Product product = new Product();
+    product.setProductId(productId);
+    product.setCategoryId(categoryId);
+    product.setName(name);
+    return product;
+  }
+
+  static SurveyRecommendation row(int id, String residenceEnv, String carePeriod, String petColorPref,
+      String petSizePref, String activityTime, String dietManagement, String... productIds) {
+    StringBuilder json = new StringBuilder("[");
+    for (String productId : productIds) {
+      if (json.length() > 1) {
+        json.append(',');
+      }
+      json.append("{\"productId\": \"").append(productId).append("\"}");
+    }
+    json.append(']');
+    SurveyRecommendation recommendation = new SurveyRecommendation();
+    recommendation.setSurveyRecommendationId(id);
+    recommendation.setResidenceEnv(residenceEnv);
+    recommendation.setCarePeriod(carePeriod);
+    recommendation.setPetColorPref(petColorPref);
+    recommendation.setPetSizePref(petSizePref);
+    recommendation.setActivityTime(activityTime);
+    recommendation.setDietManagement(dietManagement);
+    recommendation.setRecommendedJsonData(json.toString());
+    return recommendation;
+  }
+
+  static Account account(String residenceEnv, String carePeriod, String petColorPref, String petSizePref,
+      String activityTime, String dietManagement) {
+    Account account = new Account();
+    account.setResidenceEnv(residenceEnv);
+    account.setCarePeriod(carePeriod);
+    account.setPetColorPref(petColorPref);
+    account.setPetSizePref(petSizePref);
+    account.setActivityTime(activityTime);
+    account.setDietManagement(dietManagement);
+    return account;
+  }
+
+  // A complete survey, shared by the recommendation message tests
+  static Account sampleAccount() {
+    return account("Dry environment", "5 years or less", "Mixed colors", "Small (suitable for studio/small apartment)",
+        "Night", "Simple kibble-focused (carnivore, omnivore)");
+  }
+
+  static SurveyRecommendationIndex sampleIndex() {
+    List<SurveyRecommendation> rows = List.of(
+        row(1, "Dry environment", "5 years or less", "Mixed colors", "Small (suitable for studio/small apartment)",
+            "Day", "Simple kibble-focused (carnivore, omnivore)", "RP-LI-02", "AV-SB-02"),
+        row(2, "Includes outdoor space (yard, balcony, etc.)", "10 years or more", "Doesn't matter",
+            "Large (yard and spacious indoor area possible)", "Night",
+            "Can provide diverse diet (vegetarian, mixed possible)", "K9-RT-01", "UNKNOWN-01"));
+    return SurveyRecommendationIndex.build(rows,
+        List.of(product("RP-LI-02"), product("AV-SB-02"), product("K9-RT-01"), product("FI-FW-01")), WEIGHTS, 7.5);
+  }
+
+  @Test
+  void shouldRecommendProductsOfExactlyMatchingRow() {
+    // given
+    SurveyRecommendationIndex index = sampleIndex();
+    Account account = account(" Dry environment ", "5 years or less", "Mixed colors",
+        "Small (suitable for studio/small apartment)", "Day", "Simple kibble-focused (carnivore, omnivore)");
+
+    // when
+    int[] profile = index.encode(account);
+
+    // then
+    assertThat(index.size()).isEqualTo(2);
+    assertThat(index.getProductCount()).isEqualTo(4);
+    assertThat(index.score(profile, 0)).isEqualTo(10.0);
+    assertThat(index.isRecommended(profile, "RP-LI-02")).isTrue();
+    assertThat(index.isRecommended(profile, "AV-SB-02")).isTrue();
+    assertThat(index.isRecommended(profile, "K9-RT-01")).isFalse();
+    assertThat(index.isRecommended(profile, "FI-FW-01")).isFalse();
+    assertThat(index.isRecommended(profile, "UNKNOWN-01")).isFalse();
+  }
+
+  @Test
+  void shouldApplyThresholdToWeightedScore() {
+    // given
+    SurveyRecommendationIndex index = sampleIndex();
+    // residenceEnv + petSizePref + activityTime + dietManagement = 3.0 + 2.5 + 1.0 + 1.0 = 7.5
+    Account atThreshold = account("Dry environment", "5-10 years", "Warm colors (brown | gold tones)",
+        "Small (suitable for studio/small apartment)", "Day", "Simple kibble-focused (carnivore, omnivore)");
+    // residenceEnv + carePeriod + petSizePref = 3.0 + 1.5 + 2.5 = 7.0
+    Account belowThreshold = account("Dry environment", "5 years or less", "Warm colors (brown | gold tones)",
+        "Small (suitable for studio/small apartment)", "Night",
+        "Can provide diverse diet (vegetarian, mixed possible)");
+
+    // when
+    int[] atProfile = index.encode(atThreshold);
+    int[] belowProfile = index.encode(belowThreshold);
+
+    // then
+    assertThat(index.score(atProfile, 0)).isEqualTo(7.5);
+    assertThat(index.isRecommended(atProfile, "RP-LI-02")).isTrue();
+    assertThat(index.score(belowProfile, 0)).isEqualTo(7.0);
+    assertThat(index.isRecommended(belowProfile, "RP-LI-02")).isFalse();
+  }
+
+  @Test
+  void shouldNotMatchUnknownAnswers() {
+    // given
+    SurveyRecommendationIndex index = sampleIndex();
+    Account account = account("On the moon", "", null, "Small (suitable for studio/small apartment)", "Day",
+        "Simple kibble-focused (carnivore, omnivore)");
+
+    // when
+    int[] profile = index.encode(account);
+
+    // then
+    assertThat(profile[0]).isEqualTo(SurveyRecommendationIndex.NO_MATCH);
+    assertThat(profile[1]).isEqualTo(SurveyRecommendationIndex.NO_MATCH);
+    assertThat(profile[2]).isEqualTo(SurveyRecommendationIndex.NO_MATCH);
+    assertThat(index.score(profile, 0)).isEqualTo(4.5);
+  }
+
+  @Test
+  void shouldEvaluateAllProductsInOnePass() {
+    // given
+    SurveyRecommendationIndex index = sampleIndex();
+    // residenceEnv + petSizePref + activityTime + dietManagement = 3.0 + 2.5 + 1.0 + 1.0 = 7.5 against row 1
+    Account account = account("Dry environment", "5-10 years", "Warm colors (brown | gold tones)",
+        "Small (suitable for studio/small apartment)", "Day", "Simple kibble-focused (carnivore, omnivore)");
+    BitSet excluded = new BitSet();
+    excluded.set(index.productOrdinal("AV-SB-02"));
+
+    // when
+    RecommendationVerdict[] verdicts = index.evaluate(index.encode(account), excluded);
+
+    // then
+    assertThat(verdicts).hasSize(4);
+    RecommendationVerdict recommended = verdicts[index.productOrdinal("RP-LI-02")];
+    assertThat(recommended.isRecommended()).isTrue();
+    assertThat(recommended.getConditionsToMention()).containsExactly("residenceEnv", "petSizePref", "activityTime",
+        "dietManagement");
+
+    RecommendationVerdict excludedVerdict = verdicts[index.productOrdinal("AV-SB-02")];
+    assertThat(excludedVerdict.isRecommended()).isFalse();
+    assertThat(excludedVerdict.getConditionsToMention()).containsExactly("carePeriod", "petColorPref");
+
+    RecommendationVerdict mismatched = verdicts[index.productOrdinal("K9-RT-01")];
+    assertThat(mismatched.isRecommended()).isFalse();
+    assertThat(mismatched.getMismatchingConditions()).containsExactly("residenceEnv", "carePeriod", "petColorPref",
+        "petSizePref", "activityTime", "dietManagement");
+
+    RecommendationVerdict unlisted = verdicts[index.productOrdinal("FI-FW-01")];
+    assertThat(unlisted.isRecommended()).isFalse();
+    assertThat(unlisted.getConditionsToMention()).isEmpty();
+  }
+
+  @Test
+  void shouldExplainVerdictWithScoreAndRow() {
+    // given
+    SurveyRecommendationIndex index = sampleIndex();
+    // residenceEnv + petSizePref + activityTime + dietManagement = 3.0 + 2.5 + 1.0 + 1.0 = 7.5 against row 1
+    Account account = account("Dry environment", "5-10 years", "Warm colors (brown | gold tones)",
+        "Small (suitable for studio/small apartment)", "Day", "Simple kibble-focused (carnivore, omnivore)");
+    int[] profile = index.encode(account);
+
+    // when
+    RecommendationVerdict recommended = index.evaluate(profile, "RP-LI-02", false);
+    RecommendationVerdict excluded = index.evaluate(profile, "RP-LI-02", true);
+    RecommendationVerdict mismatched = index.evaluate(profile, "K9-RT-01", false);
+    RecommendationVerdict unknown = index.evaluate(profile, "UNKNOWN-01", false);
+
+    // then
+    assertThat(recommended.isRecommended()).isTrue();
+    assertThat(recommended.getScore()).isEqualTo(7.5);
+    assertThat(recommended.getSurveyRecommendationId()).isEqualTo(1);
+    assertThat(recommended.getMatchingConditions()).containsExactly("residenceEnv", "petSizePref", "activityTime",
+        "dietManagement");
+    assertThat(recommended.getMismatchingConditions()).containsExactly("carePeriod", "petColorPref");
+
+    assertThat(excluded.isRecommended()).isFalse();
+    assertThat(excluded.getSurveyRecommendationId()).isEqualTo(1);
+    assertThat(excluded.getConditionsToMention()).containsExactly("carePeriod", "petColorPref");
+
+    assertThat(mismatched.isRecommended()).isFalse();
+    assertThat(mismatched.getScore()).isEqualTo(0.0);
+    assertThat(mismatched.getSurveyRecommendationId()).isEqualTo(2);
+    assertThat(mismatched.getMatchingConditions()).isEmpty();
+
+    assertThat(unknown.isRecommended()).isFalse();
+    assertThat(unknown.getSurveyRecommendationId()).isEqualTo(RecommendationVerdict.NO_ROW);
+  }
+
+  @Test
+  void shouldComputeMatchMasksColumnByColumn() {
+    // given
+    SurveyRecommendationIndex index = sampleIndex();
+    Account account = account("Dry environment", "10 years or more", "Unknown",
+        "Small (suitable for studio/small apartment)", "Night", "Simple kibble-focused (carnivore, omnivore)");
+    int[] masks = new int[index.size()];
+
+    // when
+    index.matchMasks(index.encode(account), masks);
+
+    // then
+    // row 1: residenceEnv, petSizePref, dietManagement
+    assertThat(masks[0]).isEqualTo(0b101001);
+    // row 2: carePeriod, activityTime
+    assertThat(masks[1]).isEqualTo(0b010010);
+  }
+
+}
@@ -0,0 +1,98 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mybatis.jpetstore.domain.SurveyRecommendation;
+import org.mybatis.jpetstore.mapper.SurveyRecommendationMapper;
+
+@ExtendWith(MockitoExtension.class)
+class SurveyRecommendationMigrationServiceTest {
+
+  private static final String IGUANA_JSON = "[{\"productId\":\"RP-LI-02\"}]";
+
+  @Mock
+  private SurveyRecommendationMapper surveyRecommendationMapper;
+
+  private static SurveyRecommendation recommendation(int id, String json, Integer productsChecksum) {
+    SurveyRecommendation recommendation = new SurveyRecommendation();
+    recommendation.setSurveyRecommendationId(id);
+    recommendation.setRecommendedJsonData(json);
+    recommendation.setProductsChecksum(productsChecksum);
+    return recommendation;
+  }
+
+  @Test
+  void shouldSkipRowsWhoseJsonIsUnchanged() {
+    // given
+    when(surveyRecommendationMapper.getSurveyRecommendationSources()).thenReturn(
+        List.of(recommendation(1, IGUANA_JSON, SurveyRecommendationMigrationService.checksum(IGUANA_JSON))));
+
+    // when
+    int migrated = new SurveyRecommendationMigrationService(surveyRecommendationMapper).migrateRecommendedProducts();
+
+    // then
+    assertThat(migrated).isZero();
+    verify(surveyRecommendationMapper, never()).deleteRecommendedProducts(anyInt());
+    verify(surveyRecommendationMapper, never()).insertRecommendedProduct(anyInt(), anyString(), anyInt());
+  }
+
+  @Test
+  void shouldRebuildRowsThatAreNewOrEditedInPlace() {
+    // given
+    String editedJson = "[{\"productId\":\"FI-SW-01\"},{\"productId\":\"K9-BD-01\"}]";
+    when(surveyRecommendationMapper.getSurveyRecommendationSources())
+        .thenReturn(List.of(recommendation(1, IGUANA_JSON, null),
+            recommendation(2, editedJson, SurveyRecommendationMigrationService.checksum(IGUANA_JSON))));
+
+    // when
+    int migrated = new SurveyRecommendationMigrationService(surveyRecommendationMapper).migrateRecommendedProducts();
+
+    // then
+    assertThat(migrated).isEqualTo(2);
+    verify(surveyRecommendationMapper).insertRecommendedProduct(1, "RP-LI-02", 0);
+    verify(surveyRecommendationMapper).updateProductsChecksum(1,
+        SurveyRecommendationMigrationService.checksum(IGUANA_JSON));
+    InOrder inOrder = Mockito.inOrder(surveyRecommendationMapper);
+    inOrder.verify(surveyRecommendationMapper).deleteRecommendedProducts(2);
+    inOrder.verify(surveyRecommendationMapper).insertRecommendedProduct(2, "FI-SW-01", 0);
+    inOrder.verify(surveyRecommendationMapper).insertRecommendedProduct(2, "K9-BD-01", 1);
+    inOrder.verify(surveyRecommendationMapper).updateProductsChecksum(2,
+        SurveyRecommendationMigrationService.checksum(editedJson));
+  }
+
+  @Test
+  void shouldChecksumDifferentJsonDifferently() {
+    assertThat(SurveyRecommendationMigrationService.checksum(IGUANA_JSON))
+        .isEqualTo(SurveyRecommendationMigrationService.checksum(new String(IGUANA_JSON)))
+        .isNotEqualTo(SurveyRecommendationMigrationService.checksum("[{\"productId\":\"RP-LI-01\"}]"));
+  }
+
+}
@@ -0,0 +1,66 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mybatis.jpetstore.domain.SurveyDimension;
+import org.mybatis.jpetstore.domain.SurveyScoringSetting;
+
+class SurveyScoringTest {
+
+  private static SurveyScoringSetting setting(String name, double value) {
+    SurveyScoringSetting setting = new SurveyScoringSetting();
+    setting.setSettingName(name);
+    setting.setSettingValue(value);
+    return setting;
+  }
+
+  @Test
+  void shouldOverrideDefaultsWithStoredSettings() {
+    // given
+    List<SurveyScoringSetting> settings = List.of(setting("petSizePref", 2.0), setting("threshold", 7.0));
+
+    // when
+    SurveyScoring scoring = SurveyScoring.of(settings);
+
+    // then
+    assertThat(scoring.getWeights()).containsExactly(3.0, 1.5, 1.0, 2.0, 1.0, 1.0);
+    assertThat(scoring.getWeight(SurveyDimension.PET_SIZE_PREF)).isEqualTo(2.0);
+    assertThat(scoring.getThreshold()).isEqualTo(7.0);
+    assertThat(scoring.getTotalWeight()).isEqualTo(9.5);
+    assertThat(SurveyScoring.DEFAULT.getTotalWeight()).isEqualTo(10.0);
+    assertThat(scoring).isNotEqualTo(SurveyScoring.DEFAULT);
+  }
+
+  @Test
+  void shouldSkipUnknownAndInvalidSettings() {
+    // given
+    List<SurveyScoringSetting> settings = List.of(setting("favouriteColour", 5.0), setting("carePeriod", -1.0),
+        setting("threshold", Double.NaN), setting("dietManagement", 1.0));
+
+    // when
+    SurveyScoring scoring = SurveyScoring.of(settings);
+
+    // then
+    assertThat(scoring).isEqualTo(SurveyScoring.DEFAULT);
+    assertThat(scoring.hashCode()).isEqualTo(SurveyScoring.DEFAULT.hashCode());
+  }
+
+}
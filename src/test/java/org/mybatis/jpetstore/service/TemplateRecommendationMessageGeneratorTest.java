@@ -0,0 +1,74 @@
+/*
+ *    Copyright 2010-2025 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.jpetstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.product;
+import static org.mybatis.jpetstore.service.SurveyRecommendationIndexTest.sampleAccount;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.mybatis.jpetstore.domain.Product;
+
+class TemplateRecommendationMessageGeneratorTest {
+
+  private final TemplateRecommendationMessageGenerator generator = new TemplateRecommendationMessageGenerator();
+
+  @Test
+  void shouldExplainMatchingConditionsInSurveyOrder() {
+    // given
+    Product product = product("RP-LI-02", "REPTILES", "Iguana");
+
+    // when
+    String message = generator.generateMessage(sampleAccount(), product, true,
+        Set.of("activityTime", "petSizePref", "residenceEnv"));
+
+    // then
+    assertThat(message).isEqualTo("Among our reptiles, Iguana is a good match for you: it suits your living "
+        + "environment (dry environment), size preference (small) and activity time (night).");
+  }
+
+  @Test
+  void shouldExplainMismatchingConditionsOfNotRecommendedProduct() {
+    // given
+    Product product = product("K9-RT-01", "DOGS", "Golden Retriever");
+
+    // when
+    String message = generator.generateMessage(sampleAccount(), product, false, Set.of("petSizePref"));
+
+    // then
+    assertThat(message).isEqualTo(
+        "Among our dogs, Golden Retriever may not be the best match for you: it does not suit your size preference "
+            + "(small).");
+  }
+
+  @Test
+  void shouldFallBackToGenericSentenceWithoutConditions() {
+    // given
+    Product product = product("FI-SW-01", "FISH", "Angelfish");
+
+    // when
+    String recommended = generator.generateMessage(sampleAccount(), product, true, Set.of());
+    String notRecommended = generator.generateMessage(sampleAccount(), product, false, Set.of());
+
+    // then
+    assertThat(recommended).isEqualTo("Among our fish, Angelfish is recommended based on your survey answers.");
+    assertThat(notRecommended).isEqualTo("Among our fish, Angelfish may not be the best match for your preferences.");
+    assertThat(generator.generateMessage(sampleAccount(), product, true, Set.of())).isEqualTo(recommended);
+  }
+
+}